@@ -35,6 +35,8 @@ const apiConfig = {
 // Función helper para hacer peticiones API
 export const apiCall = async (endpoint, options = {}) => {
   const url = `${API_BASE_URL}${endpoint}`;
+  // onResponse permite leer los headers de la respuesta (por ejemplo X-Next-Cursor); no se pasa a fetch
+  const { onResponse, ...fetchOptions } = options;
 
   // Solo agregar token para rutas administrativas
   const isAdminRoute = endpoint.includes('/create') || 
@@ -49,7 +51,7 @@ export const apiCall = async (endpoint, options = {}) => {
 
   const config = {
     ...apiConfig,
-    ...options,
+    ...fetchOptions,
     headers: {
       ...(!(options.body instanceof FormData) && apiConfig.headers), // Solo agregar headers default si no es FormData
       ...(token && { 'Authorization': `Bearer ${token}` }),
@@ -87,6 +89,8 @@ export const apiCall = async (endpoint, options = {}) => {
       throw new Error(errorMessage);
     }
 
+    if (onResponse) onResponse(response);
+
     const contentType = response.headers.get('content-type');
     if (contentType && contentType.includes('application/json')) {
       const text = await response.text();
@@ -102,6 +106,23 @@ export const apiCall = async (endpoint, options = {}) => {
   }
 };
 
+// Los listados vienen paginados por cursor: se piden las páginas siguientes hasta que no haya X-Next-Cursor
+export const apiCallAllPages = async (endpoint) => {
+  const items = [];
+  let cursor = null;
+  do {
+    const separator = endpoint.includes('?') ? '&' : '?';
+    const pageEndpoint = cursor ? `${endpoint}${separator}cursor=${encodeURIComponent(cursor)}` : endpoint;
+    let nextCursor = null;
+    const page = await apiCall(pageEndpoint, {
+      onResponse: (response) => { nextCursor = response.headers.get('X-Next-Cursor'); },
+    });
+    items.push(...(page || []));
+    cursor = nextCursor;
+  } while (cursor);
+  return items;
+};
+
 // Funciones de gestión de autenticación
 export const authUtils = {
   // Verificar si la sesión es válida
@@ -204,8 +225,8 @@ export const teacherAPI = {
   }),
 
   // Actividades
-  getAllActivities: () => apiCall('/activities'),
-  getActivitiesByLevel: (levelId) => apiCall(`/activities/level/${levelId}`),
+  getAllActivities: () => apiCallAllPages('/activities'),
+  getActivitiesByLevel: (levelId) => apiCallAllPages(`/activities/level/${levelId}`),
   createActivity: (activityData) => apiCall('/activities', {
     method: 'POST',
     body: JSON.stringify(activityData)
@@ -4,6 +4,7 @@ import com.englishproject.englishteacherapi.model.Level;
 import com.englishproject.englishteacherapi.model.Teacher;
 import com.englishproject.englishteacherapi.repository.LevelRepository;
 import com.englishproject.englishteacherapi.repository.TeacherRepository;
+import com.englishproject.englishteacherapi.service.PasswordHashingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -17,6 +18,9 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private LevelRepository levelRepository;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
     @Override
     public void run(String... args) throws Exception {
         // Crear profesor de ejemplo
@@ -33,7 +37,7 @@ public class DataInitializer implements CommandLineRunner {
             teacher.setQualifications("Licenciatura en Lenguas Modernas, Certificación TESOL, Cambridge CELTA");
             teacher.setSpecialties("Conversación, Gramática, Preparación de exámenes, Business English");
             // Establecer contraseña hasheada (la contraseña es "password123")
-            teacher.setPasswordWithHash("password123");
+            teacher.setPassword(passwordHashingService.hash("password123"));
             teacherRepository.save(teacher);
         }
 
@@ -1,9 +1,25 @@
 package com.englishproject.englishteacherapi.config;
 
+import com.englishproject.englishteacherapi.service.BlobStoreService;
+import com.englishproject.englishteacherapi.service.FileLayoutService;
+import com.englishproject.englishteacherapi.service.MediaStreamingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
 
 @Configuration
 public class FileConfig implements WebMvcConfigurer {
@@ -11,10 +27,90 @@ public class FileConfig implements WebMvcConfigurer {
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
+    private static final String ACTIVITIES_PREFIX = "activities/";
+    private static final Pattern SAFE_FILENAME_PATTERN = Pattern.compile("^[a-zA-Z0-9._-]{1,100}$");
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Autowired
+    private UploadQuotaInterceptor uploadQuotaInterceptor;
+
+    @Autowired
+    private UploadAdmissionInterceptor uploadAdmissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(uploadQuotaInterceptor).addPathPatterns("/api/files/upload/activity");
+        registry.addInterceptor(uploadAdmissionInterceptor)
+                .addPathPatterns("/api/files/upload/activity", "/api/files/upload/sessions/*");
+        registry.addInterceptor(new UploadsCacheControlInterceptor()).addPathPatterns("/uploads/**");
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Configurar para servir archivos estáticos desde el directorio uploads
+        // Configurar para servir archivos estáticos desde el directorio uploads.
+        // Cache-Control lo decide UploadsCacheControlInterceptor según el nombre; el ETag es el
+        // digest del índice y solo existe para los archivos de actividades ya indexados.
         registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadDir + "/");
+                .addResourceLocations("file:" + uploadDir + "/")
+                .setUseLastModified(true)
+                .setEtagGenerator(this::activityDigest)
+                .resourceChain(false)
+                .addResolver(new ShardedActivityResolver());
+    }
+
+    private String activityDigest(Resource resource) {
+        try {
+            Path path = resource.getFile().toPath().toAbsolutePath().normalize();
+            if (!path.startsWith(fileLayoutService.getActivitiesPath())) {
+                return null; // Otro subdirectorio: un nombre igual no es el mismo archivo
+            }
+            return blobStoreService.findDigest(path.getFileName().toString()).orElse(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Solo los nombres UUID o sha256 se cachean como inmutables; el resto se revalida siempre
+     */
+    private static class UploadsCacheControlInterceptor implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            String uri = request.getRequestURI();
+            String fileName = uri.substring(uri.lastIndexOf('/') + 1);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, MediaStreamingService.isImmutableName(fileName)
+                    ? MediaStreamingService.IMMUTABLE_CACHE_CONTROL : MediaStreamingService.REVALIDATE_CACHE_CONTROL);
+            return true;
+        }
+    }
+
+    /**
+     * Las URLs /uploads/activities/{fileName} siguen funcionando aunque el archivo ya se haya
+     * movido a su subdirectorio particionado. Las rutas con un segmento oculto no se sirven.
+     */
+    private class ShardedActivityResolver extends PathResourceResolver {
+
+        @Override
+        protected Resource getResource(String resourcePath, Resource location) throws IOException {
+            // Los directorios ocultos (.partial de las subidas por partes) nunca se publican
+            if (resourcePath.startsWith(".") || resourcePath.contains("/.")) {
+                return null;
+            }
+            Resource resource = super.getResource(resourcePath, location);
+            if (resource != null || !resourcePath.startsWith(ACTIVITIES_PREFIX)) {
+                return resource;
+            }
+            String fileName = resourcePath.substring(ACTIVITIES_PREFIX.length());
+            if (!SAFE_FILENAME_PATTERN.matcher(fileName).matches() || fileName.contains("..")) {
+                return null;
+            }
+            return fileLayoutService.locate(fileName).<Resource>map(FileSystemResource::new).orElse(null);
+        }
     }
-}
\ No newline at end of file
+}
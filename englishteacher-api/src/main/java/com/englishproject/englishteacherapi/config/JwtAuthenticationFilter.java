@@ -1,10 +1,15 @@
 package com.englishproject.englishteacherapi.config;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -27,42 +32,46 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private AuthService authService;
 
+    // Profesores con acceso a los endpoints administrativos (ROLE_ADMIN)
+    @Value("${app.security.admin-emails:}")
+    private Set<String> adminEmails;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
         final String requestTokenHeader = request.getHeader("Authorization");
-        String email = null;
-        String jwtToken = null;
-
-        // El JWT token viene en el formato "Bearer token"
-        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
-            try {
-                email = tokenServices.extractEmail(jwtToken);
-            } catch (Exception e) {
-                logger.warn("No se pudo obtener el email del token JWT");
+        TokenServices.VerifiedToken token = null;
+
+        // El JWT token viene en el formato "Bearer token"; se verifica una sola vez (firma y expiración)
+        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            Optional<TokenServices.VerifiedToken> verified = tokenServices.verify(requestTokenHeader.substring(7));
+            if (verified.isPresent()) {
+                token = verified.get();
+            } else {
+                logger.warn("Token JWT inválido o expirado");
             }
         }
 
-        // Si tenemos el email y no hay autenticación en el contexto actual
-        if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Validar el token
-            if (tokenServices.validateToken(jwtToken, email)) {
-                // Verificar que el usuario existe
-                if (authService.teacherExists(email)) {
-                    // Crear el token de autenticación
-                    UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(email, null, new ArrayList<>());
-
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    // Establecer la autenticación en el contexto de seguridad
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
-            }
+        // Si el token es válido, verificar que el usuario existe y no cambió su contraseña después (con caché de principales)
+        if (token != null && authService.isActivePrincipal(token.email(), token.issuedAt())) {
+            String email = token.email();
+            // Crear el token de autenticación
+            UsernamePasswordAuthenticationToken authToken =
+                new UsernamePasswordAuthenticationToken(email, null, authoritiesFor(email));
+
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+            // Establecer la autenticación en el contexto de seguridad
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private List<GrantedAuthority> authoritiesFor(String email) {
+        boolean admin = adminEmails.stream().anyMatch(adminEmail -> adminEmail.trim().equalsIgnoreCase(email));
+        return admin ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : List.of();
+    }
 }
@@ -36,7 +36,7 @@ public class SecurityConfig {
                 .requestMatchers("/", "/index.html", "/assets/**", "/*.js", "/*.css", "/*.png", "/*.svg", "/*.jpg", "/*.ico").permitAll()
                 
                 // Rutas públicas de autenticación
-                .requestMatchers("/api/auth/login", "/api/auth/check-email", "/api/auth/validate-token").permitAll()
+                .requestMatchers("/api/auth/login", "/api/auth/check-email", "/api/auth/validate-token", "/api/auth/refresh", "/api/auth/logout").permitAll()
 
                 // Rutas públicas de consulta (solo lectura)
                 .requestMatchers("/api/teachers/all", "/api/teachers/{id}").permitAll()
@@ -46,12 +46,19 @@ public class SecurityConfig {
 
                 // Rutas de archivos - descarga pública, upload requiere autenticación
                 .requestMatchers(HttpMethod.GET, "/api/files/activities/**").permitAll() // Descargar archivos
+                .requestMatchers(HttpMethod.HEAD, "/api/files/activities/**").permitAll() // Tamaño y validadores sin descargar
                 .requestMatchers("/uploads/**").permitAll() // Servir archivos estáticos
                 
+                // Operación y almacenamiento global: solo administradores. Van antes que /api/files/upload/**
+                // porque la primera regla que coincide es la que se aplica
+                .requestMatchers("/api/files/usage/reconcile", "/api/files/usage/levels/**").hasRole("ADMIN")
+                .requestMatchers("/api/files/gc/**", "/api/files/cache/stats", "/api/files/upload/admission/stats").hasRole("ADMIN")
+
                 // Rutas administrativas que requieren JWT
                 .requestMatchers("/api/files/upload/**").authenticated() // Upload requiere auth
                 .requestMatchers("/api/teachers/create", "/api/teachers/update/**", "/api/teachers/delete/**").authenticated()
                 .requestMatchers("/api/teachers/admin/**").authenticated()
+                .requestMatchers("/api/rate-limit/admin/**").hasRole("ADMIN") // Muestra IPs de clientes
                 .requestMatchers("/api/levels/create", "/api/levels/update/**", "/api/levels/delete/**").authenticated()
                 // Operaciones CUD de actividades requieren autenticación
                 .requestMatchers(HttpMethod.POST, "/api/activities").authenticated()
@@ -86,8 +93,10 @@ public class SecurityConfig {
             configuration.setAllowedOriginPatterns(Arrays.asList("http://localhost:*", "https://*.railway.app"));
         }
         
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "Upload-Offset", "X-File-Name"));
+        configuration.setExposedHeaders(Arrays.asList("Location", "Upload-Offset", "Retry-After",
+                "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset", "X-Next-Cursor", "Link"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L); // Cache preflight por 1 hora
 
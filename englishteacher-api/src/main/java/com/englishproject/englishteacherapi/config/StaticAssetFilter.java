@@ -0,0 +1,238 @@
+package com.englishproject.englishteacherapi.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sirve el bundle del frontend (classpath:/static) desde memoria.
+ *
+ * Al arrancar se cargan todos los archivos, se precalcula su versión gzip y su ETag; cada
+ * petición solo negocia la codificación y escribe los bytes ya preparados. Los archivos con
+ * hash en el nombre (los que genera Vite en /assets) se cachean como inmutables.
+ */
+@Component
+public class StaticAssetFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetFilter.class);
+    private static final String STATIC_LOCATION = "classpath:/static/";
+    private static final long MAX_ASSET_SIZE = 5L * 1024 * 1024; // Los archivos más grandes los sirve Spring
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    // Vite genera nombres como index-B2k9xQ1a.js
+    private static final Pattern FINGERPRINTED_PATTERN = Pattern.compile("^/assets/.+-[A-Za-z0-9_-]{8,}\\.[a-z0-9]+$");
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "public, no-cache";
+
+    private final Map<String, StaticAsset> assets = new ConcurrentHashMap<>();
+
+    /**
+     * Archivo precargado con su representación original y, si conviene, comprimida
+     */
+    private record StaticAsset(byte[] content, byte[] gzipContent, String contentType, String etag,
+                               String gzipEtag, String cacheControl) {
+    }
+
+    @PostConstruct
+    public void loadAssets() {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        long totalBytes = 0;
+        try {
+            Resource root = resolver.getResource(STATIC_LOCATION);
+            if (!root.exists()) {
+                logger.info("No hay frontend empaquetado en {}", STATIC_LOCATION);
+                return;
+            }
+            String rootUrl = root.getURL().toString();
+            if (!rootUrl.endsWith("/")) {
+                rootUrl += "/";
+            }
+            for (Resource resource : resolver.getResources(STATIC_LOCATION + "**")) {
+                String path = toRequestPath(rootUrl, resource);
+                if (path == null || !resource.isReadable() || resource.contentLength() > MAX_ASSET_SIZE) {
+                    continue;
+                }
+                byte[] content;
+                try (InputStream in = resource.getInputStream()) {
+                    content = in.readAllBytes();
+                }
+                assets.put(path, buildAsset(path, content));
+                totalBytes += content.length;
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudieron cargar los archivos estáticos: {}", e.getMessage());
+        }
+
+        if (assets.containsKey("/index.html")) {
+            assets.put("/", assets.get("/index.html"));
+        }
+        logger.info("Archivos estáticos precargados en memoria: {} ({} bytes)", assets.size(), totalBytes);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return true;
+        }
+        return !assets.containsKey(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        StaticAsset asset = assets.get(request.getRequestURI());
+        if (asset == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean useGzip = asset.gzipContent() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        // Cada codificación es una representación distinta y necesita su propio ETag
+        String etag = useGzip ? asset.gzipEtag() : asset.etag();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, asset.cacheControl());
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (asset.gzipContent() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if (matchesIfNoneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = useGzip ? asset.gzipContent() : asset.content();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(asset.contentType());
+        if (useGzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    private StaticAsset buildAsset(String path, byte[] content) throws IOException {
+        MediaType mediaType = MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        String contentType = mediaType.toString();
+        if (isText(mediaType) && mediaType.getCharset() == null) {
+            contentType += ";charset=UTF-8";
+        }
+
+        byte[] gzipContent = null;
+        if (isCompressible(mediaType) && content.length >= MIN_GZIP_SIZE) {
+            byte[] compressed = gzip(content);
+            if (compressed.length < content.length) {
+                gzipContent = compressed;
+            }
+        }
+
+        String hash = sha256(content).substring(0, 32);
+        String cacheControl = FINGERPRINTED_PATTERN.matcher(path).matches()
+                ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+        return new StaticAsset(content, gzipContent, contentType, "\"" + hash + "\"", "\"" + hash + "-gz\"", cacheControl);
+    }
+
+    private String toRequestPath(String rootUrl, Resource resource) throws IOException {
+        String url = resource.getURL().toString();
+        if (!url.startsWith(rootUrl) || url.endsWith("/")) {
+            return null; // Directorio o recurso fuera de static
+        }
+        return "/" + url.substring(rootUrl.length());
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            // gzip;q=0 significa que el cliente lo rechaza explícitamente
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matchesIfNoneMatch(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isText(MediaType mediaType) {
+        return mediaType.getType().equals("text")
+                || mediaType.getSubtype().equals("javascript")
+                || mediaType.getSubtype().equals("json");
+    }
+
+    private boolean isCompressible(MediaType mediaType) {
+        return isText(mediaType)
+                || mediaType.getSubtype().endsWith("+xml")
+                || mediaType.getSubtype().equals("xml")
+                || mediaType.getSubtype().equals("wasm");
+    }
+
+    private byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(content);
+        }
+        return buffer.toByteArray();
+    }
+
+    private String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.englishproject.englishteacherapi.config;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.englishproject.englishteacherapi.service.StorageQuotaService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Aplica la cuota del profesor a POST /api/files/upload/activity antes de que se lea el
+ * cuerpo, usando el Content-Length anunciado. Con multipart.resolve-lazily el multipart
+ * todavía no se procesó en este punto, así que una subida rechazada no llega a escribirse.
+ * Sin Content-Length la cuota se impone igual mientras se leen los bytes (BlobStoreService).
+ */
+@Component
+public class UploadQuotaInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadQuotaInterceptor.class);
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!"POST".equalsIgnoreCase(request.getMethod())) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return true; // Spring Security ya rechaza la petición
+        }
+
+        try {
+            storageQuotaService.checkQuota(authentication.getName(), request.getContentLengthLong());
+            return true;
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            logger.warn("Subida rechazada por cuota ({}): {} - {}", e.getScope(), authentication.getName(), e.getMessage());
+            Map<String, Object> body = new HashMap<>();
+            body.put("success", false);
+            body.put("message", e.getMessage());
+            body.put("scope", e.getScope());
+            body.put("usedBytes", e.getUsedBytes());
+            body.put("maxBytes", e.getMaxBytes());
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getOutputStream().write(jsonMapper.writeValueAsBytes(body));
+            return false;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.englishproject.englishteacherapi.controller;
 import com.englishproject.englishteacherapi.dto.ActivityDTO;
 import com.englishproject.englishteacherapi.model.Activity;
 import com.englishproject.englishteacherapi.service.ActivityService;
+import com.englishproject.englishteacherapi.service.StorageQuotaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -11,7 +13,6 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -22,10 +23,21 @@ public class ActivityController {
     @Autowired
     private ActivityService activityService;
 
+    @Value("${app.pagination.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-size:200}")
+    private int maxPageSize;
+
+    // Listado paginado por cursor; levelId, type y active se pueden combinar (sin active incluye las desactivadas)
     @GetMapping
-    public ResponseEntity<List<ActivityDTO>> getAllActivities() {
-        List<ActivityDTO> activities = activityService.getAllActivities();
-        return ResponseEntity.ok(activities);
+    public ResponseEntity<Object> getAllActivities(
+            @RequestParam(value = "levelId", required = false) Long levelId,
+            @RequestParam(value = "type", required = false) Activity.ActivityType type,
+            @RequestParam(value = "active", required = false) Boolean active,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return getActivitiesPage(levelId, type, active, cursor, size);
     }
 
     @GetMapping("/{id}")
@@ -36,23 +48,34 @@ public class ActivityController {
     }
 
     @GetMapping("/level/{levelId}")
-    public ResponseEntity<List<ActivityDTO>> getActivitiesByLevelId(@PathVariable @Positive(message = "ID del nivel debe ser positivo") Long levelId) {
-        List<ActivityDTO> activities = activityService.getActivitiesByLevelId(levelId);
-        return ResponseEntity.ok(activities);
+    public ResponseEntity<Object> getActivitiesByLevelId(
+            @PathVariable @Positive(message = "ID del nivel debe ser positivo") Long levelId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return getActivitiesPage(levelId, null, true, cursor, size);
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<List<ActivityDTO>> getActivitiesByType(@PathVariable Activity.ActivityType type) {
-        List<ActivityDTO> activities = activityService.getActivitiesByType(type);
-        return ResponseEntity.ok(activities);
+    public ResponseEntity<Object> getActivitiesByType(
+            @PathVariable Activity.ActivityType type,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return getActivitiesPage(null, type, true, cursor, size);
     }
 
     @GetMapping("/level/{levelId}/type/{type}")
-    public ResponseEntity<List<ActivityDTO>> getActivitiesByLevelAndType(
+    public ResponseEntity<Object> getActivitiesByLevelAndType(
             @PathVariable Long levelId,
-            @PathVariable Activity.ActivityType type) {
-        List<ActivityDTO> activities = activityService.getActivitiesByLevelAndType(levelId, type);
-        return ResponseEntity.ok(activities);
+            @PathVariable Activity.ActivityType type,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return getActivitiesPage(levelId, type, true, cursor, size);
+    }
+
+    private ResponseEntity<Object> getActivitiesPage(Long levelId, Activity.ActivityType type, Boolean active,
+                                                     String cursor, Integer size) {
+        return PageResponses.of(size, defaultPageSize, maxPageSize,
+                pageSize -> activityService.getActivitiesPage(levelId, type, active, cursor, pageSize));
     }
 
     @PostMapping
@@ -74,6 +97,8 @@ public class ActivityController {
         try {
             ActivityDTO createdActivity = activityService.createActivity(activityDTO);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdActivity);
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(e);
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -92,10 +117,27 @@ public class ActivityController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ActivityDTO> updateActivity(@PathVariable Long id, @RequestBody ActivityDTO activityDTO) {
-        return activityService.updateActivity(id, activityDTO)
-                .map(activity -> ResponseEntity.ok(activity))
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<Object> updateActivity(@PathVariable Long id, @RequestBody ActivityDTO activityDTO) {
+        try {
+            return activityService.updateActivity(id, activityDTO)
+                    .<ResponseEntity<Object>>map(activity -> ResponseEntity.ok(activity))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(e);
+        }
+    }
+
+    /**
+     * 413 cuando el archivo de la actividad dejaría al nivel por encima de su cuota
+     */
+    private ResponseEntity<Object> quotaExceeded(StorageQuotaService.QuotaExceededException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("scope", e.getScope());
+        response.put("usedBytes", e.getUsedBytes());
+        response.put("maxBytes", e.getMaxBytes());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
     }
 
     @PutMapping("/{id}/deactivate")
@@ -4,6 +4,7 @@ import com.englishproject.englishteacherapi.dto.LoginDTO;
 import com.englishproject.englishteacherapi.dto.TeacherDTO;
 import com.englishproject.englishteacherapi.model.Teacher;
 import com.englishproject.englishteacherapi.service.AuthService;
+import com.englishproject.englishteacherapi.service.PasswordHashingService;
 import com.englishproject.englishteacherapi.service.TokenServices;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -27,11 +28,12 @@ public class AuthController {
     @Autowired
     private TokenServices tokenServices;
 
+    private static final int EXPIRATION_TIME = 1800; // 30 minutos en segundos
+
     @PostMapping("/login")
     public ResponseEntity<Map<String, Object>> login(@Valid @RequestBody LoginDTO loginDTO, 
                                                       BindingResult result) {
         Map<String, Object> response = new HashMap<>();
-        final int EXPIRATION_TIME = 1800; // 30 minutos en segundos
 
         // Validar errores de entrada
         if (result.hasErrors()) {
@@ -71,6 +73,8 @@ public class AuthController {
                 response.put("message", "Login exitoso");
                 response.put("teacher", teacherDTO);
                 response.put("token", token);
+                response.put("expiresIn", EXPIRATION_TIME);
+                response.put("refreshToken", tokenServices.generateRefreshToken(teacher.getEmail()));
 
                 return ResponseEntity.ok(response);
             } else {
@@ -80,6 +84,14 @@ public class AuthController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
             }
 
+        } catch (PasswordHashingService.PasswordHashingBusyException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("retryAfter", e.getRetryAfterSeconds());
+
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Error interno del servidor");
@@ -120,12 +132,11 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            boolean isValid = tokenServices.validateToken(token);
+            Optional<TokenServices.VerifiedToken> verified = tokenServices.verify(token);
 
-            if (isValid) {
-                String email = tokenServices.extractEmail(token);
+            if (verified.isPresent()) {
                 response.put("valid", true);
-                response.put("email", email);
+                response.put("email", verified.get().email());
                 response.put("message", "Token válido");
             } else {
                 response.put("valid", false);
@@ -140,4 +151,78 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
+
+    /**
+     * Cambia un refresh token por un par nuevo (rotación): el refresh token usado queda revocado,
+     * así que cada uno sirve una sola vez y no hace falta volver a verificar la contraseña.
+     * Si llega uno ya usado, alguien más tiene una copia: se revoca toda su cadena, incluido el
+     * token que obtuvo quien lo usó primero, y el profesor tiene que volver a iniciar sesión.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            Optional<TokenServices.VerifiedToken> refreshToken = tokenServices.verifyRefreshToken(request.get("refreshToken"));
+
+            if (refreshToken.isEmpty()
+                    || !authService.isActivePrincipal(refreshToken.get().email(), refreshToken.get().issuedAt())) {
+                response.put("success", false);
+                response.put("message", "Refresh token inválido, expirado o ya utilizado");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+            // revoke falla si otra petición ya usó este refresh token: posible robo
+            if (!tokenServices.revoke(refreshToken.get())) {
+                tokenServices.revokeFamily(refreshToken.get());
+                response.put("success", false);
+                response.put("message", "Refresh token inválido, expirado o ya utilizado");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+
+            String email = refreshToken.get().email();
+            response.put("success", true);
+            response.put("message", "Token renovado");
+            response.put("token", tokenServices.generateToken(email, EXPIRATION_TIME));
+            response.put("expiresIn", EXPIRATION_TIME);
+            response.put("refreshToken", tokenServices.generateRefreshToken(email, refreshToken.get().familyId()));
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error al renovar el token");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Revoca el token de acceso del header Authorization y, si se envía, el refresh token y su cadena
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, Object>> logout(
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestBody(required = false) Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                tokenServices.verify(authorization.substring(7)).ifPresent(tokenServices::revoke);
+            }
+            if (request != null) {
+                tokenServices.verifyRefreshToken(request.get("refreshToken")).ifPresent(refreshToken -> {
+                    tokenServices.revoke(refreshToken);
+                    tokenServices.revokeFamily(refreshToken);
+                });
+            }
+
+            response.put("success", true);
+            response.put("message", "Sesión cerrada");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error al cerrar sesión");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
 }
@@ -1,35 +1,56 @@
 package com.englishproject.englishteacherapi.controller;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.model.UploadSession;
+import com.englishproject.englishteacherapi.service.BlobStoreService;
+import com.englishproject.englishteacherapi.service.ChunkedUploadService;
+import com.englishproject.englishteacherapi.service.FileIndexService;
+import com.englishproject.englishteacherapi.service.FileLayoutService;
+import com.englishproject.englishteacherapi.service.FileTypeDetector;
+import com.englishproject.englishteacherapi.service.ImageDerivativeService;
+import com.englishproject.englishteacherapi.service.MediaCacheService;
+import com.englishproject.englishteacherapi.service.MediaStreamingService;
+import com.englishproject.englishteacherapi.service.OrphanFileCollectorService;
+import com.englishproject.englishteacherapi.service.StorageQuotaService;
+import com.englishproject.englishteacherapi.service.UploadAdmissionService;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.Pattern;
 
 @RestController
@@ -40,9 +61,48 @@ public class FileController {
     private static final Logger logger = LoggerFactory.getLogger(FileController.class);
     private static final java.util.regex.Pattern SAFE_FILENAME_PATTERN = java.util.regex.Pattern.compile("^[a-zA-Z0-9._-]+$");
     private static final int MAX_FILENAME_LENGTH = 100;
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    private static final String FILE_NAME_HEADER = "X-File-Name";
+    private static final String UPLOAD_SESSION_ID_REGEX = "^[0-9a-f-]{36}$";
 
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
+
+    @Value("${app.upload.stream.max-file-size:524288000}") // 500 MB
+    private long maxStreamFileSize;
+
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Autowired
+    private MediaCacheService mediaCacheService;
+
+    @Autowired
+    private OrphanFileCollectorService orphanFileCollectorService;
+
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private FileStorage fileStorage;
     
     /**
      * Valida que el nombre de archivo sea seguro y esté dentro del directorio permitido
@@ -93,7 +153,7 @@ public class FileController {
         }
     }
 
-    @PostMapping("/upload/activity")
+    @PostMapping(value = "/upload/activity", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Map<String, Object>> uploadActivityFile(@RequestParam("file") MultipartFile file) {
         Map<String, Object> response = new HashMap<>();
         try {
@@ -110,21 +170,6 @@ public class FileController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            String contentType = file.getContentType();
-            if (!isValidFileType(contentType)) {
-                logger.error("Tipo de archivo no permitido: {}", contentType);
-                response.put("success", false);
-                response.put("message", "Tipo de archivo no permitido. Solo se permiten: jpg, jpeg, png, webp, pdf, mp3, mp4, doc, docx");
-                response.put("contentType", contentType);
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            Path uploadPath = Paths.get(uploadDir + "/activities");
-            if (!Files.exists(uploadPath)) {
-                logger.info("Directorio de subida no existe, creando: {}", uploadPath);
-                Files.createDirectories(uploadPath);
-            }
-
             String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
             if (originalFileName == null || originalFileName.isEmpty()) {
                 logger.error("Nombre de archivo original vacío o nulo.");
@@ -139,22 +184,27 @@ public class FileController {
                 return ResponseEntity.badRequest().body(response);
             }
             String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
-
-            Path filePath = uploadPath.resolve(uniqueFileName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
 
-            logger.info("Archivo subido exitosamente: {} (original: {})", uniqueFileName, originalFileName);
-            response.put("success", true);
-            response.put("message", "Archivo subido exitosamente");
-            response.put("fileName", uniqueFileName);
-            response.put("originalName", originalFileName);
-            response.put("filePath", "activities/" + uniqueFileName);
-            response.put("fileUrl", "/api/files/activities/" + uniqueFileName);
-            response.put("fileSize", file.getSize());
-
-            return ResponseEntity.ok(response);
+            // Guardar en el almacén direccionado por contenido (deduplica por SHA-256).
+            // El tipo se detecta por los primeros bytes, no por el Content-Type del cliente.
+            // El multipart ya está en el disco temporal: el permiso no cubre ninguna lectura de la red
+            BlobStoreService.StoreResult stored;
+            try (UploadAdmissionService.Permit permit = uploadAdmissionService.acquire()) {
+                stored = blobStoreService.store(file.getInputStream(), fileExtension, Long.MAX_VALUE, currentUserEmail());
+            }
+            imageDerivativeService.enqueue(stored.file());
+            return ResponseEntity.ok(buildUploadResponse(response, stored, originalFileName));
 
+        } catch (UploadAdmissionService.UploadRejectedException e) {
+            return uploadRejected(response, e);
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(response, e);
+        } catch (IllegalArgumentException e) {
+            logger.error("Archivo rechazado: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("contentType", file.getContentType());
+            return ResponseEntity.badRequest().body(response);
         } catch (IOException e) {
             logger.error("Error al subir archivo: {}", e.getMessage(), e);
             response.put("success", false);
@@ -168,58 +218,395 @@ public class FileController {
         }
     }
 
+    /**
+     * Subida en una sola pasada: el cuerpo de la petición es el archivo (sin multipart),
+     * por lo que no se genera ningún archivo temporal intermedio
+     */
+    @PostMapping(value = "/upload/activity", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> streamActivityFile(
+            @RequestHeader(FILE_NAME_HEADER) String rawFileName,
+            HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            String originalFileName = StringUtils.cleanPath(URLDecoder.decode(rawFileName, StandardCharsets.UTF_8));
+            if (originalFileName.isEmpty() || !originalFileName.contains(".")) {
+                logger.error("El archivo no tiene extensión: {}", originalFileName);
+                response.put("success", false);
+                response.put("message", "El archivo debe tener una extensión válida.");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            long contentLength = request.getContentLengthLong();
+            if (contentLength > maxStreamFileSize) {
+                response.put("success", false);
+                response.put("message", "El archivo supera el tamaño máximo permitido de " + maxStreamFileSize + " bytes");
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+            }
+
+            String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
+            // El almacén lee directamente de la red, al ritmo del cliente: esta subida solo ocupa
+            // el lugar de recepción que tomó UploadAdmissionInterceptor, no un permiso de escritura
+            BlobStoreService.StoreResult stored = blobStoreService.store(
+                    request.getInputStream(), fileExtension, maxStreamFileSize, currentUserEmail());
+            imageDerivativeService.enqueue(stored.file());
+            return ResponseEntity.ok(buildUploadResponse(response, stored, originalFileName));
+
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(response, e);
+        } catch (IllegalArgumentException e) {
+            logger.error("Archivo rechazado: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            logger.error("Error al subir archivo: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Error al subir archivo: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 503 con Retry-After cuando el control de admisión no deja pasar la subida
+     */
+    private ResponseEntity<Map<String, Object>> uploadRejected(Map<String, Object> response,
+                                                               UploadAdmissionService.UploadRejectedException e) {
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    /**
+     * 413 con el uso y la cuota cuando la subida no entra en la cuota del profesor
+     */
+    private ResponseEntity<Map<String, Object>> quotaExceeded(Map<String, Object> response,
+                                                              StorageQuotaService.QuotaExceededException e) {
+        logger.warn("Subida rechazada por cuota ({}): {}", e.getScope(), e.getMessage());
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("scope", e.getScope());
+        response.put("usedBytes", e.getUsedBytes());
+        response.put("maxBytes", e.getMaxBytes());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+    }
+
+    private Map<String, Object> buildUploadResponse(Map<String, Object> response, BlobStoreService.StoreResult stored,
+                                                    String originalFileName) {
+        StoredFile storedFile = stored.file();
+        String storedFileName = storedFile.getFileName();
+
+        logger.info("Archivo subido exitosamente: {} (original: {}, duplicado: {})",
+                storedFileName, originalFileName, stored.deduplicated());
+        response.put("success", true);
+        response.put("message", "Archivo subido exitosamente");
+        response.put("fileName", storedFileName);
+        response.put("originalName", originalFileName);
+        response.put("filePath", "activities/" + storedFileName);
+        response.put("fileUrl", "/api/files/activities/" + storedFileName);
+        response.put("fileSize", storedFile.getSize());
+        response.put("contentType", storedFile.getContentType());
+        response.put("sha256", storedFile.getSha256());
+        response.put("deduplicated", stored.deduplicated());
+        return response;
+    }
+
+    @PostMapping("/upload/sessions")
+    public ResponseEntity<Map<String, Object>> createUploadSession(
+            @RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Object rawFileName = request.get("fileName");
+            Object rawContentType = request.get("contentType");
+            Object rawSize = request.get("size");
+
+            String originalFileName = rawFileName != null ? StringUtils.cleanPath(rawFileName.toString()) : null;
+            if (originalFileName == null || originalFileName.isEmpty() || !originalFileName.contains(".")) {
+                response.put("success", false);
+                response.put("message", "El archivo debe tener un nombre con una extensión válida.");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            String contentType = rawContentType != null ? rawContentType.toString() : null;
+            if (!isValidFileType(contentType)) {
+                logger.error("Tipo de archivo no permitido: {}", contentType);
+                response.put("success", false);
+                response.put("message", "Tipo de archivo no permitido. Solo se permiten: jpg, jpeg, png, webp, pdf, mp3, mp4, doc, docx");
+                response.put("contentType", contentType);
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            if (!(rawSize instanceof Number)) {
+                response.put("success", false);
+                response.put("message", "Debe indicarse el tamaño del archivo en bytes.");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            String uploadedBy = currentUserEmail();
+            // El tamaño declarado se controla contra la cuota antes de reservar espacio en disco
+            storageQuotaService.checkQuota(uploadedBy, ((Number) rawSize).longValue());
+            UploadSession session = chunkedUploadService.createSession(
+                    originalFileName, contentType, ((Number) rawSize).longValue(), uploadedBy);
+
+            String uploadUrl = "/api/files/upload/sessions/" + session.getId();
+            response.put("success", true);
+            response.put("sessionId", session.getId());
+            response.put("uploadUrl", uploadUrl);
+            response.put("offset", session.getReceivedBytes());
+            response.put("size", session.getTotalSize());
+            response.put("maxChunkSize", chunkedUploadService.getMaxChunkSize());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, uploadUrl)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getReceivedBytes()))
+                    .body(response);
+
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(response, e);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("Error creando sesión de subida: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Error inesperado al crear la sesión de subida");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @RequestMapping(value = "/upload/sessions/{sessionId}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public ResponseEntity<Map<String, Object>> getUploadSession(
+            @PathVariable
+            @Pattern(regexp = UPLOAD_SESSION_ID_REGEX, message = "Sesión inválida")
+            String sessionId) {
+
+        Optional<UploadSession> session = chunkedUploadService.getSession(sessionId);
+        if (session.isEmpty() || !isSessionOwner(session.get())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("offset", session.get().getReceivedBytes());
+        response.put("size", session.get().getTotalSize());
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.get().getReceivedBytes()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(response);
+    }
+
+    @PatchMapping("/upload/sessions/{sessionId}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable
+            @Pattern(regexp = UPLOAD_SESSION_ID_REGEX, message = "Sesión inválida")
+            String sessionId,
+            @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+            HttpServletRequest request) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Optional<UploadSession> session = chunkedUploadService.getSession(sessionId);
+            if (session.isEmpty() || !isSessionOwner(session.get())) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // El permiso de escritura se toma dentro, recién al copiar la parte ya recibida
+            UploadSession updated = chunkedUploadService.appendChunk(
+                    sessionId, offset, request.getInputStream(), request.getContentLengthLong());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(updated.getReceivedBytes()))
+                    .build();
+
+        } catch (UploadAdmissionService.UploadRejectedException e) {
+            return uploadRejected(response, e);
+        } catch (ChunkedUploadService.OffsetMismatchException e) {
+            // El cliente debe retomar desde el offset confirmado
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("offset", e.getExpectedOffset());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(e.getExpectedOffset()))
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            logger.error("Error escribiendo parte de la sesión {}: {}", sessionId, e.getMessage());
+            response.put("success", false);
+            response.put("message", "Error al escribir la parte del archivo");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @PostMapping("/upload/sessions/{sessionId}/complete")
+    public ResponseEntity<Map<String, Object>> completeUploadSession(
+            @PathVariable
+            @Pattern(regexp = UPLOAD_SESSION_ID_REGEX, message = "Sesión inválida")
+            String sessionId) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Optional<UploadSession> session = chunkedUploadService.getSession(sessionId);
+            if (session.isEmpty() || !isSessionOwner(session.get())) {
+                return ResponseEntity.notFound().build();
+            }
+
+            String originalFileName = session.get().getOriginalFileName();
+            String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
+            BlobStoreService.StoreResult stored;
+            try (UploadAdmissionService.Permit permit = uploadAdmissionService.acquire()) {
+                stored = chunkedUploadService.complete(sessionId, fileExtension);
+            }
+            imageDerivativeService.enqueue(stored.file());
+            return ResponseEntity.ok(buildUploadResponse(response, stored, originalFileName));
+
+        } catch (UploadAdmissionService.UploadRejectedException e) {
+            return uploadRejected(response, e);
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return quotaExceeded(response, e);
+        } catch (ChunkedUploadService.OffsetMismatchException e) {
+            response.put("success", false);
+            response.put("message", "La subida está incompleta");
+            response.put("offset", e.getExpectedOffset());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(e.getExpectedOffset()))
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            logger.error("Archivo rechazado al completar la sesión {}: {}", sessionId, e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("Error completando la sesión de subida {}: {}", sessionId, e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Error inesperado al completar la subida");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @DeleteMapping("/upload/sessions/{sessionId}")
+    public ResponseEntity<Void> cancelUploadSession(
+            @PathVariable
+            @Pattern(regexp = UPLOAD_SESSION_ID_REGEX, message = "Sesión inválida")
+            String sessionId) {
+        try {
+            Optional<UploadSession> session = chunkedUploadService.getSession(sessionId);
+            if (session.isEmpty() || !isSessionOwner(session.get())) {
+                return ResponseEntity.notFound().build();
+            }
+            chunkedUploadService.cancel(sessionId);
+            return ResponseEntity.noContent().build();
+        } catch (IOException e) {
+            logger.error("Error cancelando la sesión de subida {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private String currentUserEmail() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    private boolean isSessionOwner(UploadSession session) {
+        String email = currentUserEmail();
+        return session.getUploadedBy() != null && session.getUploadedBy().equals(email);
+    }
+
     @GetMapping("/activities/{fileName}")
-    public ResponseEntity<Resource> downloadActivityFile(
+    public void downloadActivityFile(
             @PathVariable 
             @Pattern(regexp = "^[a-zA-Z0-9._-]{1,100}$", message = "Nombre de archivo inválido")
-            String fileName) {
+            String fileName,
+            @RequestParam(value = "variant", required = false) String variant,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         
         try {
-            // Validación de seguridad
-            if (!isSecureFilePath(fileName, "activities")) {
-                logger.warn("Intento de acceso no autorizado al archivo: {}", fileName);
-                return ResponseEntity.badRequest().build();
+            // Camino normal: una búsqueda exacta en el índice en memoria. Un nombre con caracteres
+            // peligrosos nunca coincide con una entrada, así que las validaciones quedan para el fallo
+            Optional<FileIndexService.FileMetadata> metadata = fileIndexService.lookup(fileName);
+            if (metadata.isEmpty()) {
+                if (!isSecureFilePath(fileName, "activities")) {
+                    logger.warn("Intento de acceso no autorizado al archivo: {}", fileName);
+                    response.setStatus(HttpStatus.BAD_REQUEST.value());
+                    return;
+                }
+                // Archivos que todavía no estaban indexados: se sirven sin ETag mientras se indexan en segundo plano
+                metadata = blobStoreService.findMetadata(fileName);
             }
-            
-            // Construir path seguro
-            Path basePath = Paths.get(uploadDir, "activities").toAbsolutePath().normalize();
-            Path filePath = basePath.resolve(fileName).normalize();
-            
-            // Verificación adicional de seguridad
-            if (!filePath.startsWith(basePath)) {
-                logger.error("Path traversal bloqueado: {}", filePath);
-                return ResponseEntity.badRequest().build();
+            if (metadata.isEmpty()) {
+                logger.info("Archivo no encontrado o no legible: {}", fileName);
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
-            
-            Resource resource = new UrlResource(filePath.toUri());
 
-            if (resource.exists() && resource.isReadable()) {
-                // Determinar el tipo de contenido
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
+            // Variante reducida de la imagen; si todavía no se generó se envía la original
+            if (variant != null) {
+                Optional<ImageDerivativeService.Variant> requested = ImageDerivativeService.Variant.fromParam(variant);
+                if (requested.isEmpty()) {
+                    logger.warn("Variante de imagen inválida: {}", variant);
+                    response.setStatus(HttpStatus.BAD_REQUEST.value());
+                    return;
                 }
-                
-                // Sanitizar el nombre del archivo para la respuesta
-                String safeFileName = StringUtils.cleanPath(resource.getFilename());
-
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + safeFileName + "\"")
-                        .body(resource);
-            } else {
-                logger.info("Archivo no encontrado o no legible: {}", fileName);
-                return ResponseEntity.notFound().build();
+                String digest = metadata.get().sha256();
+                Optional<Path> variantPath = imageDerivativeService.resolveVariant(fileName, requested.get());
+                if (variantPath.isPresent()) {
+                    mediaStreamingService.stream(variantPath.get(), imageDerivativeService.contentTypeFor(fileName),
+                            StringUtils.cleanPath(variantPath.get().getFileName().toString()),
+                            digest != null ? digest + "-" + requested.get().pathSegment() : null, request, response);
+                } else if (!fileStorage.isLocal()) {
+                    // La original no debe quedar cacheada como inmutable bajo la URL de la variante
+                    mediaStreamingService.streamFromStorage(fileStorage, metadata.get(), null,
+                            MediaStreamingService.REVALIDATE_CACHE_CONTROL, request, response);
+                } else {
+                    // La original no debe quedar cacheada como inmutable bajo la URL de la variante
+                    String contentType = metadata.get().contentType() != null
+                            ? metadata.get().contentType() : "application/octet-stream";
+                    mediaStreamingService.stream(fileLayoutService.pathFor(fileName, metadata.get().sharded()),
+                            contentType, fileName, null, MediaStreamingService.REVALIDATE_CACHE_CONTROL, request, response);
+                }
+                return;
+            }
+
+            if (!fileStorage.isLocal()) {
+                // Almacenamiento compartido: se piden al backend solo los rangos solicitados
+                mediaStreamingService.streamFromStorage(fileStorage, metadata.get(), metadata.get().sha256(),
+                        null, request, response);
+                return;
+            }
+
+            // Envío con soporte de Range / If-Range y transferencia sin copias en el heap
+            Path indexedPath = fileLayoutService.pathFor(fileName, metadata.get().sharded());
+            try {
+                mediaStreamingService.stream(indexedPath, metadata.get(), request, response);
+            } catch (NoSuchFileException e) {
+                // La migración de directorios pudo moverlo justo después de leer el índice
+                Optional<Path> located = fileLayoutService.locate(fileName);
+                if (located.isEmpty() || response.isCommitted()) {
+                    throw e;
+                }
+                mediaStreamingService.stream(located.get(), metadata.get(), request, response);
+            }
+        } catch (NoSuchFileException e) {
+            // El índice tenía la entrada pero el archivo ya no está en disco
+            logger.warn("Archivo indexado sin contenido en disco: {}", fileName);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
             }
-        } catch (MalformedURLException e) {
-            logger.error("URL malformada para archivo: {}", fileName, e);
-            return ResponseEntity.badRequest().build();
         } catch (IOException e) {
+            if (response.isCommitted()) {
+                // El cliente cortó la conexión (por ejemplo al adelantar un audio o video)
+                logger.debug("Transferencia interrumpida para archivo: {}", fileName);
+                return;
+            }
             logger.error("Error de E/O accediendo al archivo: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
         } catch (Exception e) {
             logger.error("Error inesperado accediendo al archivo: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -252,18 +639,32 @@ public class FileController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
             }
             
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-                logger.info("Archivo eliminado exitosamente: {}", fileName);
-                response.put("success", true);
-                response.put("message", "Archivo eliminado exitosamente");
-                return ResponseEntity.ok(response);
-            } else {
+            // Solo se borran los bytes cuando se libera la última referencia al blob, y nada mientras algo lo use
+            BlobStoreService.ReleaseResult result = blobStoreService.release(fileName, orphanFileCollectorService::isUnreferenced);
+            if (result == BlobStoreService.ReleaseResult.NOT_FOUND) {
                 logger.info("Intento de eliminar archivo inexistente: {}", fileName);
                 response.put("success", false);
                 response.put("message", "Archivo no encontrado");
                 return ResponseEntity.notFound().build();
             }
+
+            if (result == BlobStoreService.ReleaseResult.IN_USE) {
+                // Sin error para que el frontend no reintente: el recolector lo borra cuando deje de usarse
+                response.put("success", true);
+                response.put("message", "El archivo sigue en uso y se conserva");
+                response.put("bytesDeleted", false);
+                return ResponseEntity.ok(response);
+            }
+
+            if (result == BlobStoreService.ReleaseResult.DELETED) {
+                imageDerivativeService.deleteDerivatives(fileName);
+            }
+
+            logger.info("Archivo eliminado exitosamente: {} ({})", fileName, result);
+            response.put("success", true);
+            response.put("message", "Archivo eliminado exitosamente");
+            response.put("bytesDeleted", result == BlobStoreService.ReleaseResult.DELETED);
+            return ResponseEntity.ok(response);
         } catch (IOException e) {
             logger.error("Error eliminando archivo: {}", fileName, e);
             response.put("success", false);
@@ -277,18 +678,96 @@ public class FileController {
         }
     }
 
+    /**
+     * Espacio ocupado por los archivos de las actividades de un nivel
+     */
+    @GetMapping("/usage/levels/{levelId}")
+    public ResponseEntity<Map<String, Object>> getLevelUsage(@PathVariable Long levelId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("levelId", levelId);
+        response.put("bytes", fileIndexService.getLevelUsageBytes(levelId));
+        response.put("fileCount", fileIndexService.getLevelFileCount(levelId));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Espacio ocupado por el profesor autenticado según su contador incremental, con las cuotas vigentes
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<Map<String, Object>> getStorageUsage() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("usage", storageQuotaService.getUsage(currentUserEmail()));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Fuerza una conciliación de los contadores de uso con stored_files
+     */
+    @PostMapping("/usage/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileStorageUsage() {
+        Map<String, Object> response = new HashMap<>();
+        StorageQuotaService.ReconcileReport report = storageQuotaService.reconcile();
+        response.put("success", true);
+        response.put("checked", report.checked());
+        response.put("corrected", report.corrected());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estado de la caché en memoria de archivos pequeños
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("cache", mediaCacheService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Subidas en curso y en espera según el control de admisión
+     */
+    @GetMapping("/upload/admission/stats")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("admission", uploadAdmissionService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Informe (sin borrar nada) de los archivos que eliminaría el recolector de huérfanos.
+     * El recorrido corre en segundo plano: la primera llamada (o refresh=true) lo inicia y
+     * responde 202; las siguientes devuelven el último informe terminado.
+     */
+    @GetMapping("/gc/report")
+    public ResponseEntity<Map<String, Object>> getOrphanReport(
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        Map<String, Object> response = new HashMap<>();
+        Optional<OrphanFileCollectorService.ReportResult> lastReport = orphanFileCollectorService.getLastReport();
+        if (refresh || lastReport.isEmpty()) {
+            orphanFileCollectorService.startReport(Math.max(0, Math.min(limit, 1000)));
+        }
+        response.put("success", true);
+        response.put("dryRun", true);
+        response.put("running", orphanFileCollectorService.isReportRunning());
+        if (lastReport.isEmpty()) {
+            response.put("message", "Informe en preparación, consulta de nuevo en unos minutos");
+            return ResponseEntity.accepted().body(response);
+        }
+        OrphanFileCollectorService.CollectionReport report = lastReport.get().report();
+        response.put("generatedAt", lastReport.get().generatedAt());
+        response.put("scanned", report.scanned());
+        response.put("orphanCount", report.orphanCount());
+        response.put("orphanBytes", report.orphanBytes());
+        response.put("orphans", report.orphans());
+        return ResponseEntity.ok(response);
+    }
+
     private boolean isValidFileType(String contentType) {
-        if (contentType == null) return false;
-        
-        return contentType.equals("image/jpeg") ||
-               contentType.equals("image/jpg") ||
-               contentType.equals("image/png") ||
-               contentType.equals("image/webp") ||
-               contentType.equals("application/pdf") ||
-               contentType.equals("audio/mpeg") ||
-               contentType.equals("audio/mp3") ||
-               contentType.equals("video/mp4") ||
-               contentType.equals("application/msword") ||
-               contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        return FileTypeDetector.isAllowedType(contentType);
     }
-}
\ No newline at end of file
+}
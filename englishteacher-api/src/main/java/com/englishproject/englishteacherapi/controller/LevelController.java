@@ -1,12 +1,19 @@
 package com.englishproject.englishteacherapi.controller;
 
 import com.englishproject.englishteacherapi.dto.LevelDTO;
+import com.englishproject.englishteacherapi.service.LevelPackService;
 import com.englishproject.englishteacherapi.service.LevelService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/levels")
@@ -16,6 +23,9 @@ public class LevelController {
     @Autowired
     private LevelService levelService;
 
+    @Autowired
+    private LevelPackService levelPackService;
+
     @GetMapping
     public ResponseEntity<List<LevelDTO>> getAllLevels() {
         List<LevelDTO> levels = levelService.getAllLevels();
@@ -29,6 +39,27 @@ public class LevelController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Descarga todo el material del nivel en un único ZIP generado al vuelo
+     */
+    @GetMapping("/{id}/pack")
+    public ResponseEntity<StreamingResponseBody> downloadLevelPack(@PathVariable Long id) {
+        Optional<LevelPackService.LevelPack> pack = levelPackService.preparePack(id);
+        if (pack.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(levelPackService.packFileName(pack.get().level()), StandardCharsets.UTF_8)
+                .build();
+        StreamingResponseBody body = out -> levelPackService.writePack(pack.get(), out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(body);
+    }
+
     @GetMapping("/by-name/{name}")
     public ResponseEntity<LevelDTO> getLevelByName(@PathVariable String name) {
         return levelService.getLevelByName(name)
@@ -0,0 +1,49 @@
+package com.englishproject.englishteacherapi.controller;
+
+import com.englishproject.englishteacherapi.dto.PageCursor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Respuesta común de los listados paginados por cursor: la lista de la página en el cuerpo
+ * (el formato de siempre) y la página siguiente en X-Next-Cursor y Link
+ */
+final class PageResponses {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PageResponses() {
+    }
+
+    /**
+     * Ajusta el tamaño pedido a [1, maxSize] (defaultSize si no viene) y arma la respuesta de la página
+     * @param loader Carga la página con el tamaño ya ajustado; un IllegalArgumentException es un cursor inválido
+     */
+    static ResponseEntity<Object> of(Integer size, int defaultSize, int maxSize, IntFunction<PageCursor.Page<?>> loader) {
+        int pageSize = size != null ? Math.max(1, Math.min(size, maxSize)) : defaultSize;
+        PageCursor.Page<?> page;
+        try {
+            page = loader.apply(pageSize);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.nextCursor())
+                    .replaceQueryParam("size", pageSize)
+                    .build().toUriString();
+            builder.header(NEXT_CURSOR_HEADER, page.nextCursor())
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return builder.body(page.items());
+    }
+}
@@ -0,0 +1,38 @@
+package com.englishproject.englishteacherapi.controller;
+
+import com.englishproject.englishteacherapi.ratelimit.HeavyHitterTracker;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitPolicyRegistry;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/rate-limit")
+@CrossOrigin(origins = "*")
+public class RateLimitController {
+
+    @Autowired
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @Autowired
+    private RateLimitStore rateLimitStore;
+
+    @Autowired
+    private RateLimitPolicyRegistry rateLimitPolicyRegistry;
+
+    // Endpoint administrativo protegido: IPs con más peticiones en los últimos minutos
+    @GetMapping("/admin/top-offenders")
+    public ResponseEntity<Map<String, Object>> getTopOffenders() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("offenders", heavyHitterTracker.getTopOffenders());
+        response.put("store", rateLimitStore.getStats());
+        response.put("policies", rateLimitPolicyRegistry.getPolicies().stream()
+                .map(policy -> policy.getName())
+                .toList());
+        return ResponseEntity.ok(response);
+    }
+}
@@ -1,8 +1,10 @@
 package com.englishproject.englishteacherapi.controller;
 
 import com.englishproject.englishteacherapi.dto.TeacherDTO;
+import com.englishproject.englishteacherapi.service.PasswordHashingService;
 import com.englishproject.englishteacherapi.service.TeacherService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -12,7 +14,6 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,11 +24,19 @@ public class TeacherController {
     @Autowired
     private TeacherService teacherService;
 
-    // Endpoint público para obtener todos los teachers
+    @Value("${app.pagination.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-size:200}")
+    private int maxPageSize;
+
+    // Endpoint público para obtener los teachers, paginado por cursor
     @GetMapping("/all")
-    public ResponseEntity<List<TeacherDTO>> getAllTeachers() {
-        List<TeacherDTO> teachers = teacherService.getAllTeachers();
-        return ResponseEntity.ok(teachers);
+    public ResponseEntity<Object> getAllTeachers(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return PageResponses.of(size, defaultPageSize, maxPageSize,
+                pageSize -> teacherService.getTeachersPage(cursor, pageSize));
     }
 
     // Endpoint público para obtener un teacher por ID
@@ -66,6 +75,12 @@ public class TeacherController {
             response.put("created_by", authenticatedEmail);
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (PasswordHashingService.PasswordHashingBusyException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Error al crear profesor: " + e.getMessage());
@@ -95,6 +110,12 @@ public class TeacherController {
                     response.put("message", "Profesor no encontrado");
                     return ResponseEntity.notFound().build();
                 });
+        } catch (PasswordHashingService.PasswordHashingBusyException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Error al actualizar profesor: " + e.getMessage());
@@ -4,6 +4,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.util.Map;
+
+import com.englishproject.englishteacherapi.model.Activity;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,4 +16,5 @@ public class LevelDTO {
     private String name;
     private String description;
     private Long activitiesCount;
+    private Map<Activity.ActivityType, Long> activitiesByType; // Actividades activas por tipo
 }
@@ -0,0 +1,73 @@
+package com.englishproject.englishteacherapi.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Posición en un listado paginado por keyset: la clave de orden de la última fila devuelta.
+ *
+ * Al cliente se le entrega codificada en base64url como un valor opaco; la página siguiente
+ * busca las filas posteriores a esa clave en lugar de saltear filas con OFFSET, así que el
+ * costo no crece con el número de página y las altas o bajas no corren los resultados.
+ *
+ * El cursor lleva además un resumen del listado y los filtros con que se emitió (scope): usado
+ * con otros filtros se rechaza, en vez de devolver una página que empieza en un punto arbitrario.
+ */
+public record PageCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String VERSION = "v2";
+
+    /**
+     * Página de resultados y cursor de la siguiente, o null si es la última
+     */
+    public record Page<T>(List<T> items, String nextCursor) {
+    }
+
+    /**
+     * @param scope Listado y filtros de la consulta, por ejemplo "activities|level=3|type=|active=true"
+     */
+    public String encode(String scope) {
+        String raw = VERSION + "|" + scopeHash(scope) + "|" + (createdAt != null ? createdAt.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param scope El mismo valor que se usó al emitirlo
+     * @return null si no se envió cursor (primera página)
+     * @throws IllegalArgumentException si el cursor no es uno emitido por la API o es de otro listado o filtros
+     */
+    public static PageCursor decode(String cursor, String scope) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            parts = raw.split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (parts.length != 4 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (!scopeHash(scope).equals(parts[1])) {
+            throw new IllegalArgumentException("El cursor no corresponde a estos filtros");
+        }
+        try {
+            return new PageCursor(parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]), Long.valueOf(parts[3]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    // No es un secreto: solo distingue listados, así que alcanza con un CRC corto
+    private static String scopeHash(String scope) {
+        CRC32 crc = new CRC32();
+        crc.update(scope.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -7,7 +7,11 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "activities")
+@Table(name = "activities", indexes = {
+        // Orden de la paginación por keyset, con y sin filtro por nivel
+        @Index(name = "idx_activity_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_activity_level_created_id", columnList = "level_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,25 @@
+package com.englishproject.englishteacherapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "maintenance_cursors")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MaintenanceCursor {
+
+    @Id
+    @Column(length = 50)
+    private String name; // Tarea de mantenimiento dueña del cursor
+
+    @Column(nullable = false)
+    private Long position = 0L; // Último id procesado; la tarea retoma desde acá después de un reinicio
+
+    @Column
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,34 @@
+package com.englishproject.englishteacherapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "rate_limit_counters", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rate_limit_window", columnNames = {"client_key", "policy", "window_start"})
+}, indexes = {
+        @Index(name = "idx_rate_limit_window_start", columnList = "window_start")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "client_key", nullable = false, length = 100)
+    private String clientKey; // IP del cliente
+
+    @Column(nullable = false, length = 50)
+    private String policy; // Nombre de la política en rate-limit-policies.properties
+
+    @Column(name = "window_start", nullable = false)
+    private Long windowStart; // Inicio de la ventana fija en epoch millis
+
+    @Column(nullable = false)
+    private Integer reserved = 0; // Peticiones ya reservadas por todas las instancias en la ventana
+}
@@ -0,0 +1,34 @@
+package com.englishproject.englishteacherapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "revoked_tokens", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_revoked_token_id", columnNames = {"token_id"})
+}, indexes = {
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_id", nullable = false, length = 64)
+    private String tokenId; // Claim jti del token revocado
+
+    @Column(nullable = false)
+    private String email;
+
+    @Column(name = "expires_at", nullable = false)
+    private Long expiresAt; // Expiración del token en epoch millis: después de eso la fila ya no hace falta
+
+    @Column(name = "revoked_at", nullable = false)
+    private Long revokedAt;
+}
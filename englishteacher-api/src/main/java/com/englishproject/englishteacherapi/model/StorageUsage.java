@@ -0,0 +1,45 @@
+package com.englishproject.englishteacherapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "storage_usage", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_storage_usage_scope_owner", columnNames = {"scope", "owner_key"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Scope scope;
+
+    @Column(name = "owner_key", nullable = false, length = 150)
+    private String ownerKey; // Id del nivel o email del profesor, según el alcance
+
+    @Column(nullable = false)
+    private Long bytes = 0L;
+
+    @Column(nullable = false)
+    private Long fileCount = 0L;
+
+    @Version
+    private Long version = 0L; // Cada incremento lo aumenta; la conciliación no pisa cambios concurrentes
+
+    @Column
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum Scope {
+        LEVEL,
+        UPLOADER
+    }
+}
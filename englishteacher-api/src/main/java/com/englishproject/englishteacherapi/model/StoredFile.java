@@ -0,0 +1,54 @@
+package com.englishproject.englishteacherapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "stored_files", indexes = {
+        @Index(name = "idx_stored_files_sha256", columnList = "sha256")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 100)
+    private String fileName; // Nombre público del blob (sha256 + extensión)
+
+    @Column(nullable = false, length = 64)
+    private String sha256; // Digest del contenido en hexadecimal
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column
+    private Long crc32; // CRC-32 del contenido, para incluirlo en ZIP sin comprimir
+
+    @Column
+    private String contentType;
+
+    @Column(nullable = false)
+    private Integer refCount = 1; // Cantidad de subidas que apuntan a este blob
+
+    @Column
+    private Long lastModified; // Fecha de modificación del archivo en disco (epoch millis)
+
+    @Column
+    private Boolean sharded = false; // true si está en activities/ab/cd/ en lugar de activities/
+
+    @Column
+    private String uploadedBy; // Email del profesor que subió el contenido por primera vez
+
+    @Column
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column
+    private LocalDateTime lastUploadAt = LocalDateTime.now(); // Última subida que apuntó a este blob (nueva o deduplicada)
+}
@@ -4,7 +4,6 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Entity
 @Table(name = "teachers")
@@ -44,18 +43,12 @@ public class Teacher {
     @Column(length = 1000)
     private String specialties;
 
+    // Hash BCrypt; se calcula y verifica con PasswordHashingService
     @Column(nullable = false)
     private String password;
 
-    private static final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-
-    // Método para establecer la contraseña con hash
-    public void setPasswordWithHash(String plainPassword) {
-        this.password = passwordEncoder.encode(plainPassword);
-    }
-
-    // Método para validar contraseña
-    public boolean validatePassword(String plainPassword) {
-        return passwordEncoder.matches(plainPassword, this.password);
-    }
+    // Último cambio de contraseña en epoch millis, truncado a segundos como el iat de los JWT:
+    // los tokens emitidos antes dejan de valer. null si nunca cambió
+    @Column(name = "credentials_changed_at")
+    private Long credentialsChangedAt;
 }
@@ -0,0 +1,132 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Dirección IP del cliente empaquetada en dos long (128 bits), usada como clave de los límites.
+ *
+ * Las IPv4 se guardan como IPv4-mapped (::ffff:a.b.c.d), así ambas familias comparten un
+ * solo formato. Ocupa lo mismo que dos long sin importar cómo vino escrita en el header.
+ */
+public record ClientAddress(long high, long low) {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    /**
+     * Interpreta una IP literal
+     * @return null si el texto no es una IPv4 o IPv6 válida (nunca resuelve nombres por DNS)
+     */
+    public static ClientAddress parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim();
+        if (text.isEmpty() || text.length() > 45) {
+            return null;
+        }
+        if (text.indexOf(':') < 0) {
+            long ipv4 = parseIpv4(text);
+            return ipv4 < 0 ? null : new ClientAddress(0, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        if (text.startsWith("[") && text.endsWith("]")) {
+            text = text.substring(1, text.length() - 1);
+        }
+        if (text.indexOf('%') >= 0) {
+            text = text.substring(0, text.indexOf('%')); // Sin zona (fe80::1%eth0)
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return null;
+            }
+        }
+        try {
+            // Con ':' el texto solo puede ser un literal IPv6, así que no hay consulta DNS
+            return fromBytes(InetAddress.getByName(text).getAddress());
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    public static ClientAddress fromBytes(byte[] address) {
+        if (address.length == 4) {
+            long ipv4 = 0;
+            for (byte b : address) {
+                ipv4 = (ipv4 << 8) | (b & 0xFF);
+            }
+            return new ClientAddress(0, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (address[i] & 0xFF);
+            low = (low << 8) | (address[i + 8] & 0xFF);
+        }
+        return new ClientAddress(high, low);
+    }
+
+    /**
+     * Dotted-quad estricto; -1 si no es válido
+     */
+    private static long parseIpv4(String text) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || ++octets > 4) {
+                    return -1;
+                }
+                result = (result << 8) | value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? result : -1;
+    }
+
+    public boolean isIpv4() {
+        return high == 0 && (low >>> 32) == 0xFFFFL;
+    }
+
+    /**
+     * Conserva solo los primeros prefixLength bits (en bits IPv6; para IPv4 se suman 96)
+     */
+    public ClientAddress mask(int prefixLength) {
+        if (prefixLength >= 128) {
+            return this;
+        }
+        if (prefixLength <= 0) {
+            return new ClientAddress(0, 0);
+        }
+        if (prefixLength <= 64) {
+            return new ClientAddress(high & (-1L << (64 - prefixLength)), 0);
+        }
+        return new ClientAddress(high, low & (-1L << (128 - prefixLength)));
+    }
+
+    @Override
+    public String toString() {
+        if (isIpv4()) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // Imposible con 16 bytes
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Determina la IP real del cliente para el rate limiting.
+ *
+ * X-Forwarded-For y X-Real-IP los puede escribir cualquiera, así que solo se tienen en cuenta
+ * cuando la conexión viene de un proxy de confianza (app.rate-limit.trusted-proxies). En ese
+ * caso X-Forwarded-For se recorre de derecha a izquierda salteando los proxies propios, y el
+ * primer salto ajeno es el cliente: lo que haya agregado el cliente más a la izquierda se ignora.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientAddressResolver.class);
+    private static final ClientAddress UNKNOWN = new ClientAddress(0, 0);
+
+    @Value("${app.rate-limit.trusted-proxies:127.0.0.0/8,::1/128}")
+    private List<String> trustedProxies;
+
+    // En producción la app corre detrás del proxy de la plataforma: sin su red configurada todos los
+    // clientes compartirían la IP del proxy (un solo contador para todos), así que no se arranca
+    @Value("${app.rate-limit.require-trusted-proxies:false}")
+    private boolean requireTrustedProxies;
+
+    // Con IPv6 cada cliente suele tener un /64 entero: limitar por dirección se evade rotándola
+    @Value("${app.rate-limit.ipv6-prefix-length:64}")
+    private int ipv6PrefixLength;
+
+    private List<Network> trustedNetworks = List.of();
+    private final AtomicBoolean untrustedForwardWarned = new AtomicBoolean();
+
+    private record Network(ClientAddress base, int prefixLength) {
+        boolean contains(ClientAddress address) {
+            return address.mask(prefixLength).equals(base);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        List<Network> networks = new ArrayList<>();
+        for (String entry : trustedProxies) {
+            String cidr = entry.trim();
+            if (cidr.isEmpty()) {
+                continue;
+            }
+            int slash = cidr.indexOf('/');
+            ClientAddress base = ClientAddress.parse(slash < 0 ? cidr : cidr.substring(0, slash));
+            if (base == null) {
+                throw new IllegalArgumentException("Proxy de confianza inválido: " + cidr);
+            }
+            int prefix = slash < 0 ? 128 : Integer.parseInt(cidr.substring(slash + 1).trim()) + (base.isIpv4() ? 96 : 0);
+            if (prefix < 0 || prefix > 128) {
+                throw new IllegalArgumentException("Prefijo inválido en proxy de confianza: " + cidr);
+            }
+            networks.add(new Network(base.mask(prefix), prefix));
+        }
+        if (networks.isEmpty() && requireTrustedProxies) {
+            throw new IllegalStateException("app.rate-limit.trusted-proxies está vacío: configurar RATE_LIMIT_TRUSTED_PROXIES "
+                    + "con la red del proxy de entrada; sin eso todos los clientes comparten un mismo límite");
+        }
+        trustedNetworks = List.copyOf(networks);
+        logger.info("Rate limiting: {} redes de proxies de confianza, IPv6 agrupado por /{}", trustedNetworks.size(), ipv6PrefixLength);
+    }
+
+    public ClientAddress resolve(HttpServletRequest request) {
+        ClientAddress remote = ClientAddress.parse(request.getRemoteAddr());
+        if (remote == null) {
+            return UNKNOWN;
+        }
+        if (!isTrusted(remote)) {
+            if (request.getHeader("X-Forwarded-For") != null && untrustedForwardWarned.compareAndSet(false, true)) {
+                logger.warn("X-Forwarded-For recibido desde {}, que no es un proxy de confianza: se limita por la IP de la conexión. "
+                        + "Si la app está detrás de un proxy, agregar su red a app.rate-limit.trusted-proxies", request.getRemoteAddr());
+            }
+            return normalize(remote);
+        }
+
+        ClientAddress client = remote;
+        List<String> forwarded = Collections.list(request.getHeaders("X-Forwarded-For"));
+        for (int h = forwarded.size() - 1; h >= 0; h--) {
+            String[] hops = forwarded.get(h).split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                ClientAddress hop = ClientAddress.parse(hops[i]);
+                if (hop == null) {
+                    return normalize(client); // Salto ilegible: se queda con el último proxy conocido
+                }
+                client = hop;
+                if (!isTrusted(hop)) {
+                    return normalize(hop);
+                }
+            }
+        }
+
+        if (forwarded.isEmpty()) {
+            ClientAddress realIp = ClientAddress.parse(request.getHeader("X-Real-IP"));
+            if (realIp != null) {
+                return normalize(realIp);
+            }
+        }
+        return normalize(client);
+    }
+
+    private boolean isTrusted(ClientAddress address) {
+        for (Network network : trustedNetworks) {
+            if (network.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ClientAddress normalize(ClientAddress address) {
+        return address.isIpv4() ? address : address.mask(ipv6PrefixLength);
+    }
+}
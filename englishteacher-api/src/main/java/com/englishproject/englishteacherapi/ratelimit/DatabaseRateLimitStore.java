@@ -0,0 +1,385 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.englishproject.englishteacherapi.model.RateLimitCounter;
+import com.englishproject.englishteacherapi.repository.RateLimitCounterRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Límites compartidos entre instancias a través de la tabla rate_limit_counters.
+ *
+ * Cada cliente y política tiene un contador por ventana (la ráfaga no aplica en este modo). En lugar de ir a la
+ * base de datos en cada petición, la instancia reserva de una vez un bloque de peticiones
+ * (una fracción del límite, con un mínimo) y lo consume en memoria; solo vuelve a la base
+ * cuando se le acaba. Los bloques sin usar se pierden al cerrar la ventana: el resultado es
+ * aproximado pero nunca más permisivo que el límite.
+ *
+ * Ventana deslizante aproximada: lo reservado en la ventana anterior sigue contando, en
+ * proporción a la parte de esa ventana que todavía cae dentro de la última ventana completa.
+ * Así un cliente no puede mandar el doble del límite juntando el final de una ventana con el
+ * principio de la siguiente.
+ *
+ * Si la base no responde, los límites pasan a aplicarse por instancia con un
+ * {@link LocalRateLimitStore} propio en lugar de desactivarse: la protección contra fuerza
+ * bruta del login se mantiene, aunque cada nodo cuente por separado hasta que la base vuelva.
+ *
+ * Los bloques en memoria tienen un tope (app.rate-limit.shared.max-leases) con el mismo
+ * desalojo CLOCK que {@link LocalRateLimitStore}: una ráfaga de IPs distintas no hace crecer
+ * la memoria. Desalojar un bloque solo pierde su cupo sin usar, que ya está contado en la base.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "database")
+public class DatabaseRateLimitStore implements RateLimitStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseRateLimitStore.class);
+    private static final int MAX_RESERVE_ATTEMPTS = 5;
+
+    @Value("${app.rate-limit.shared.lease-fraction:0.1}")
+    private double leaseFraction;
+
+    @Value("${app.rate-limit.shared.min-lease:5}")
+    private int minLease;
+
+    @Value("${app.rate-limit.shared.fallback-interval:PT10S}")
+    private Duration fallbackInterval;
+
+    @Value("${app.rate-limit.local.max-clients:100000}")
+    private int maxClients;
+
+    @Value("${app.rate-limit.shared.max-leases:100000}")
+    private int maxLeases;
+
+    @Autowired
+    private RateLimitCounterRepository rateLimitCounterRepository;
+
+    @Autowired
+    private RateLimitPolicyRegistry rateLimitPolicyRegistry;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    // Reloj de CLOCK sobre las claves de leases; solo se modifica con admissionLock
+    private final ReentrantLock admissionLock = new ReentrantLock();
+    private String[] ring;
+    private int used;
+    private int hand;
+    private final AtomicLong leaseEvictions = new AtomicLong();
+
+    // Límites por instancia mientras la base no responde
+    private LocalRateLimitStore fallback;
+    private volatile long fallbackUntil;
+    private final AtomicLong fallbackDecisions = new AtomicLong();
+
+    // Reemplazable en tests para controlar la posición dentro de la ventana
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Bloque de peticiones reservado por esta instancia para una ventana
+     */
+    private static final class Lease {
+        final long windowStart;
+        final AtomicInteger available = new AtomicInteger();
+        final ReentrantLock lock = new ReentrantLock();
+        volatile int globalReserved;  // Último valor visto del contador compartido
+        volatile int previousReserved = -1; // Reservado en la ventana anterior; -1 hasta leerlo
+        volatile long retryAt;        // Sin cupo global: no consultar la base antes de este instante
+        volatile boolean referenced = true;
+
+        Lease(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        ring = new String[Math.max(1, maxLeases)];
+        fallback = new LocalRateLimitStore(maxClients);
+        fallback.init();
+    }
+
+    @Override
+    public Decision acquire(ClientAddress client, RateLimitPolicy policy) {
+        long now = clock.millis();
+        if (now < fallbackUntil) {
+            return acquireLocally(client, policy);
+        }
+
+        String clientKey = client.toString();
+        long windowMillis = policy.getWindow().toMillis();
+        long windowStart = now - Math.floorMod(now, windowMillis);
+        long resetNanos = TimeUnit.MILLISECONDS.toNanos(windowStart + windowMillis - now);
+
+        String key = policy.getName() + ":" + clientKey;
+        Lease lease = leases.get(key);
+        if (lease == null || lease.windowStart != windowStart) {
+            lease = admit(key, windowStart);
+        } else if (!lease.referenced) {
+            lease.referenced = true;
+        }
+
+        if (tryConsume(lease)) {
+            return new Decision(true, remaining(lease, policy, now), resetNanos);
+        }
+        if (now < lease.retryAt) {
+            return new Decision(false, 0, TimeUnit.MILLISECONDS.toNanos(lease.retryAt - now));
+        }
+
+        lease.lock.lock();
+        try {
+            // Otra petición pudo haber renovado el bloque mientras se esperaba el lock
+            if (tryConsume(lease)) {
+                return new Decision(true, remaining(lease, policy, now), resetNanos);
+            }
+            if (now >= lease.retryAt) {
+                try {
+                    renew(lease, clientKey, policy, now);
+                } catch (DataAccessException e) {
+                    logger.error("Error accediendo a los contadores compartidos de rate limiting, se limita por instancia durante {}: {}",
+                            fallbackInterval, e.getMessage());
+                    fallbackUntil = now + fallbackInterval.toMillis();
+                    return acquireLocally(client, policy);
+                }
+                if (tryConsume(lease)) {
+                    return new Decision(true, remaining(lease, policy, now), resetNanos);
+                }
+            }
+            return new Decision(false, 0, TimeUnit.MILLISECONDS.toNanos(Math.max(lease.retryAt, now) - now));
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    /**
+     * Crea el bloque de una ventana nueva; si la clave no estaba y la tabla está llena, desaloja otra
+     */
+    private Lease admit(String key, long windowStart) {
+        admissionLock.lock();
+        try {
+            Lease existing = leases.get(key);
+            if (existing != null && existing.windowStart == windowStart) {
+                return existing;
+            }
+            if (existing == null) {
+                int position = used < ring.length ? used++ : nextVictim();
+                ring[position] = key;
+            }
+            // Si la clave ya estaba, conserva su posición en el reloj
+            Lease lease = new Lease(windowStart);
+            leases.put(key, lease);
+            return lease;
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    /**
+     * Avanza la aguja hasta una posición libre o un bloque sin uso desde la pasada anterior
+     */
+    private int nextVictim() {
+        while (true) {
+            int position = hand;
+            hand = (hand + 1) % ring.length;
+            String candidate = ring[position];
+            if (candidate == null) {
+                return position;
+            }
+            Lease lease = leases.get(candidate);
+            if (lease != null && lease.referenced) {
+                lease.referenced = false; // Segunda oportunidad
+                continue;
+            }
+            leases.remove(candidate);
+            leaseEvictions.incrementAndGet();
+            return position;
+        }
+    }
+
+    private Decision acquireLocally(ClientAddress client, RateLimitPolicy policy) {
+        fallbackDecisions.incrementAndGet();
+        return fallback.acquire(client, policy);
+    }
+
+    private boolean tryConsume(Lease lease) {
+        while (true) {
+            int available = lease.available.get();
+            if (available <= 0) {
+                return false;
+            }
+            if (lease.available.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private long remaining(Lease lease, RateLimitPolicy policy, long now) {
+        return Math.max(0, effectiveLimit(lease, policy, now) - lease.globalReserved) + lease.available.get();
+    }
+
+    /**
+     * Límite disponible en la ventana actual descontando la parte de la anterior que todavía
+     * cae dentro de la última ventana completa
+     */
+    private static int effectiveLimit(Lease lease, RateLimitPolicy policy, long now) {
+        if (lease.previousReserved <= 0) {
+            return policy.getMaxRequests();
+        }
+        long windowMillis = policy.getWindow().toMillis();
+        long overlap = windowMillis - (now - lease.windowStart);
+        long carried = (lease.previousReserved * overlap + windowMillis - 1) / windowMillis; // Redondeo hacia arriba
+        return (int) Math.max(0, policy.getMaxRequests() - carried);
+    }
+
+    /**
+     * Instante a partir del cual el peso de la ventana anterior baja lo suficiente para liberar
+     * una petición; el final de la ventana si lo reservado en esta ya alcanza el límite
+     */
+    private static long nextSlotAt(Lease lease, RateLimitPolicy policy, int reserved) {
+        long windowMillis = policy.getWindow().toMillis();
+        long windowEnd = lease.windowStart + windowMillis;
+        int free = policy.getMaxRequests() - reserved - 1;
+        if (free < 0 || lease.previousReserved <= 0) {
+            return windowEnd;
+        }
+        // carried <= free  <=>  overlap <= free * window / previous
+        long overlap = (long) free * windowMillis / lease.previousReserved;
+        return Math.min(windowEnd, windowEnd - overlap);
+    }
+
+    /**
+     * Tamaño del bloque a reservar: una fracción del límite, pero al menos min-lease peticiones
+     * para que los límites chicos (el login) no vayan a la base en cada petición
+     */
+    private int leaseSize(RateLimitPolicy policy) {
+        int limit = policy.getMaxRequests();
+        int fraction = (int) Math.ceil(limit * leaseFraction);
+        return Math.max(1, Math.min(limit, Math.max(fraction, minLease)));
+    }
+
+    /**
+     * Reserva un nuevo bloque en la base con compare-and-set sobre el contador compartido
+     * @throws DataAccessException si la base no responde
+     */
+    private void renew(Lease lease, String clientKey, RateLimitPolicy policy, long now) {
+        if (lease.previousReserved < 0) {
+            long previousStart = lease.windowStart - policy.getWindow().toMillis();
+            lease.previousReserved = rateLimitCounterRepository
+                    .findByClientKeyAndPolicyAndWindowStart(clientKey, policy.getName(), previousStart)
+                    .map(RateLimitCounter::getReserved)
+                    .orElse(0);
+        }
+        int leaseSize = leaseSize(policy);
+
+        for (int attempt = 0; attempt < MAX_RESERVE_ATTEMPTS; attempt++) {
+            int limit = effectiveLimit(lease, policy, now);
+            Optional<RateLimitCounter> counter = rateLimitCounterRepository
+                    .findByClientKeyAndPolicyAndWindowStart(clientKey, policy.getName(), lease.windowStart);
+
+            int reserved = counter.map(RateLimitCounter::getReserved).orElse(0);
+            int tokens = Math.min(leaseSize, limit - reserved);
+            if (tokens <= 0) {
+                lease.globalReserved = reserved;
+                lease.retryAt = nextSlotAt(lease, policy, reserved);
+                return;
+            }
+            if (counter.isEmpty()) {
+                if (insert(clientKey, policy, lease.windowStart, tokens)) {
+                    grant(lease, tokens, tokens);
+                    return;
+                }
+                continue; // Otra instancia creó la fila: se reintenta sobre ella
+            }
+            if (rateLimitCounterRepository.reserve(counter.get().getId(), reserved, tokens) > 0) {
+                grant(lease, tokens, reserved + tokens);
+                return;
+            }
+        }
+        logger.warn("No se pudo reservar cupo de rate limiting para {} ({}) tras {} intentos",
+                clientKey, policy, MAX_RESERVE_ATTEMPTS);
+    }
+
+    private boolean insert(String clientKey, RateLimitPolicy policy, long windowStart, int tokens) {
+        RateLimitCounter counter = new RateLimitCounter();
+        counter.setClientKey(clientKey);
+        counter.setPolicy(policy.getName());
+        counter.setWindowStart(windowStart);
+        counter.setReserved(tokens);
+        try {
+            rateLimitCounterRepository.save(counter);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void grant(Lease lease, int tokens, int globalReserved) {
+        lease.globalReserved = globalReserved;
+        lease.available.addAndGet(tokens);
+    }
+
+    /**
+     * Descarta los bloques locales y las filas de ventanas ya cerradas
+     */
+    @Scheduled(fixedDelayString = "PT2M", initialDelayString = "PT2M")
+    public void cleanupExpiredCounters() {
+        long now = clock.millis();
+        // Los bloques guardan el inicio de su ventana; la más larga configurada define qué filas se pueden borrar
+        long longestWindow = rateLimitPolicyRegistry.getPolicies().stream()
+                .mapToLong(policy -> policy.getWindow().toMillis())
+                .max().orElse(0);
+        admissionLock.lock();
+        try {
+            for (int position = 0; position < used; position++) {
+                String key = ring[position];
+                Lease lease = key != null ? leases.get(key) : null;
+                if (lease != null && lease.windowStart + longestWindow < now) {
+                    leases.remove(key);
+                    ring[position] = null; // La aguja de CLOCK reutiliza los huecos
+                }
+            }
+        } finally {
+            admissionLock.unlock();
+        }
+        fallback.cleanupExpiredCounters();
+        try {
+            // Se conserva también la ventana anterior: su contador pesa en la ventana deslizante
+            int deleted = rateLimitCounterRepository.deleteByWindowStartBefore(now - 2 * longestWindow);
+            logger.debug("Cleanup de rate limiting compartido: {} filas eliminadas, {} bloques locales", deleted, leases.size());
+        } catch (DataAccessException e) {
+            logger.warn("No se pudieron limpiar los contadores de rate limiting: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "database");
+        stats.put("leases", leases.size());
+        stats.put("maxLeases", ring.length);
+        stats.put("leaseEvictions", leaseEvictions.get());
+        stats.put("leaseFraction", leaseFraction);
+        stats.put("minLease", minLease);
+        stats.put("fallbackActive", clock.millis() < fallbackUntil);
+        stats.put("fallbackDecisions", fallbackDecisions.get());
+        return stats;
+    }
+}
@@ -0,0 +1,130 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Clientes con más peticiones a endpoints limitados, en memoria fija.
+ *
+ * Las cuentas se estiman con un count-min sketch (DEPTH filas de WIDTH contadores): nunca
+ * subestima y el error está acotado por el total de peticiones / WIDTH. Aparte se conservan
+ * solo los size candidatos con mayor estimación. Cada decay-interval todo se divide por dos,
+ * así el ranking refleja los últimos minutos y no el total desde el arranque.
+ */
+@Component
+public class HeavyHitterTracker {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096; // Potencia de 2: el índice es un AND
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    @Value("${app.rate-limit.heavy-hitters.size:20}")
+    private int size;
+
+    private final AtomicIntegerArray requests = new AtomicIntegerArray(DEPTH * WIDTH);
+    private final AtomicIntegerArray rejections = new AtomicIntegerArray(DEPTH * WIDTH);
+
+    private final Map<ClientAddress, Integer> candidates = new ConcurrentHashMap<>();
+    private final ReentrantLock candidatesLock = new ReentrantLock();
+    private volatile int admissionThreshold; // Menor estimación entre los candidatos cuando la lista está llena
+
+    public void record(ClientAddress client, boolean rejected) {
+        int estimate = increment(requests, client);
+        if (rejected) {
+            increment(rejections, client);
+        }
+        if (estimate <= admissionThreshold && !candidates.containsKey(client)) {
+            return; // Camino habitual: no llega al ranking y no toca el lock
+        }
+        // Si otro hilo está actualizando el ranking se omite: la próxima petición lo reintenta
+        if (candidatesLock.tryLock()) {
+            try {
+                candidates.put(client, estimate);
+                if (candidates.size() > size) {
+                    ClientAddress smallest = null;
+                    for (Map.Entry<ClientAddress, Integer> entry : candidates.entrySet()) {
+                        if (smallest == null || entry.getValue() < candidates.get(smallest)) {
+                            smallest = entry.getKey();
+                        }
+                    }
+                    candidates.remove(smallest);
+                }
+                updateThreshold();
+            } finally {
+                candidatesLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ranking de mayor a menor con las cuentas estimadas en el período actual
+     */
+    public List<Map<String, Object>> getTopOffenders() {
+        List<Map.Entry<ClientAddress, Integer>> entries = new ArrayList<>(candidates.entrySet());
+        entries.sort(Map.Entry.<ClientAddress, Integer>comparingByValue(Comparator.reverseOrder()));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<ClientAddress, Integer> entry : entries) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("ip", entry.getKey().toString());
+            item.put("requests", estimate(requests, entry.getKey()));
+            item.put("rejected", estimate(rejections, entry.getKey()));
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.heavy-hitters.decay-interval:PT1M}",
+            initialDelayString = "${app.rate-limit.heavy-hitters.decay-interval:PT1M}")
+    public void decay() {
+        for (int i = 0; i < requests.length(); i++) {
+            requests.getAndUpdate(i, count -> count >>> 1);
+            rejections.getAndUpdate(i, count -> count >>> 1);
+        }
+        candidatesLock.lock();
+        try {
+            candidates.replaceAll((client, count) -> count >>> 1);
+            candidates.values().removeIf(count -> count == 0);
+            updateThreshold();
+        } finally {
+            candidatesLock.unlock();
+        }
+    }
+
+    private void updateThreshold() {
+        admissionThreshold = candidates.size() < size ? 0
+                : candidates.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+    }
+
+    private static int increment(AtomicIntegerArray sketch, ClientAddress client) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, sketch.incrementAndGet(index(row, client)));
+        }
+        return min;
+    }
+
+    private static int estimate(AtomicIntegerArray sketch, ClientAddress client) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, sketch.get(index(row, client)));
+        }
+        return min;
+    }
+
+    private static int index(int row, ClientAddress client) {
+        long hash = (client.high() ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL + client.low();
+        hash = (hash ^ (hash >>> 33)) * SEEDS[(row + 1) % DEPTH];
+        hash ^= hash >>> 29;
+        return row * WIDTH + (int) (hash & (WIDTH - 1));
+    }
+}
@@ -0,0 +1,217 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Límites en memoria con GCRA (Generic Cell Rate Algorithm).
+ *
+ * Por cada IP y política se guarda un único long, el instante teórico de llegada (TAT), y
+ * cada petición lo avanza un intervalo fijo con compare-and-set. El costo por petición es
+ * constante sin importar el límite configurado. Permite ráfagas de hasta burst peticiones
+ * y luego una petición cada ventana/límite.
+ *
+ * La cantidad de IPs guardadas tiene un tope (app.rate-limit.local.max-clients): con la tabla
+ * llena, una IP nueva reemplaza a otra elegida con el algoritmo CLOCK, que saltea las que se
+ * usaron desde la última pasada. Así la memoria queda fija aunque lleguen miles de IPs
+ * distintas, y los clientes activos (incluidos los que están siendo limitados) se conservan.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimitStore implements RateLimitStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRateLimitStore.class);
+    private static final int INITIAL_SLOTS = 8;
+
+    @Value("${app.rate-limit.local.max-clients:100000}")
+    private int maxClients;
+
+    // TAT por IP, un slot por política. Los tiempos son relativos al arranque para que 0 signifique "sin uso"
+    private final Map<ClientAddress, Entry> entries = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    // Reloj de CLOCK: posición de cada IP en la tabla; solo se modifica con admissionLock
+    private final ReentrantLock admissionLock = new ReentrantLock();
+    private ClientAddress[] ring;
+    private int used;
+    private int hand;
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Entry {
+        volatile AtomicLongArray arrivalTimes;
+        volatile boolean referenced = true;
+
+        Entry(int slots) {
+            this.arrivalTimes = new AtomicLongArray(slots);
+        }
+    }
+
+    public LocalRateLimitStore() {
+    }
+
+    // Para usarlo fuera del contexto de Spring (respaldo de DatabaseRateLimitStore)
+    LocalRateLimitStore(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    @PostConstruct
+    public void init() {
+        ring = new ClientAddress[Math.max(1, maxClients)];
+    }
+
+    @Override
+    public Decision acquire(ClientAddress client, RateLimitPolicy policy) {
+        int slot = policy.getSlot();
+        Entry entry = entries.get(client);
+        if (entry == null) {
+            entry = admit(client, slot);
+        } else if (!entry.referenced) {
+            entry.referenced = true; // Se escribe solo si cambia, para no invalidar la línea de caché en cada petición
+        }
+        AtomicLongArray state = entry.arrivalTimes;
+        if (slot >= state.length()) {
+            state = grow(entry, slot);
+        }
+        long interval = policy.getEmissionIntervalNanos();
+        long burstNanos = interval * policy.getBurst(); // Intervalo + tolerancia de ráfaga
+        long now = System.nanoTime() - startNanos;
+
+        while (true) {
+            long tat = state.get(slot);
+            long newTat = Math.max(tat, now) + interval;
+            long allowAt = newTat - burstNanos;
+            if (now < allowAt) {
+                return new Decision(false, 0, allowAt - now);
+            }
+            if (state.compareAndSet(slot, tat, newTat)) {
+                long reset = newTat - now;
+                return new Decision(true, (burstNanos - reset) / interval, reset);
+            }
+        }
+    }
+
+    /**
+     * Da de alta una IP nueva, desalojando otra si la tabla está llena
+     */
+    private Entry admit(ClientAddress client, int slot) {
+        admissionLock.lock();
+        try {
+            Entry existing = entries.get(client);
+            if (existing != null) {
+                return existing;
+            }
+            int position;
+            if (used < ring.length) {
+                position = used++;
+            } else {
+                position = nextVictim();
+            }
+            ring[position] = client;
+            Entry entry = new Entry(Math.max(INITIAL_SLOTS, slot + 1));
+            entries.put(client, entry);
+            return entry;
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    /**
+     * Avanza la aguja hasta una posición libre o una IP sin uso desde la pasada anterior.
+     * Como cada pasada limpia las marcas, termina en a lo sumo dos vueltas.
+     */
+    private int nextVictim() {
+        while (true) {
+            int position = hand;
+            hand = (hand + 1) % ring.length;
+            ClientAddress candidate = ring[position];
+            if (candidate == null) {
+                return position;
+            }
+            Entry entry = entries.get(candidate);
+            if (entry != null && entry.referenced) {
+                entry.referenced = false; // Segunda oportunidad
+                continue;
+            }
+            entries.remove(candidate);
+            evictions.incrementAndGet();
+            return position;
+        }
+    }
+
+    /**
+     * Agrega slots cuando una recarga de configuración sumó políticas nuevas
+     */
+    private AtomicLongArray grow(Entry entry, int slot) {
+        admissionLock.lock();
+        try {
+            AtomicLongArray current = entry.arrivalTimes;
+            if (slot < current.length()) {
+                return current;
+            }
+            AtomicLongArray grown = new AtomicLongArray(slot + 1);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            entry.arrivalTimes = grown;
+            return grown;
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    /**
+     * Un TAT en el pasado equivale a un contador vacío: la entrada se puede descartar
+     */
+    @Scheduled(fixedDelayString = "PT2M", initialDelayString = "PT2M")
+    public void cleanupExpiredCounters() {
+        long now = System.nanoTime() - startNanos;
+        int removed = 0;
+        admissionLock.lock();
+        try {
+            for (int position = 0; position < used; position++) {
+                ClientAddress client = ring[position];
+                Entry entry = client != null ? entries.get(client) : null;
+                if (entry != null && isIdle(entry.arrivalTimes, now)) {
+                    entries.remove(client);
+                    ring[position] = null; // La aguja de CLOCK reutiliza los huecos
+                    removed++;
+                }
+            }
+        } finally {
+            admissionLock.unlock();
+        }
+        logger.debug("Cleanup de rate limiting completado. Eliminados: {}, contadores activos: {}", removed, entries.size());
+    }
+
+    private static boolean isIdle(AtomicLongArray state, long now) {
+        for (int i = 0; i < state.length(); i++) {
+            if (state.get(i) > now) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "local");
+        stats.put("clients", entries.size());
+        stats.put("maxClients", ring.length);
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
@@ -0,0 +1,78 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Política de límite de peticiones definida en la configuración (ver rate-limit-policies.properties)
+ */
+public final class RateLimitPolicy {
+
+    private final String name;
+    private final int slot;
+    private final List<String> patterns;
+    private final Set<String> methods;
+    private final int limit;
+    private final Duration window;
+    private final int burst;
+    private final long emissionIntervalNanos;
+
+    /**
+     * @param slot Posición fija de la política en los contadores; se mantiene entre recargas
+     * @param methods Métodos HTTP a los que aplica, o vacío para todos
+     * @param limit Peticiones admitidas por ventana
+     * @param burst Peticiones que se pueden hacer seguidas antes de que se note el límite
+     */
+    public RateLimitPolicy(String name, int slot, List<String> patterns, Set<String> methods,
+                           int limit, Duration window, int burst) {
+        this.name = name;
+        this.slot = slot;
+        this.patterns = List.copyOf(patterns);
+        this.methods = Set.copyOf(methods);
+        this.limit = limit;
+        this.window = window;
+        this.burst = burst;
+        this.emissionIntervalNanos = window.toNanos() / limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public Set<String> getMethods() {
+        return methods;
+    }
+
+    public int getMaxRequests() {
+        return limit;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Separación entre peticiones una vez agotada la ráfaga
+     */
+    public long getEmissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + limit + "/" + window + ", ráfaga " + burst + ")";
+    }
+}
@@ -0,0 +1,180 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Políticas de rate limiting cargadas desde configuración.
+ *
+ * Por defecto se leen de classpath:rate-limit-policies.properties. Si app.rate-limit.policies-file
+ * apunta a un archivo, se usa ese y se vuelve a leer cuando cambia, sin reiniciar la API; si
+ * la nueva versión tiene errores se mantiene la anterior.
+ */
+@Component
+public class RateLimitPolicyRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitPolicyRegistry.class);
+    private static final String DEFAULT_POLICIES = "rate-limit-policies.properties";
+    private static final String PREFIX = "policy.";
+    private static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1);
+
+    @Value("${app.rate-limit.policies-file:}")
+    private String policiesFile;
+
+    // El slot de cada política se conserva entre recargas para no mezclar contadores
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+    private volatile RateLimitRouteMatcher matcher;
+    private volatile List<RateLimitPolicy> policies = List.of();
+    private long loadedLastModified = -1;
+
+    @PostConstruct
+    public void init() throws IOException {
+        reload();
+        if (matcher == null) {
+            throw new IllegalStateException("No se pudieron cargar las políticas de rate limiting");
+        }
+    }
+
+    /**
+     * Política que aplica a la petición, o null si no tiene límite
+     */
+    public RateLimitPolicy resolve(String method, String path) {
+        return matcher.match(method, path);
+    }
+
+    public List<RateLimitPolicy> getPolicies() {
+        return policies;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.reload-interval:PT30S}", initialDelayString = "${app.rate-limit.reload-interval:PT30S}")
+    public void reloadIfChanged() {
+        Path file = externalFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            long lastModified = Files.isRegularFile(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+            if (lastModified != loadedLastModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudo revisar el archivo de políticas de rate limiting {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Lee y compila las políticas; ante cualquier error conserva las vigentes
+     */
+    public synchronized void reload() throws IOException {
+        Path file = externalFile();
+        Properties properties = new Properties();
+        long lastModified = -1;
+        String source;
+
+        if (file != null && Files.isRegularFile(file)) {
+            lastModified = Files.getLastModifiedTime(file).toMillis();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            source = file.toString();
+        } else {
+            if (file != null) {
+                logger.warn("Archivo de políticas {} no encontrado, se usan las políticas por defecto", file);
+            }
+            try (InputStream in = new ClassPathResource(DEFAULT_POLICIES).getInputStream()) {
+                properties.load(in);
+            }
+            source = "classpath:" + DEFAULT_POLICIES;
+        }
+
+        try {
+            List<RateLimitPolicy> parsed = parse(properties);
+            RateLimitRouteMatcher compiled = RateLimitRouteMatcher.compile(parsed);
+            this.policies = parsed;
+            this.matcher = compiled;
+            this.loadedLastModified = lastModified;
+            logger.info("Políticas de rate limiting cargadas desde {}: {}", source, parsed);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            this.loadedLastModified = lastModified; // No reintentar hasta que el archivo vuelva a cambiar
+            logger.error("Políticas de rate limiting inválidas en {}, se mantienen las anteriores: {}", source, e.getMessage());
+        }
+    }
+
+    private List<RateLimitPolicy> parse(Properties properties) {
+        Set<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PREFIX) && key.indexOf('.', PREFIX.length()) > 0) {
+                names.add(key.substring(PREFIX.length(), key.indexOf('.', PREFIX.length())));
+            }
+        }
+
+        List<RateLimitPolicy> parsed = new ArrayList<>();
+        for (String name : names) {
+            String patterns = required(properties, name, "patterns");
+            int limit = Integer.parseInt(required(properties, name, "limit").trim());
+            if (limit <= 0) {
+                throw new IllegalArgumentException("El límite de " + name + " debe ser mayor a cero");
+            }
+            String rawWindow = properties.getProperty(PREFIX + name + ".window");
+            Duration window = rawWindow != null ? Duration.parse(rawWindow.trim()) : DEFAULT_WINDOW;
+            if (window.isNegative() || window.toNanos() < limit) {
+                throw new IllegalArgumentException("La ventana de " + name + " es demasiado corta para su límite");
+            }
+            String burst = properties.getProperty(PREFIX + name + ".burst");
+            String methods = properties.getProperty(PREFIX + name + ".methods", "");
+
+            parsed.add(new RateLimitPolicy(
+                    name,
+                    slots.computeIfAbsent(name, key -> slots.size()),
+                    split(patterns),
+                    split(methods).stream().map(String::toUpperCase).filter(method -> !method.equals("*")).collect(Collectors.toSet()),
+                    limit,
+                    window,
+                    burst != null ? Math.max(1, Integer.parseInt(burst.trim())) : limit));
+        }
+        return parsed;
+    }
+
+    private String required(Properties properties, String name, String attribute) {
+        String value = properties.getProperty(PREFIX + name + "." + attribute);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Falta " + PREFIX + name + "." + attribute);
+        }
+        return value;
+    }
+
+    private List<String> split(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    private Path externalFile() {
+        return policiesFile == null || policiesFile.isBlank() ? null : Paths.get(policiesFile).toAbsolutePath();
+    }
+}
@@ -0,0 +1,136 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Árbol de rutas precompilado a partir de las políticas de rate limiting.
+ *
+ * Cada nodo es un segmento de la ruta; "*" coincide con un segmento cualquiera y "**" (solo al
+ * final del patrón) con el resto de la ruta, incluso vacío. Una petición se resuelve
+ * recorriendo sus segmentos una vez: gana el patrón más específico (segmento exacto antes que
+ * "*", y "*" antes que "**") y, dentro del mismo nodo, la política del método antes que la
+ * que aplica a todos. Es inmutable: una recarga construye un árbol nuevo.
+ */
+public final class RateLimitRouteMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitRouteMatcher.class);
+    private static final String ANY_METHOD = "*";
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        Node wildcard;                                                // *
+        final Map<String, RateLimitPolicy> terminal = new HashMap<>(); // El patrón termina en este nodo
+        final Map<String, RateLimitPolicy> rest = new HashMap<>();     // ** desde este nodo
+    }
+
+    private final Node root = new Node();
+
+    private RateLimitRouteMatcher() {
+    }
+
+    public static RateLimitRouteMatcher compile(List<RateLimitPolicy> policies) {
+        RateLimitRouteMatcher matcher = new RateLimitRouteMatcher();
+        for (RateLimitPolicy policy : policies) {
+            for (String pattern : policy.getPatterns()) {
+                matcher.add(pattern, policy);
+            }
+        }
+        return matcher;
+    }
+
+    private void add(String pattern, RateLimitPolicy policy) {
+        String[] segments = pattern.split("/");
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals("**")) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("'**' solo puede ir al final del patrón: " + pattern);
+                }
+                register(node.rest, pattern, policy);
+                return;
+            }
+            if (segment.equals("*")) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+        register(node.terminal, pattern, policy);
+    }
+
+    private void register(Map<String, RateLimitPolicy> target, String pattern, RateLimitPolicy policy) {
+        if (policy.getMethods().isEmpty()) {
+            putIfAbsent(target, ANY_METHOD, pattern, policy);
+        } else {
+            for (String method : policy.getMethods()) {
+                putIfAbsent(target, method, pattern, policy);
+            }
+        }
+    }
+
+    private void putIfAbsent(Map<String, RateLimitPolicy> target, String method, String pattern, RateLimitPolicy policy) {
+        RateLimitPolicy previous = target.putIfAbsent(method, policy);
+        if (previous != null && previous != policy) {
+            logger.warn("Patrón {} {} ya asignado a la política {}, se ignora para {}",
+                    method, pattern, previous.getName(), policy.getName());
+        }
+    }
+
+    /**
+     * @return la política que aplica, o null si la ruta no tiene límite
+     */
+    public RateLimitPolicy match(String method, String path) {
+        return match(root, method, path, 0);
+    }
+
+    private RateLimitPolicy match(Node node, String method, String path, int position) {
+        while (position < path.length() && path.charAt(position) == '/') {
+            position++;
+        }
+        if (position >= path.length()) {
+            RateLimitPolicy policy = forMethod(node.terminal, method);
+            return policy != null ? policy : forMethod(node.rest, method);
+        }
+
+        int end = path.indexOf('/', position);
+        if (end < 0) {
+            end = path.length();
+        }
+        if (!node.children.isEmpty()) {
+            Node child = node.children.get(path.substring(position, end));
+            if (child != null) {
+                RateLimitPolicy policy = match(child, method, path, end);
+                if (policy != null) {
+                    return policy;
+                }
+            }
+        }
+        if (node.wildcard != null) {
+            RateLimitPolicy policy = match(node.wildcard, method, path, end);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return forMethod(node.rest, method);
+    }
+
+    private static RateLimitPolicy forMethod(Map<String, RateLimitPolicy> policies, String method) {
+        if (policies.isEmpty()) {
+            return null;
+        }
+        RateLimitPolicy policy = policies.get(method);
+        return policy != null ? policy : policies.get(ANY_METHOD);
+    }
+}
@@ -0,0 +1,32 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import java.util.Map;
+
+/**
+ * Estado de los límites de peticiones.
+ *
+ * La implementación local guarda los contadores en memoria de esta instancia; la compartida
+ * los reparte entre todas las instancias de la API a través de la base de datos, para que
+ * levantar un segundo nodo no duplique los límites.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Resultado de intentar consumir una petición
+     * @param remaining Peticiones que quedan disponibles en la ventana (aproximado en el modo compartido)
+     * @param resetNanos Nanos hasta que el límite vuelve a estar completo o, si se rechazó, hasta poder reintentar
+     */
+    record Decision(boolean allowed, long remaining, long resetNanos) {
+    }
+
+    /**
+     * Consume una petición del cliente para la política indicada
+     * @param client IP del cliente, ya resuelta por {@link ClientAddressResolver}
+     */
+    Decision acquire(ClientAddress client, RateLimitPolicy policy);
+
+    /**
+     * Datos de ocupación para el endpoint de administración
+     */
+    Map<String, Object> getStats();
+}
@@ -3,22 +3,44 @@ package com.englishproject.englishteacherapi.repository;
 import com.englishproject.englishteacherapi.model.Activity;
 import com.englishproject.englishteacherapi.model.Level;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+// La paginación por keyset usa JpaSpecificationExecutor (ver ActivityService.getActivitiesPage): cada
+// combinación de filtros genera su propia consulta, sin condiciones "IS NULL OR" que impidan usar los índices
 @Repository
-public interface ActivityRepository extends JpaRepository<Activity, Long> {
+public interface ActivityRepository extends JpaRepository<Activity, Long>, JpaSpecificationExecutor<Activity> {
 
     List<Activity> findByLevelAndIsActiveTrue(Level level);
 
     @Query("SELECT a FROM Activity a WHERE a.level.id = :levelId AND a.isActive = true ORDER BY a.createdAt DESC")
     List<Activity> findActiveActivitiesByLevelId(@Param("levelId") Long levelId);
 
-    @Query("SELECT a FROM Activity a WHERE a.type = :type AND a.isActive = true")
-    List<Activity> findByTypeAndIsActiveTrue(@Param("type") Activity.ActivityType type);
+    // Referencias a un archivo concreto: se compara el final de la URL, que puede guardarse con o sin host.
+    // Las actividades desactivadas conservan su archivo hasta que pasa el período de retención
+    @Query("SELECT COUNT(a) FROM Activity a WHERE a.resourceFileUrl LIKE :urlPattern ESCAPE '!' " +
+           "AND (a.isActive = true OR a.updatedAt > :inactiveSince)")
+    long countFileReferences(@Param("urlPattern") String urlPattern, @Param("inactiveSince") LocalDateTime inactiveSince);
 
-    @Query("SELECT a FROM Activity a WHERE a.level.id = :levelId AND a.type = :type AND a.isActive = true")
-    List<Activity> findByLevelIdAndTypeAndIsActiveTrue(@Param("levelId") Long levelId, @Param("type") Activity.ActivityType type);
+    // Las desactivadas que ya pasaron la retención dejan de apuntar al archivo antes de borrarlo,
+    // para que al reactivarlas no queden con un enlace roto. Complemento exacto de countFileReferences
+    @Modifying
+    @Transactional
+    @Query("UPDATE Activity a SET a.resourceFileUrl = NULL, a.resourceFileName = NULL " +
+           "WHERE a.resourceFileUrl LIKE :urlPattern ESCAPE '!' AND a.isActive = false " +
+           "AND (a.updatedAt IS NULL OR a.updatedAt <= :inactiveSince)")
+    int detachExpiredFileReferences(@Param("urlPattern") String urlPattern, @Param("inactiveSince") LocalDateTime inactiveSince);
+
+    @Query("SELECT a.level.id FROM Activity a WHERE a.id = :id")
+    Optional<Long> findLevelIdById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT a.level.id FROM Activity a WHERE a.resourceFileUrl = :fileUrl")
+    List<Long> findLevelIdsByResourceFileUrl(@Param("fileUrl") String fileUrl);
 }
@@ -0,0 +1,25 @@
+package com.englishproject.englishteacherapi.repository;
+
+import com.englishproject.englishteacherapi.model.DerivativeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DerivativeJobRepository extends JpaRepository<DerivativeJob, Long> {
+
+    List<DerivativeJob> findTop20ByStatusOrderByCreatedAtAsc(DerivativeJob.JobStatus status);
+
+    Optional<DerivativeJob> findByFileName(String fileName);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DerivativeJob j SET j.status = :to WHERE j.status = :from")
+    int updateStatus(@Param("from") DerivativeJob.JobStatus from, @Param("to") DerivativeJob.JobStatus to);
+}
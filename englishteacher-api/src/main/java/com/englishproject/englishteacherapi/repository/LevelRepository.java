@@ -1,8 +1,11 @@
 package com.englishproject.englishteacherapi.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.englishproject.englishteacherapi.model.Level;
@@ -12,4 +15,18 @@ public interface LevelRepository extends JpaRepository<Level, Long> {
 
     Optional<Level> findByName(String name);
 
+    // Filas [id, name, description, type, count] con las actividades activas de cada nivel agrupadas por tipo.
+    // Un nivel sin actividades aparece una vez con type null y count 0. Las tres consultas solo cambian el WHERE
+    String ACTIVITY_COUNTS = "SELECT l.id, l.name, l.description, a.type, COUNT(a.id) FROM Level l " +
+                             "LEFT JOIN l.activities a ON a.isActive = true ";
+    String ACTIVITY_COUNTS_GROUP_BY = " GROUP BY l.id, l.name, l.description, a.type";
+
+    @Query(ACTIVITY_COUNTS + ACTIVITY_COUNTS_GROUP_BY + " ORDER BY l.id")
+    List<Object[]> findAllWithActivityCounts();
+
+    @Query(ACTIVITY_COUNTS + "WHERE l.id = :id" + ACTIVITY_COUNTS_GROUP_BY)
+    List<Object[]> findByIdWithActivityCounts(@Param("id") Long id);
+
+    @Query(ACTIVITY_COUNTS + "WHERE l.name = :name" + ACTIVITY_COUNTS_GROUP_BY)
+    List<Object[]> findByNameWithActivityCounts(@Param("name") String name);
 }
@@ -0,0 +1,28 @@
+package com.englishproject.englishteacherapi.repository;
+
+import com.englishproject.englishteacherapi.model.RateLimitCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface RateLimitCounterRepository extends JpaRepository<RateLimitCounter, Long> {
+
+    Optional<RateLimitCounter> findByClientKeyAndPolicyAndWindowStart(String clientKey, String policy, Long windowStart);
+
+    // Compare-and-set sobre el contador: solo reserva si nadie lo cambió desde la lectura
+    @Modifying
+    @Transactional
+    @Query("UPDATE RateLimitCounter c SET c.reserved = c.reserved + :tokens WHERE c.id = :id AND c.reserved = :expected")
+    int reserve(@Param("id") Long id, @Param("expected") int expected, @Param("tokens") int tokens);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RateLimitCounter c WHERE c.windowStart < :before")
+    int deleteByWindowStartBefore(@Param("before") long before);
+}
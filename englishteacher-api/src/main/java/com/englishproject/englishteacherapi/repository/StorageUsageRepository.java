@@ -0,0 +1,48 @@
+package com.englishproject.englishteacherapi.repository;
+
+import com.englishproject.englishteacherapi.model.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Long> {
+
+    Optional<StorageUsage> findByScopeAndOwnerKey(StorageUsage.Scope scope, String ownerKey);
+
+    List<StorageUsage> findByScopeOrderByBytesDesc(StorageUsage.Scope scope);
+
+    // Incremento atómico en la base de datos: dos subidas simultáneas no se pisan el contador
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + :bytes, u.fileCount = u.fileCount + :files, " +
+           "u.version = u.version + 1, u.updatedAt = :now WHERE u.scope = :scope AND u.ownerKey = :ownerKey")
+    int increment(@Param("scope") StorageUsage.Scope scope, @Param("ownerKey") String ownerKey,
+                  @Param("bytes") long bytes, @Param("files") long files, @Param("now") LocalDateTime now);
+
+    // Igual que increment, pero solo si el total no supera el máximo: la cuota se respeta aunque
+    // dos subidas del mismo profesor terminen a la vez
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + :bytes, u.fileCount = u.fileCount + :files, " +
+           "u.version = u.version + 1, u.updatedAt = :now " +
+           "WHERE u.scope = :scope AND u.ownerKey = :ownerKey AND u.bytes + :bytes <= :maxBytes")
+    int incrementWithinLimit(@Param("scope") StorageUsage.Scope scope, @Param("ownerKey") String ownerKey,
+                             @Param("bytes") long bytes, @Param("files") long files,
+                             @Param("maxBytes") long maxBytes, @Param("now") LocalDateTime now);
+
+    // Fija los totales de un contador recalculado (por ejemplo, el de un nivel cuando cambian sus actividades)
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageUsage u SET u.bytes = :bytes, u.fileCount = :files, " +
+           "u.version = u.version + 1, u.updatedAt = :now WHERE u.scope = :scope AND u.ownerKey = :ownerKey")
+    int setTotals(@Param("scope") StorageUsage.Scope scope, @Param("ownerKey") String ownerKey,
+                  @Param("bytes") long bytes, @Param("files") long files, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,63 @@
+package com.englishproject.englishteacherapi.repository;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findFirstBySha256(String sha256);
+
+    Optional<StoredFile> findByFileName(String fileName);
+
+    // Lecturas con la fila bloqueada (SELECT ... FOR UPDATE) hasta el fin de la transacción:
+    // las decisiones sobre el contador de referencias se serializan entre instancias
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM StoredFile f WHERE f.fileName = :fileName")
+    Optional<StoredFile> findByFileNameForUpdate(@Param("fileName") String fileName);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM StoredFile f WHERE f.sha256 = :sha256 ORDER BY f.id")
+    List<StoredFile> findBySha256ForUpdate(@Param("sha256") String sha256, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.crc32 = :crc32 WHERE f.fileName = :fileName AND f.crc32 IS NULL")
+    int setCrc32IfMissing(@Param("fileName") String fileName, @Param("crc32") Long crc32);
+
+    List<StoredFile> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Un blob cuenta una vez por nivel aunque lo usen varias actividades del nivel (o de otros niveles)
+    @Query("SELECT COALESCE(SUM(f.size), 0) FROM StoredFile f WHERE EXISTS (SELECT a.id FROM Activity a " +
+           "WHERE a.level.id = :levelId AND a.resourceFileUrl = CONCAT('/api/files/activities/', f.fileName))")
+    Long sumSizeByLevelId(@Param("levelId") Long levelId);
+
+    @Query("SELECT COUNT(f) FROM StoredFile f WHERE EXISTS (SELECT a.id FROM Activity a " +
+           "WHERE a.level.id = :levelId AND a.resourceFileUrl = CONCAT('/api/files/activities/', f.fileName))")
+    Long countByLevelId(@Param("levelId") Long levelId);
+
+    // Se completa una sola vez, sin pisar refCount ni otras columnas que cambien mientras tanto
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.lastModified = :lastModified WHERE f.id = :id AND f.lastModified IS NULL")
+    int backfillLastModified(@Param("id") Long id, @Param("lastModified") Long lastModified);
+
+    // Totales reales para conciliar los contadores de uso: [clave, bytes, archivos]
+    @Query("SELECT f.uploadedBy, SUM(f.size), COUNT(f) FROM StoredFile f WHERE f.uploadedBy IS NOT NULL GROUP BY f.uploadedBy")
+    List<Object[]> sumSizeGroupByUploader();
+
+    @Query("SELECT l.id, SUM(f.size), COUNT(f) FROM StoredFile f, Level l WHERE EXISTS (SELECT a.id FROM Activity a " +
+           "WHERE a.level = l AND a.resourceFileUrl = CONCAT('/api/files/activities/', f.fileName)) GROUP BY l.id")
+    List<Object[]> sumSizeGroupByLevel();
+}
@@ -1,12 +1,30 @@
 package com.englishproject.englishteacherapi.repository;
 
 import com.englishproject.englishteacherapi.model.Teacher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TeacherRepository extends JpaRepository<Teacher, Long> {
     Optional<Teacher> findByEmail(String email);
+
+    // Solo existencia: no carga la entidad (descripción, credenciales, hash de la contraseña)
+    boolean existsByEmail(String email);
+
+    // Instante desde el que valen los tokens del profesor (0 si nunca cambió la contraseña); vacío si no existe
+    @Query("SELECT COALESCE(t.credentialsChangedAt, 0L) FROM Teacher t WHERE t.email = :email")
+    Optional<Long> findCredentialsChangedAtByEmail(@Param("email") String email);
+
+    // Paginación por keyset sobre el id (los profesores no tienen fecha de alta)
+    @Query("SELECT t FROM Teacher t WHERE t.id > :afterId ORDER BY t.id")
+    List<Teacher> findPageAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(t) FROM Teacher t WHERE t.profileImageUrl LIKE :urlPattern ESCAPE '!'")
+    long countProfileImageReferences(@Param("urlPattern") String urlPattern);
 }
@@ -1,14 +1,21 @@
 package com.englishproject.englishteacherapi.service;
 
 import com.englishproject.englishteacherapi.dto.ActivityDTO;
+import com.englishproject.englishteacherapi.dto.PageCursor;
 import com.englishproject.englishteacherapi.model.Activity;
 import com.englishproject.englishteacherapi.model.Level;
 import com.englishproject.englishteacherapi.repository.ActivityRepository;
 import com.englishproject.englishteacherapi.repository.LevelRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -21,10 +28,33 @@ public class ActivityService {
     @Autowired
     private LevelRepository levelRepository;
 
-    public List<ActivityDTO> getAllActivities() {
-        return activityRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    // Orden de la paginación por keyset; coincide con los índices (created_at, id) y (level_id, created_at, id)
+    private static final Sort KEYSET_ORDER = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    /**
+     * Página de actividades por keyset, de la más nueva a la más vieja. Los filtros en null no aplican.
+     * @param cursor Cursor devuelto por la página anterior con los mismos filtros, o null para la primera
+     * @throws IllegalArgumentException si el cursor es inválido o se emitió con otros filtros
+     */
+    public PageCursor.Page<ActivityDTO> getActivitiesPage(Long levelId, Activity.ActivityType type, Boolean active,
+                                                          String cursor, int size) {
+        String scope = "activities|level=" + Objects.toString(levelId, "") + "|type=" + Objects.toString(type, "")
+                + "|active=" + Objects.toString(active, "");
+        PageCursor after = PageCursor.decode(cursor, scope);
+        // Se pide una fila de más para saber si hay página siguiente sin contar el total
+        List<Activity> rows = activityRepository.findBy(pageFilter(levelId, type, active, after),
+                query -> query.sortBy(KEYSET_ORDER).limit(size + 1).all());
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            Activity last = rows.get(size - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode(scope);
+        }
+        return new PageCursor.Page<>(rows.stream().map(this::convertToDTO).toList(), nextCursor);
     }
 
     public Optional<ActivityDTO> getActivityById(Long id) {
@@ -38,44 +68,78 @@ public class ActivityService {
                 .collect(Collectors.toList());
     }
 
-    public List<ActivityDTO> getActivitiesByType(Activity.ActivityType type) {
-        return activityRepository.findByTypeAndIsActiveTrue(type).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-    }
-
-    public List<ActivityDTO> getActivitiesByLevelAndType(Long levelId, Activity.ActivityType type) {
-        return activityRepository.findByLevelIdAndTypeAndIsActiveTrue(levelId, type).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    /**
+     * Solo las condiciones de los filtros presentes y, después de la primera página, la búsqueda
+     * posterior al cursor sobre (createdAt, id): así la base puede recorrer el índice en orden
+     */
+    private static Specification<Activity> pageFilter(Long levelId, Activity.ActivityType type, Boolean active,
+                                                      PageCursor after) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (levelId != null) {
+                predicates.add(cb.equal(root.get("level").get("id"), levelId));
+            }
+            if (type != null) {
+                predicates.add(cb.equal(root.get("type"), type));
+            }
+            if (active != null) {
+                predicates.add(cb.equal(root.get("isActive"), active));
+            }
+            if (after != null) {
+                Path<LocalDateTime> createdAt = root.get("createdAt");
+                predicates.add(cb.or(
+                        cb.lessThan(createdAt, after.createdAt()),
+                        cb.and(cb.equal(createdAt, after.createdAt()), cb.lessThan(root.get("id"), after.id()))));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
     }
 
+    /**
+     * @throws StorageQuotaService.QuotaExceededException si el archivo no entra en la cuota del nivel
+     */
     public ActivityDTO createActivity(ActivityDTO activityDTO) {
         Optional<Level> level = levelRepository.findById(activityDTO.getLevelId());
         if (level.isPresent()) {
+            storageQuotaService.checkLevelQuota(level.get().getId(), activityDTO.getResourceFileUrl());
             Activity activity = convertToEntity(activityDTO);
             activity.setLevel(level.get());
             activity.setCreatedAt(LocalDateTime.now());
             activity.setUpdatedAt(LocalDateTime.now());
             Activity savedActivity = activityRepository.save(activity);
+            if (savedActivity.getResourceFileUrl() != null) {
+                storageQuotaService.refreshLevel(level.get().getId());
+            }
             return convertToDTO(savedActivity);
         }
         throw new IllegalArgumentException("Level not found with id: " + activityDTO.getLevelId());
     }
 
+    /**
+     * @throws StorageQuotaService.QuotaExceededException si el archivo nuevo no entra en la cuota del nivel
+     */
     public Optional<ActivityDTO> updateActivity(Long id, ActivityDTO activityDTO) {
         return activityRepository.findById(id)
                 .map(activity -> {
+                    String previousFileUrl = activity.getResourceFileUrl();
+                    if (!Objects.equals(previousFileUrl, activityDTO.getResourceFileUrl())) {
+                        storageQuotaService.checkLevelQuota(activity.getLevel().getId(), activityDTO.getResourceFileUrl());
+                    }
                     updateActivityFromDTO(activity, activityDTO);
                     activity.setUpdatedAt(LocalDateTime.now());
                     Activity savedActivity = activityRepository.save(activity);
+                    if (!Objects.equals(previousFileUrl, savedActivity.getResourceFileUrl())) {
+                        storageQuotaService.refreshLevel(savedActivity.getLevel().getId());
+                    }
                     return convertToDTO(savedActivity);
                 });
     }
 
     public boolean deleteActivity(Long id) {
-        if (activityRepository.existsById(id)) {
+        Optional<Long> levelId = activityRepository.findLevelIdById(id);
+        if (levelId.isPresent()) {
             activityRepository.deleteById(id);
+            storageQuotaService.refreshLevel(levelId.get());
             return true;
         }
         return false;
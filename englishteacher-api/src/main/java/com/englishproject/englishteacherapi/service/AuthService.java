@@ -3,9 +3,16 @@ package com.englishproject.englishteacherapi.service;
 import com.englishproject.englishteacherapi.model.Teacher;
 import com.englishproject.englishteacherapi.repository.TeacherRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AuthService {
@@ -13,20 +20,52 @@ public class AuthService {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    // Profesores confirmados como existentes, para no consultar la base en cada petición autenticada
+    @Value("${app.auth.principal-cache.ttl:PT5M}")
+    private Duration principalCacheTtl;
+
+    @Value("${app.auth.principal-cache.max-entries:10000}")
+    private int principalCacheMaxEntries;
+
+    private final Map<String, Principal> knownPrincipals = new ConcurrentHashMap<>();
+
+    // Se incrementa en cada invalidación: una consulta que empezó antes no puede volver a guardar el email
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Confirmación de un profesor existente
+     * @param validUntil Instante (nanoTime) hasta el que vale la confirmación
+     * @param tokensValidAfter Epoch millis desde el que valen sus tokens (último cambio de contraseña), 0 si siempre
+     */
+    private record Principal(long validUntil, long tokensValidAfter) {
+    }
+
     /**
      * Autentica a un profesor con email y contraseña
      * @param email Email del profesor
      * @param password Contraseña en texto plano
      * @return Optional<Teacher> con el profesor si la autenticación es exitosa
+     * @throws PasswordHashingService.PasswordHashingBusyException si hay demasiados logins en curso
      */
     public Optional<Teacher> authenticateTeacher(String email, String password) {
         Optional<Teacher> teacher = teacherRepository.findByEmail(email);
 
-        if (teacher.isPresent() && teacher.get().validatePassword(password)) {
-            return teacher;
+        // Con email inexistente también se verifica (contra un hash ficticio) para no delatarlo por el tiempo de respuesta
+        PasswordHashingService.Verification verification =
+                passwordHashingService.verify(password, teacher.map(Teacher::getPassword).orElse(null));
+        if (!verification.matches()) {
+            return Optional.empty();
         }
 
-        return Optional.empty();
+        if (verification.newHash() != null) {
+            // El hash se generó con otro costo: se reemplaza ahora que se conoce la contraseña
+            teacher.get().setPassword(verification.newHash());
+            teacherRepository.save(teacher.get());
+        }
+        return teacher;
     }
 
     /**
@@ -35,6 +74,62 @@ public class AuthService {
      * @return true si existe, false en caso contrario
      */
     public boolean teacherExists(String email) {
-        return teacherRepository.findByEmail(email).isPresent();
+        return teacherRepository.existsByEmail(email);
+    }
+
+    /**
+     * Indica si el profesor existe y el token se emitió después de su último cambio de contraseña.
+     * Recuerda la respuesta durante app.auth.principal-cache.ttl; TeacherService invalida la
+     * entrada al modificar o borrar el profesor, así el cambio aplica de inmediato en esta
+     * instancia y en las demás, a lo sumo al vencer el TTL.
+     * @param issuedAt Claim iat del token; los tokens sin iat solo valen si la contraseña nunca cambió
+     */
+    public boolean isActivePrincipal(String email, Date issuedAt) {
+        Principal cached = knownPrincipals.get(email);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.validUntil() < 0) {
+            return issuedAfter(issuedAt, cached.tokensValidAfter());
+        }
+
+        long generation = invalidations.get();
+        Optional<Long> tokensValidAfter = teacherRepository.findCredentialsChangedAtByEmail(email);
+        if (tokensValidAfter.isEmpty()) {
+            if (cached != null) {
+                knownPrincipals.remove(email);
+            }
+            return false;
+        }
+        // Con la caché llena no se agrega: la limpieza periódica libera los vencidos
+        if (cached != null || knownPrincipals.size() < principalCacheMaxEntries) {
+            Principal entry = new Principal(now + principalCacheTtl.toNanos(), tokensValidAfter.get());
+            knownPrincipals.put(email, entry);
+            // Si hubo una invalidación durante la consulta (por ejemplo, un borrado) el
+            // resultado puede ser viejo: se descarta lo guardado. Se comprueba después del
+            // put para no perder una invalidación que ocurra entre la comprobación y el put
+            if (invalidations.get() != generation) {
+                knownPrincipals.remove(email, entry);
+            }
+        }
+        return issuedAfter(issuedAt, tokensValidAfter.get());
+    }
+
+    private static boolean issuedAfter(Date issuedAt, long tokensValidAfter) {
+        return tokensValidAfter == 0 || (issuedAt != null && issuedAt.getTime() >= tokensValidAfter);
+    }
+
+    /**
+     * Olvida la confirmación de un profesor (al modificarlo o borrarlo)
+     */
+    public void invalidatePrincipal(String email) {
+        if (email != null) {
+            invalidations.incrementAndGet();
+            knownPrincipals.remove(email);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT5M", initialDelayString = "PT5M")
+    public void cleanupPrincipalCache() {
+        long now = System.nanoTime();
+        knownPrincipals.values().removeIf(principal -> now - principal.validUntil() >= 0);
     }
 }
@@ -0,0 +1,745 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Almacén de archivos direccionado por contenido.
+ *
+ * Cada subida se escribe en una única pasada (digest, tamaño y tipo real se calculan mientras
+ * se copia) y se publica en el FileStorage configurado bajo el nombre sha256 + extensión; en
+ * disco local es un move atómico. Si ya existe un blob con el mismo digest se reutiliza y se
+ * incrementa su contador de referencias, y los bytes solo se borran cuando se libera la
+ * última referencia. El contador se lee y se escribe con la fila bloqueada en la base, para
+ * que varias instancias sobre el mismo almacenamiento no se pisen.
+ *
+ * Los archivos anteriores al índice se sirven sin ETag hasta que un hilo en segundo plano
+ * calcula su digest: una descarga pública nunca lee el archivo entero para indexarlo.
+ */
+@Service
+public class BlobStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreService.class);
+    private static final int LOCK_STRIPES = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_POOL_SIZE = 16;
+    private static final int INDEXING_QUEUE_CAPACITY = 1000;
+    public static final String TYPE_NOT_ALLOWED_MESSAGE =
+            "Tipo de archivo no permitido. Solo se permiten: jpg, jpeg, png, webp, pdf, mp3, mp4, doc, docx";
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Autowired
+    private MediaCacheService mediaCacheService;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.storage.put-timeout:PT5M}")
+    private Duration putTimeout;
+
+    // Locks por digest para que dos subidas iguales no creen dos entradas en el índice. Solo
+    // cubren lecturas y escrituras de stored_files y el borrado de bytes, nunca la subida.
+    // ReentrantLock y no synchronized: con hilos virtuales un monitor bloquearía el hilo portador
+    private final ReentrantLock[] hashLocks = new ReentrantLock[LOCK_STRIPES];
+
+    // Buffers directos reutilizados entre subidas para no reservarlos en cada petición
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    // Un único hilo calcula los digest de los archivos anteriores al índice, de a uno
+    private ThreadPoolExecutor indexingExecutor;
+    private final Set<String> pendingIndexing = ConcurrentHashMap.newKeySet();
+
+    public BlobStoreService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            hashLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        indexingExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(INDEXING_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blob-indexer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexingExecutor.shutdownNow();
+    }
+
+    public enum ReleaseResult {
+        NOT_FOUND,   // No existe el archivo
+        RELEASED,    // Se liberó una referencia pero el blob sigue en uso
+        IN_USE,      // Una actividad o foto de perfil todavía lo usa: no se liberó nada
+        DELETED      // Era la última referencia y se borraron los bytes
+    }
+
+    /**
+     * Resultado de una subida
+     * @param file Entrada del índice que representa al blob
+     * @param deduplicated true si el contenido ya existía y no se escribieron bytes nuevos
+     */
+    public record StoreResult(StoredFile file, boolean deduplicated) {
+    }
+
+    /**
+     * Guarda el contenido en una sola pasada: mientras se escribe en disco se calcula el SHA-256,
+     * se cuentan los bytes y se detecta el tipo real a partir de los primeros bytes.
+     * @param inputStream Contenido del archivo; se lee una única vez
+     * @param extension Extensión del archivo original (incluyendo el punto); solo distingue docx de otros zip
+     * @param maxBytes Tamaño máximo aceptado
+     * @param uploadedBy Email del profesor que sube el archivo, para la cuenta de uso
+     * @throws IllegalArgumentException si el tipo detectado no está permitido o se supera el tamaño
+     * @throws StorageQuotaService.QuotaExceededException si el archivo no entra en la cuota del profesor
+     */
+    public StoreResult store(InputStream inputStream, String extension, long maxBytes, String uploadedBy) throws IOException {
+        Path directory = ensureActivitiesPath();
+        // La cuota también limita la lectura: sin Content-Length es el único control antes de escribir
+        long quotaBytes = storageQuotaService.remainingBytes(uploadedBy);
+        Path tempFile = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            PipelineResult result;
+            try (ReadableByteChannel source = Channels.newChannel(inputStream);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                result = pump(source, target, extension, Math.min(maxBytes, quotaBytes));
+            } catch (TooLargeException e) {
+                throw quotaBytes < maxBytes ? storageQuotaService.uploaderQuotaExceeded(uploadedBy) : e;
+            }
+            return register(tempFile, result, uploadedBy);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Incorpora al almacén un archivo ya escrito en disco (por ejemplo una subida por partes).
+     * El archivo se mueve sin copiarse, por lo que debe estar en el mismo sistema de archivos.
+     * @param sourceFile Archivo completo a incorporar
+     * @param extension Extensión del archivo original (incluyendo el punto); solo distingue docx de otros zip
+     * @param uploadedBy Email del profesor que sube el archivo, para la cuenta de uso
+     * @throws IllegalArgumentException si el tipo detectado no está permitido
+     */
+    public StoreResult storeExisting(Path sourceFile, String extension, String uploadedBy) throws IOException {
+        ensureActivitiesPath();
+        try {
+            PipelineResult result;
+            try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+                result = pump(source, null, extension, Long.MAX_VALUE);
+            }
+            return register(sourceFile, result, uploadedBy);
+        } finally {
+            Files.deleteIfExists(sourceFile);
+        }
+    }
+
+    /**
+     * Copia el origen al destino a través de un buffer directo, actualizando digest, CRC-32,
+     * tamaño y detección de tipo en la misma pasada
+     * @param target Canal de destino, o null si solo se necesita calcular el digest
+     */
+    private PipelineResult pump(ReadableByteChannel source, WritableByteChannel target,
+                                String extension, long maxBytes) throws IOException {
+        MessageDigest digest = newSha256();
+        CRC32 crc32 = new CRC32();
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long size = 0;
+            String detectedType = null;
+            while (true) {
+                boolean endOfStream = source.read(buffer) < 0;
+                // Acumular los primeros bytes hasta poder reconocer el formato
+                if (detectedType == null && !endOfStream && buffer.position() < FileTypeDetector.HEADER_SIZE) {
+                    continue;
+                }
+
+                buffer.flip();
+                if (detectedType == null) {
+                    detectedType = FileTypeDetector.detect(buffer, extension);
+                    if (detectedType == null) {
+                        throw new IllegalArgumentException(TYPE_NOT_ALLOWED_MESSAGE);
+                    }
+                }
+
+                size += buffer.remaining();
+                if (size > maxBytes) {
+                    throw new TooLargeException(maxBytes);
+                }
+
+                digest.update(buffer.duplicate());
+                crc32.update(buffer.duplicate());
+                if (target != null) {
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                }
+                buffer.clear();
+
+                if (endOfStream) {
+                    return new PipelineResult(HexFormat.of().formatHex(digest.digest()), size, crc32.getValue(), detectedType);
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private record PipelineResult(String sha256, long size, long crc32, String contentType) {
+    }
+
+    private static class TooLargeException extends IllegalArgumentException {
+        TooLargeException(long maxBytes) {
+            super("El archivo supera el tamaño máximo permitido de " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * Reutiliza el blob existente con el mismo digest o publica el archivo con su nombre definitivo.
+     * La subida al almacenamiento se hace sin locks ni transacciones abiertas: la clave sale del
+     * digest, así que si dos instancias suben el mismo contenido a la vez escriben los mismos bytes.
+     */
+    private StoreResult register(Path sourceFile, PipelineResult content, String uploadedBy) throws IOException {
+        String sha256 = content.sha256();
+        storageQuotaService.ensureUploaderRow(uploadedBy);
+        Optional<StoredFile> reused = locked(sha256, () -> addReference(sha256, content.crc32()));
+        if (reused.isPresent()) {
+            Files.deleteIfExists(sourceFile);
+            logger.info("Archivo duplicado, se reutiliza el blob {} ({} referencias)",
+                    reused.get().getFileName(), reused.get().getRefCount());
+            return new StoreResult(reused.get(), true);
+        }
+
+        // Contenido nuevo, o un blob indexado cuyos bytes se perdieron y se restauran con su nombre.
+        // La extensión sale del tipo detectado: el nombre del cliente no decide cómo se sirve
+        String fileName = storedFileRepository.findFirstBySha256(sha256)
+                .map(StoredFile::getFileName)
+                .orElse(sha256 + FileTypeDetector.extensionFor(content.contentType()));
+        // La fecha se toma antes de entregar el archivo: un backend remoto borra el origen
+        long lastModified = Files.getLastModifiedTime(sourceFile).toMillis();
+        upload(fileName, sourceFile);
+
+        try {
+            try {
+                return locked(sha256, () -> publish(fileName, content, lastModified, uploadedBy));
+            } catch (DataIntegrityViolationException e) {
+                // Otra instancia insertó la misma fila al mismo tiempo: se suma como una referencia más
+                return locked(sha256, () -> publish(fileName, content, lastModified, uploadedBy));
+            }
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            // La inserción se deshizo: los bytes ya subidos se borran salvo que otra subida los registre
+            locked(sha256, () -> {
+                if (storedFileRepository.findByFileNameForUpdate(fileName).isEmpty()) {
+                    fileStorage.delete(fileName);
+                }
+                return null;
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * Suma una referencia al blob con ese digest si existe y sus bytes siguen en el almacenamiento
+     */
+    private Optional<StoredFile> addReference(String sha256, long crc32) throws IOException {
+        List<StoredFile> existing = storedFileRepository.findBySha256ForUpdate(sha256, PageRequest.of(0, 1));
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        StoredFile storedFile = existing.get(0);
+        if (!fileStorage.exists(storedFile.getFileName())) {
+            logger.warn("Blob indexado sin archivo en el almacenamiento, se restaura: {}", storedFile.getFileName());
+            return Optional.empty();
+        }
+        if (storedFile.getCrc32() == null) {
+            storedFile.setCrc32(crc32); // Blob anterior a la columna: se aprovecha esta pasada
+        }
+        storedFile.setRefCount(storedFile.getRefCount() + 1);
+        storedFile.setLastUploadAt(LocalDateTime.now());
+        StoredFile saved = storedFileRepository.save(storedFile);
+        fileIndexService.put(saved);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Registra en el índice un archivo ya subido al almacenamiento
+     */
+    private StoreResult publish(String fileName, PipelineResult content, long lastModified, String uploadedBy) throws IOException {
+        if (!fileStorage.exists(fileName)) {
+            // Otra petición liberó el mismo contenido y borró los bytes mientras se subían
+            throw new IOException("El archivo se eliminó mientras se subía, intenta de nuevo: " + fileName);
+        }
+        Optional<StoredFile> current = storedFileRepository.findByFileNameForUpdate(fileName);
+        if (current.isPresent()) {
+            // Otra subida lo registró primero, o es un blob perdido que se acaba de restaurar
+            StoredFile storedFile = current.get();
+            if (storedFile.getCrc32() == null) {
+                storedFile.setCrc32(content.crc32());
+            }
+            storedFile.setRefCount(storedFile.getRefCount() + 1);
+            storedFile.setLastUploadAt(LocalDateTime.now());
+            storedFile.setSharded(fileStorage.isLocal());
+            storedFile.setLastModified(lastModified);
+            StoredFile saved = storedFileRepository.save(storedFile);
+            fileIndexService.put(saved);
+            mediaCacheService.invalidate(fileName);
+            return new StoreResult(saved, true);
+        }
+
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName(fileName);
+        storedFile.setSha256(content.sha256());
+        storedFile.setSize(content.size());
+        storedFile.setCrc32(content.crc32());
+        storedFile.setContentType(content.contentType());
+        storedFile.setRefCount(1);
+        storedFile.setSharded(fileStorage.isLocal());
+        storedFile.setLastModified(lastModified);
+        storedFile.setUploadedBy(uploadedBy);
+        StoredFile saved = storedFileRepository.save(storedFile);
+        // En la misma transacción que la fila: si la cuota no alcanza, no queda ninguna de las dos
+        storageQuotaService.recordCreated(saved);
+        fileIndexService.put(saved);
+        return new StoreResult(saved, false);
+    }
+
+    /**
+     * Sube el archivo con putAsync (en S3, por partes en paralelo) y espera a que termine,
+     * porque la respuesta de la subida ya incluye la URL del archivo
+     */
+    private void upload(String fileName, Path sourceFile) throws IOException {
+        try {
+            fileStorage.putAsync(fileName, sourceFile).get(putTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            throw cause instanceof IOException io ? io : new IOException("No se pudo guardar " + fileName, cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Tiempo agotado guardando " + fileName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Subida interrumpida: " + fileName);
+        }
+    }
+
+    /**
+     * Libera una referencia al archivo y borra los bytes si era la última.
+     *
+     * El contador no sabe de quién es cada referencia, así que mientras algo siga usando el
+     * archivo no se toca: repetir el DELETE (un reintento, u otro profesor con el mismo
+     * contenido) no puede dejar sin archivo a las actividades de otros. Cuando deja de usarse,
+     * el recolector de huérfanos lo borra si nadie lo liberó.
+     * @param fileName Nombre del archivo ya validado por el llamador
+     * @param unreferenced Comprueba que ninguna actividad ni foto de perfil usa el archivo; se
+     *                     evalúa con el lock tomado, justo antes de modificar el contador
+     */
+    public ReleaseResult release(String fileName, Predicate<String> unreferenced) throws IOException {
+        Optional<StoredFile> indexed = storedFileRepository.findByFileName(fileName);
+
+        if (indexed.isEmpty()) {
+            if (!unreferenced.test(fileName)) {
+                return ReleaseResult.IN_USE;
+            }
+            // Archivo anterior al índice (nombre UUID): se borra directamente
+            mediaCacheService.invalidate(fileName);
+            return fileStorage.delete(fileName) ? ReleaseResult.DELETED : ReleaseResult.NOT_FOUND;
+        }
+
+        return locked(indexed.get().getSha256(), () -> {
+            // Releer con la fila bloqueada por si otra petición (de esta u otra instancia) cambió el contador
+            Optional<StoredFile> current = storedFileRepository.findByFileNameForUpdate(fileName);
+            if (current.isEmpty()) {
+                return ReleaseResult.NOT_FOUND;
+            }
+            StoredFile storedFile = current.get();
+            if (!unreferenced.test(fileName)) {
+                logger.info("No se libera {}: todavía lo usa una actividad o foto de perfil", fileName);
+                return ReleaseResult.IN_USE;
+            }
+            if (storedFile.getRefCount() > 1) {
+                storedFile.setRefCount(storedFile.getRefCount() - 1);
+                fileIndexService.put(storedFileRepository.save(storedFile));
+                logger.info("Referencia liberada para {} ({} restantes)", fileName, storedFile.getRefCount());
+                return ReleaseResult.RELEASED;
+            }
+            delete(storedFile);
+            return ReleaseResult.DELETED;
+        });
+    }
+
+    /**
+     * Borra la fila, descuenta el uso y borra los bytes con la fila todavía bloqueada: una subida
+     * del mismo contenido en otra instancia espera ese bloqueo y, al encontrar la fila borrada,
+     * vuelve a subir los bytes
+     */
+    private void delete(StoredFile storedFile) throws IOException {
+        storedFileRepository.delete(storedFile);
+        storageQuotaService.recordDeleted(storedFile);
+        fileIndexService.remove(storedFile.getFileName());
+        mediaCacheService.invalidate(storedFile.getFileName());
+        fileStorage.delete(storedFile.getFileName());
+    }
+
+    /**
+     * Elimina el blob sin importar su contador de referencias; lo usa el recolector de
+     * archivos huérfanos. La condición se vuelve a evaluar con el lock tomado y la fila recién
+     * leída, justo antes de borrar: una actividad que empezó a usar el archivo (o una subida
+     * deduplicada) después de elegir el candidato lo salva.
+     * @param expectedSha256 Digest visto al elegir el candidato; si cambió no se borra nada
+     * @param stillOrphan Comprueba que la entrada actual sigue sin referencias
+     * @return true si se borró
+     */
+    public boolean purge(String fileName, String expectedSha256, Predicate<StoredFile> stillOrphan) throws IOException {
+        return locked(expectedSha256, () -> {
+            Optional<StoredFile> current = storedFileRepository.findByFileNameForUpdate(fileName);
+            if (current.isEmpty() || !current.get().getSha256().equals(expectedSha256)
+                    || !stillOrphan.test(current.get())) {
+                return false;
+            }
+            delete(current.get());
+            return true;
+        });
+    }
+
+    /**
+     * Obtiene el digest precalculado del archivo para usarlo como ETag.
+     * Si el archivo todavía no está indexado se agenda su indexación y se devuelve vacío:
+     * esa respuesta sale sin ETag y las siguientes ya lo tienen.
+     * @param fileName Nombre del archivo dentro del directorio de actividades
+     */
+    public Optional<String> findDigest(String fileName) {
+        if (fileName == null || fileName.endsWith(".tmp")) {
+            return Optional.empty();
+        }
+        Optional<FileIndexService.FileMetadata> indexed = lookupIndexed(fileName);
+        if (indexed.isPresent()) {
+            return Optional.ofNullable(indexed.get().sha256());
+        }
+        scheduleIndexing(fileName);
+        return Optional.empty();
+    }
+
+    /**
+     * Devuelve la entrada del índice del archivo. Para un archivo anterior al índice devuelve
+     * los datos del sistema de archivos sin digest (se sirve sin ETag ni caché en memoria)
+     * y agenda su indexación en segundo plano.
+     * @param fileName Nombre del archivo ya validado por el llamador
+     */
+    public Optional<FileIndexService.FileMetadata> findMetadata(String fileName) {
+        return findMetadata(fileName, true);
+    }
+
+    /**
+     * Igual que findMetadata, pero sin agendar la indexación de los archivos anteriores al
+     * índice: para quien va a leer muchos archivos de una vez y no debe disparar un hash por cada uno
+     */
+    public Optional<FileIndexService.FileMetadata> describe(String fileName) {
+        return findMetadata(fileName, false);
+    }
+
+    private Optional<FileIndexService.FileMetadata> findMetadata(String fileName, boolean scheduleIndexing) {
+        if (fileName == null || fileName.endsWith(".tmp")) {
+            return Optional.empty();
+        }
+        Optional<FileIndexService.FileMetadata> indexed = lookupIndexed(fileName);
+        if (indexed.isPresent() || !fileStorage.isLocal()) {
+            return indexed;
+        }
+        Optional<Path> filePath = fileLayoutService.locate(fileName);
+        if (filePath.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Path path = filePath.get();
+            FileIndexService.FileMetadata unindexed = new FileIndexService.FileMetadata(fileName, Files.size(path),
+                    Files.probeContentType(path), null, Files.getLastModifiedTime(path).toMillis(),
+                    path.equals(fileLayoutService.shardedPath(fileName)), null);
+            if (scheduleIndexing) {
+                scheduleIndexing(fileName);
+            }
+            return Optional.of(unindexed);
+        } catch (IOException e) {
+            logger.warn("No se pudo leer {}: {}", fileName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Busca en el índice en memoria y, si no está, en stored_files: con almacenamiento compartido
+     * el blob pudo subirse en otra instancia después de que esta cargara su índice
+     */
+    private Optional<FileIndexService.FileMetadata> lookupIndexed(String fileName) {
+        Optional<FileIndexService.FileMetadata> indexed = fileIndexService.lookup(fileName);
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+        Optional<StoredFile> stored = storedFileRepository.findByFileName(fileName)
+                .filter(storedFile -> storedFile.getLastModified() != null);
+        stored.ifPresent(fileIndexService::put);
+        return stored.map(FileIndexService.FileMetadata::from);
+    }
+
+    /**
+     * Encola un archivo anterior al índice para calcular su digest en segundo plano
+     */
+    public void requestIndexing(String fileName) {
+        scheduleIndexing(fileName);
+    }
+
+    /**
+     * Agenda el cálculo del digest de un archivo local sin indexar. Si la cola está llena
+     * se descarta: la próxima petición del archivo lo vuelve a intentar.
+     */
+    private void scheduleIndexing(String fileName) {
+        if (!fileStorage.isLocal() || !pendingIndexing.add(fileName)) {
+            return;
+        }
+        try {
+            indexingExecutor.execute(() -> {
+                try {
+                    indexLegacy(fileName);
+                } catch (IOException e) {
+                    logger.warn("No se pudo calcular el digest de {}: {}", fileName, e.getMessage());
+                } finally {
+                    pendingIndexing.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingIndexing.remove(fileName);
+        }
+    }
+
+    /**
+     * Indexa en el hilo actual un archivo local anterior al índice; solo para tareas en segundo plano
+     * @return Entrada del índice, o vacío si el archivo no existe
+     */
+    private Optional<StoredFile> indexLegacy(String fileName) throws IOException {
+        Path directory = getActivitiesPath();
+        if (!directory.resolve(fileName).normalize().startsWith(directory)) {
+            return Optional.empty();
+        }
+        Optional<Path> filePath = fileLayoutService.locate(fileName);
+        if (filePath.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(indexFile(filePath.get()));
+    }
+
+    /**
+     * Guarda el CRC-32 de un blob indexado antes de existir la columna, calculado por quien ya
+     * estaba leyendo el archivo (por ejemplo al escribirlo en un ZIP), para no volver a leerlo
+     */
+    public void recordCrc32(String fileName, long crc32) {
+        // Actualización condicional: no pisa el contador de referencias que otra petición pudo cambiar
+        if (storedFileRepository.setCrc32IfMissing(fileName, crc32) > 0) {
+            storedFileRepository.findByFileName(fileName).ifPresent(fileIndexService::put);
+        }
+    }
+
+    private StoredFile indexFile(Path filePath) throws IOException {
+        String fileName = filePath.getFileName().toString();
+        boolean sharded = filePath.equals(fileLayoutService.shardedPath(fileName));
+        Optional<StoredFile> existing = storedFileRepository.findByFileName(fileName);
+        if (existing.isPresent()) {
+            // Estaba en la tabla pero no en memoria (por ejemplo sin fecha al arrancar)
+            long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+            return locked(existing.get().getSha256(), () -> {
+                StoredFile storedFile = storedFileRepository.findByFileNameForUpdate(fileName).orElse(existing.get());
+                storedFile.setSharded(sharded);
+                storedFile.setLastModified(lastModified);
+                StoredFile saved = storedFileRepository.save(storedFile);
+                fileIndexService.put(saved);
+                return saved;
+            });
+        }
+
+        MessageDigest digest = newSha256();
+        CRC32 crc32 = new CRC32();
+        try (InputStream in = new CheckedInputStream(new DigestInputStream(Files.newInputStream(filePath), digest), crc32)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName(fileName);
+        storedFile.setSha256(HexFormat.of().formatHex(digest.digest()));
+        storedFile.setSize(Files.size(filePath));
+        storedFile.setCrc32(crc32.getValue());
+        storedFile.setContentType(Files.probeContentType(filePath));
+        storedFile.setRefCount(1);
+        storedFile.setSharded(sharded);
+        storedFile.setLastModified(Files.getLastModifiedTime(filePath).toMillis());
+        StoredFile saved;
+        try {
+            logger.info("Archivo existente incorporado al índice: {}", fileName);
+            saved = storedFileRepository.save(storedFile);
+        } catch (DataIntegrityViolationException e) {
+            // Otra petición lo indexó al mismo tiempo
+            saved = storedFileRepository.findByFileName(fileName).orElseThrow(() -> e);
+        }
+        fileIndexService.put(saved);
+        return saved;
+    }
+
+    /**
+     * Mueve un archivo de la ubicación plana a la particionada y actualiza el índice, bajo el
+     * mismo lock que las subidas y los borrados de ese contenido. Un archivo sin indexar no se
+     * hashea acá: se encola para indexarlo en segundo plano y se mueve en una pasada posterior.
+     * @param fileName Nombre de un archivo que está directamente en activities/
+     * @return true si el archivo se movió; false si no estaba indexado o ya no está
+     */
+    public boolean moveToShardedLayout(String fileName) throws IOException {
+        if (!fileStorage.isLocal()) {
+            return false;
+        }
+        Path legacyPath = fileLayoutService.legacyPath(fileName);
+        Optional<String> sha256 = fileIndexService.lookup(fileName).map(FileIndexService.FileMetadata::sha256);
+        if (sha256.isEmpty()) {
+            scheduleIndexing(fileName);
+            return false;
+        }
+
+        return locked(sha256.get(), () -> {
+            Optional<StoredFile> current = storedFileRepository.findByFileNameForUpdate(fileName);
+            if (current.isEmpty() || !Files.isRegularFile(legacyPath)) {
+                return false; // Se liberó o ya se movió mientras tanto
+            }
+            Path targetPath = fileLayoutService.shardedPath(fileName);
+            Files.createDirectories(targetPath.getParent());
+            Files.move(legacyPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            StoredFile storedFile = current.get();
+            storedFile.setSharded(true);
+            fileIndexService.put(storedFileRepository.save(storedFile));
+            return true;
+        });
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+
+    private Path ensureActivitiesPath() throws IOException {
+        Path directory = getActivitiesPath();
+        if (!Files.exists(directory)) {
+            logger.info("Directorio de subida no existe, creando: {}", directory);
+            Files.createDirectories(directory);
+        }
+        return directory;
+    }
+
+    private Path getActivitiesPath() {
+        return fileLayoutService.getActivitiesPath();
+    }
+
+    /**
+     * Ejecuta la acción con el lock local del digest y dentro de una transacción. El lock local
+     * ordena las peticiones de esta instancia; entre instancias, las lecturas ...ForUpdate
+     * bloquean la fila en la base hasta el commit. SQLite no admite FOR UPDATE, pero con SQLite
+     * la base es un archivo local y solo puede haber una instancia.
+     */
+    private <T> T locked(String sha256, LockedAction<T> action) throws IOException {
+        ReentrantLock lock = lockFor(sha256);
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return action.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    private ReentrantLock lockFor(String sha256) {
+        return hashLocks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.UploadSession;
+import com.englishproject.englishteacherapi.repository.UploadSessionRepository;
+
+/**
+ * Subidas reanudables por partes.
+ *
+ * Al crear la sesión se reserva un archivo del tamaño declarado dentro del directorio de
+ * uploads; cada parte se escribe en su posición con FileChannel y el offset confirmado se
+ * guarda en la base de datos, de modo que el cliente puede retomar la subida tras un corte.
+ *
+ * Cada parte se recibe primero en un archivo temporal propio, sin ningún lock: un cliente
+ * lento solo ocupa su propia petición. El lock de la sesión se toma después, para copiar la
+ * parte ya completa (una copia local) y confirmar el offset.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+    private static final String PARTIAL_DIR = ".partial";
+    private static final int LOCK_STRIPES = 32;
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Value("${app.upload.chunked.max-file-size:524288000}") // 500 MB
+    private long maxFileSize;
+
+    @Value("${app.upload.chunked.max-chunk-size:16777216}") // 16 MB
+    private long maxChunkSize;
+
+    @Value("${app.upload.chunked.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private UploadAdmissionService uploadAdmissionService;
+
+    // Serializa las escrituras de una misma sesión
+    private final ReentrantLock[] sessionLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public ChunkedUploadService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            sessionLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Se lanza cuando el offset de la parte no coincide con los bytes ya confirmados
+     */
+    public static class OffsetMismatchException extends IllegalStateException {
+        private final long expectedOffset;
+
+        public OffsetMismatchException(long expectedOffset) {
+            super("Offset inválido, se esperaba " + expectedOffset);
+            this.expectedOffset = expectedOffset;
+        }
+
+        public long getExpectedOffset() {
+            return expectedOffset;
+        }
+    }
+
+    public long getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Crea una sesión y reserva en disco el tamaño total del archivo
+     */
+    public UploadSession createSession(String originalFileName, String contentType, long totalSize,
+                                       String uploadedBy) throws IOException {
+        if (totalSize <= 0) {
+            throw new IllegalArgumentException("El tamaño del archivo debe ser mayor a cero");
+        }
+        if (totalSize > maxFileSize) {
+            throw new IllegalArgumentException("El archivo supera el tamaño máximo permitido de " + maxFileSize + " bytes");
+        }
+        if (uploadedBy == null || uploadedBy.isBlank()) {
+            throw new IllegalArgumentException("La sesión de subida debe tener un propietario");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setOriginalFileName(originalFileName);
+        session.setContentType(contentType);
+        session.setTotalSize(totalSize);
+        session.setReceivedBytes(0L);
+        session.setUploadedBy(uploadedBy);
+
+        Path partialPath = getPartialPath(session.getId());
+        Files.createDirectories(partialPath.getParent());
+        try (RandomAccessFile file = new RandomAccessFile(partialPath.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+
+        logger.info("Sesión de subida creada: {} ({} bytes, {})", session.getId(), totalSize, originalFileName);
+        return uploadSessionRepository.save(session);
+    }
+
+    public Optional<UploadSession> getSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId);
+    }
+
+    /**
+     * Escribe una parte en la posición indicada y devuelve el nuevo offset confirmado
+     * @param offset Posición donde empieza la parte; debe coincidir con los bytes ya recibidos
+     * @param contentLength Tamaño de la parte según Content-Length, o -1 si no se conoce
+     * @throws UploadAdmissionService.UploadRejectedException si no se consigue permiso para confirmar la parte
+     */
+    public UploadSession appendChunk(String sessionId, long offset, InputStream body, long contentLength) throws IOException {
+        UploadSession current = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Sesión de subida no encontrada: " + sessionId));
+        // Control previo sin lock: se rechaza antes de leer la red; se repite al confirmar
+        if (offset != current.getReceivedBytes()) {
+            throw new OffsetMismatchException(current.getReceivedBytes());
+        }
+        long remaining = current.getTotalSize() - offset;
+        if (contentLength > maxChunkSize) {
+            throw new IllegalArgumentException("La parte supera el tamaño máximo de " + maxChunkSize + " bytes");
+        }
+        if (contentLength > remaining) {
+            throw new IllegalArgumentException("La parte excede el tamaño declarado del archivo");
+        }
+        long limit = contentLength >= 0 ? contentLength : Math.min(remaining, maxChunkSize);
+
+        Path staging = Files.createTempFile(getPartialPath(sessionId).getParent(), sessionId + "-", ".chunk");
+        try {
+            long received = receive(body, staging, limit);
+            if (contentLength < 0 && received > limit) {
+                // Sin Content-Length no hay otra forma de saber que el cliente mandó de más
+                throw new IllegalArgumentException(remaining <= maxChunkSize
+                        ? "La parte excede el tamaño declarado del archivo"
+                        : "La parte supera el tamaño máximo de " + maxChunkSize + " bytes");
+            }
+            // La parte ya está en el servidor: el permiso de escritura cubre solo la copia local
+            try (UploadAdmissionService.Permit permit = uploadAdmissionService.acquire()) {
+                return commitChunk(sessionId, offset, staging, received);
+            }
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /**
+     * Copia el cuerpo a un archivo temporal leyendo como mucho limit + 1 bytes
+     * @return Bytes recibidos; limit + 1 indica que el cuerpo era más largo que el límite
+     */
+    private long receive(InputStream body, Path staging, long limit) throws IOException {
+        long received = 0;
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(body);
+            while (received <= limit) {
+                long transferred = channel.transferFrom(source, received, limit + 1 - received);
+                if (transferred <= 0) {
+                    break; // Fin del cuerpo o el cliente cortó la conexión: se confirma lo recibido
+                }
+                received += transferred;
+            }
+        }
+        return received;
+    }
+
+    /**
+     * Copia la parte ya recibida a su posición y publica el nuevo offset
+     */
+    private UploadSession commitChunk(String sessionId, long offset, Path staging, long length) throws IOException {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            UploadSession session = uploadSessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new IllegalArgumentException("Sesión de subida no encontrada: " + sessionId));
+            // Otra petición pudo confirmar la misma parte mientras esta se recibía
+            if (offset != session.getReceivedBytes()) {
+                throw new OffsetMismatchException(session.getReceivedBytes());
+            }
+
+            long written = 0;
+            try (FileChannel source = FileChannel.open(staging, StandardOpenOption.READ);
+                 FileChannel channel = FileChannel.open(getPartialPath(sessionId), StandardOpenOption.WRITE)) {
+                while (written < length) {
+                    long transferred = channel.transferFrom(source, offset + written, length - written);
+                    if (transferred <= 0) {
+                        throw new IOException("La parte temporal terminó antes de lo esperado");
+                    }
+                    written += transferred;
+                }
+                // Los bytes confirmados deben estar en disco antes de publicar el nuevo offset
+                channel.force(false);
+            }
+
+            session.setReceivedBytes(offset + written);
+            session.setUpdatedAt(LocalDateTime.now());
+            return uploadSessionRepository.save(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra la sesión y mueve el archivo completo al almacén de blobs
+     */
+    public BlobStoreService.StoreResult complete(String sessionId, String extension) throws IOException {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            UploadSession session = uploadSessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new IllegalArgumentException("Sesión de subida no encontrada: " + sessionId));
+
+            if (!session.getReceivedBytes().equals(session.getTotalSize())) {
+                throw new OffsetMismatchException(session.getReceivedBytes());
+            }
+
+            BlobStoreService.StoreResult result;
+            try {
+                result = blobStoreService.storeExisting(getPartialPath(sessionId), extension, session.getUploadedBy());
+            } catch (IllegalArgumentException e) {
+                // El contenido no corresponde a un tipo permitido: la sesión se descarta
+                uploadSessionRepository.delete(session);
+                throw e;
+            }
+            uploadSessionRepository.delete(session);
+            logger.info("Sesión de subida completada: {} -> {}", sessionId, result.file().getFileName());
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean cancel(String sessionId) throws IOException {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            Optional<UploadSession> session = uploadSessionRepository.findById(sessionId);
+            if (session.isEmpty()) {
+                return false;
+            }
+            uploadSessionRepository.delete(session.get());
+            Files.deleteIfExists(getPartialPath(sessionId));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Elimina las sesiones abandonadas y libera el espacio reservado
+     */
+    @Scheduled(fixedDelayString = "PT1H", initialDelayString = "PT10M")
+    public void cleanupExpiredSessions() {
+        LocalDateTime threshold = LocalDateTime.now().minusHours(sessionTtlHours);
+        for (UploadSession session : uploadSessionRepository.findByUpdatedAtBefore(threshold)) {
+            try {
+                cancel(session.getId());
+                logger.info("Sesión de subida expirada eliminada: {}", session.getId());
+            } catch (IOException e) {
+                logger.warn("No se pudo eliminar la sesión expirada {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        deleteStalePartialFiles();
+    }
+
+    /**
+     * Borra de .partial lo que quedó de subidas interrumpidas por un reinicio: trozos en
+     * tránsito (.chunk) y archivos parciales (.part) cuya sesión ya no existe
+     */
+    private void deleteStalePartialFiles() {
+        Path directory = Paths.get(uploadDir, PARTIAL_DIR).toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(sessionTtlHours);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (!Files.isRegularFile(path) || Files.getLastModifiedTime(path).toMillis() >= cutoff) {
+                    continue;
+                }
+                boolean stale = fileName.endsWith(".chunk")
+                        || (fileName.endsWith(".part")
+                            && !uploadSessionRepository.existsById(fileName.substring(0, fileName.length() - ".part".length())));
+                if (stale) {
+                    Files.deleteIfExists(path);
+                    logger.info("Temporal de subida abandonado eliminado: {}", fileName);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudieron limpiar los temporales de subidas por partes: {}", e.getMessage());
+        }
+    }
+
+    private Path getPartialPath(String sessionId) {
+        // El directorio temporal vive dentro de uploads para poder mover el archivo sin copiarlo
+        return Paths.get(uploadDir, PARTIAL_DIR, sessionId + ".part").toAbsolutePath().normalize();
+    }
+
+    private ReentrantLock lockFor(String sessionId) {
+        return sessionLocks[Math.floorMod(sessionId.hashCode(), LOCK_STRIPES)];
+    }
+}
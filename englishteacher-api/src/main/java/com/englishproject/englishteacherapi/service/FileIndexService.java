@@ -0,0 +1,173 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Índice de metadatos de los archivos subidos.
+ *
+ * La tabla stored_files es la fuente de verdad y se replica en memoria al arrancar, de modo
+ * que una descarga se resuelve con una búsqueda en el mapa en lugar de consultar la base de
+ * datos y el sistema de archivos en cada petición. BlobStoreService mantiene ambos al día.
+ */
+@Service
+public class FileIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileIndexService.class);
+    private static final String FILE_URL_PREFIX = "/api/files/activities/";
+    private static final Pattern SAFE_FILENAME_PATTERN = Pattern.compile("^[a-zA-Z0-9._-]{1,100}$");
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    private final Map<String, FileMetadata> entries = new ConcurrentHashMap<>();
+
+    // Fechas leídas del disco al arrancar que todavía no se guardaron en la base: id -> lastModified
+    private final Map<Long, Long> pendingLastModified = new ConcurrentHashMap<>();
+
+    /**
+     * Copia inmutable de una entrada del índice
+     * @param lastModified Fecha de modificación en epoch millis
+     * @param sharded true si el archivo ya está en la ubicación particionada
+     * @param crc32 CRC-32 del contenido, o null si el blob es anterior a esa columna
+     */
+    public record FileMetadata(String fileName, long size, String contentType, String sha256,
+                               long lastModified, boolean sharded, Long crc32) {
+
+        static FileMetadata from(StoredFile storedFile) {
+            return from(storedFile, storedFile.getLastModified());
+        }
+
+        static FileMetadata from(StoredFile storedFile, long lastModified) {
+            return new FileMetadata(storedFile.getFileName(), storedFile.getSize(), storedFile.getContentType(),
+                    storedFile.getSha256(), lastModified, Boolean.TRUE.equals(storedFile.getSharded()),
+                    storedFile.getCrc32());
+        }
+    }
+
+    /**
+     * Solo lee: las entradas sin fecha se completan en memoria y se guardan en la base cuando
+     * la aplicación ya arrancó (backfillLastModified)
+     */
+    @PostConstruct
+    public void loadIndex() {
+        long totalBytes = 0;
+        for (StoredFile storedFile : storedFileRepository.findAll()) {
+            Long lastModified = storedFile.getLastModified();
+            if (lastModified == null) {
+                // Entradas creadas antes de guardar la fecha
+                lastModified = readLastModified(storedFile);
+                if (lastModified == null) {
+                    continue; // El blob ya no está en disco; se resolverá al liberarlo
+                }
+                pendingLastModified.put(storedFile.getId(), lastModified);
+            }
+            entries.put(storedFile.getFileName(), FileMetadata.from(storedFile, lastModified));
+            totalBytes += storedFile.getSize();
+        }
+        logger.info("Índice de archivos cargado: {} entradas ({} bytes), {} fechas por guardar",
+                entries.size(), totalBytes, pendingLastModified.size());
+    }
+
+    /**
+     * Guarda las fechas completadas al cargar el índice, una sola vez por entrada
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLastModified() {
+        int saved = 0;
+        for (Map.Entry<Long, Long> pending : pendingLastModified.entrySet()) {
+            try {
+                saved += storedFileRepository.backfillLastModified(pending.getKey(), pending.getValue());
+                pendingLastModified.remove(pending.getKey());
+            } catch (RuntimeException e) {
+                logger.warn("No se pudo guardar la fecha del archivo {}: {}", pending.getKey(), e.getMessage());
+            }
+        }
+        if (saved > 0) {
+            logger.info("Fechas de modificación completadas en el índice de archivos: {}", saved);
+        }
+    }
+
+    public Optional<FileMetadata> lookup(String fileName) {
+        return fileName == null ? Optional.empty() : Optional.ofNullable(entries.get(fileName));
+    }
+
+    /**
+     * Publica la entrada en memoria después de guardarla en la base de datos
+     */
+    public void put(StoredFile storedFile) {
+        if (storedFile.getLastModified() == null) {
+            return;
+        }
+        entries.put(storedFile.getFileName(), FileMetadata.from(storedFile));
+    }
+
+    public void remove(String fileName) {
+        entries.remove(fileName);
+    }
+
+    /**
+     * Bytes ocupados por los archivos que usan las actividades de un nivel; un archivo
+     * compartido por varios niveles cuenta en cada uno
+     */
+    public long getLevelUsageBytes(Long levelId) {
+        Long total = storedFileRepository.sumSizeByLevelId(levelId);
+        return total != null ? total : 0L;
+    }
+
+    public long getLevelFileCount(Long levelId) {
+        Long total = storedFileRepository.countByLevelId(levelId);
+        return total != null ? total : 0L;
+    }
+
+    /**
+     * URL de descarga propia de un archivo, tal como la guarda el frontend en la actividad
+     */
+    public static String fileUrlOf(String fileName) {
+        return FILE_URL_PREFIX + fileName;
+    }
+
+    /**
+     * Extrae el nombre del archivo de una URL del tipo /api/files/activities/{fileName}
+     */
+    public static Optional<String> fileNameFromUrl(String url) {
+        if (url == null) {
+            return Optional.empty();
+        }
+        int index = url.indexOf(FILE_URL_PREFIX);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        String fileName = url.substring(index + FILE_URL_PREFIX.length());
+        return SAFE_FILENAME_PATTERN.matcher(fileName).matches() ? Optional.of(fileName) : Optional.empty();
+    }
+
+    private Long readLastModified(StoredFile storedFile) {
+        Path path = fileLayoutService.pathFor(storedFile.getFileName(), Boolean.TRUE.equals(storedFile.getSharded()));
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
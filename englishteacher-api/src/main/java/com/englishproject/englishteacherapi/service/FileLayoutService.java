@@ -0,0 +1,86 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Ubicación en disco de los archivos de actividades.
+ *
+ * Los archivos nuevos se guardan en dos niveles de subdirectorios tomados de los primeros
+ * caracteres hexadecimales del nombre (activities/ab/cd/abcd...), para que ningún directorio
+ * acumule decenas de miles de entradas. Mientras dura la migración los archivos antiguos
+ * siguen en activities/ directamente y se resuelven en ambas ubicaciones.
+ */
+@Service
+public class FileLayoutService {
+
+    private static final String ACTIVITIES_DIR = "activities";
+    private static final Pattern HEX_PREFIX_PATTERN = Pattern.compile("^[0-9a-f]{4}.*");
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    public Path getActivitiesPath() {
+        return Paths.get(uploadDir, ACTIVITIES_DIR).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Ubicación particionada: activities/ab/cd/{fileName}
+     */
+    public Path shardedPath(String fileName) {
+        String key = shardKey(fileName);
+        return getActivitiesPath().resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Ubicación plana anterior: activities/{fileName}
+     */
+    public Path legacyPath(String fileName) {
+        return getActivitiesPath().resolve(fileName);
+    }
+
+    public Path pathFor(String fileName, boolean sharded) {
+        return sharded ? shardedPath(fileName) : legacyPath(fileName);
+    }
+
+    /**
+     * Busca el archivo en ambas ubicaciones, primero en la particionada
+     * @param fileName Nombre ya validado por el llamador
+     */
+    public Optional<Path> locate(String fileName) {
+        Path sharded = shardedPath(fileName);
+        if (Files.isRegularFile(sharded)) {
+            return Optional.of(sharded);
+        }
+        Path legacy = legacyPath(fileName);
+        return Files.isRegularFile(legacy) ? Optional.of(legacy) : Optional.empty();
+    }
+
+    /**
+     * Los nombres sha256 y UUID ya empiezan con hexadecimal uniforme; para cualquier otro
+     * nombre se usa el digest del propio nombre
+     */
+    private String shardKey(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (HEX_PREFIX_PATTERN.matcher(lower).matches()) {
+            return lower;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fileName.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detecta el tipo real de un archivo a partir de sus primeros bytes (magic numbers)
+ * en lugar de confiar en el Content-Type que envía el cliente. La extensión con la que se
+ * guarda el archivo también sale del tipo detectado, nunca del nombre original: un PNG
+ * llamado x.html se guarda como .png y se sirve como imagen.
+ */
+public final class FileTypeDetector {
+
+    /**
+     * Cantidad de bytes iniciales necesarios para reconocer todos los formatos soportados
+     */
+    public static final int HEADER_SIZE = 16;
+
+    public static final String DOCX_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private static final Set<String> ALLOWED_TYPES = Set.of(
+            "image/jpeg",
+            "image/jpg",
+            "image/png",
+            "image/webp",
+            "application/pdf",
+            "audio/mpeg",
+            "audio/mp3",
+            "video/mp4",
+            "application/msword",
+            DOCX_TYPE
+    );
+
+    // Extensión con la que se guarda cada tipo detectado
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/png", ".png",
+            "image/jpeg", ".jpg",
+            "image/webp", ".webp",
+            "application/pdf", ".pdf",
+            "video/mp4", ".mp4",
+            "audio/mpeg", ".mp3",
+            "application/msword", ".doc",
+            DOCX_TYPE, ".docx"
+    );
+
+    // Marcas (major brand de la caja ftyp) de MP4; quedan fuera QuickTime (qt), HEIF/HEIC, AVIF y M4A
+    private static final Set<String> MP4_BRANDS = Set.of(
+            "isom", "iso2", "iso3", "iso4", "iso5", "iso6", "iso7", "iso8", "iso9",
+            "mp41", "mp42", "mp71", "avc1", "dash", "mmp4", "M4V ", "M4VH", "M4VP", "f4v ", "MSNV"
+    );
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final byte[] OLE_SIGNATURE = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0,
+            (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+
+    private FileTypeDetector() {
+    }
+
+    public static boolean isAllowedType(String contentType) {
+        return contentType != null && ALLOWED_TYPES.contains(contentType);
+    }
+
+    /**
+     * Extensión (con el punto) con la que se guarda un archivo del tipo detectado
+     * @param contentType Tipo devuelto por {@link #detect(ByteBuffer, String)}
+     * @throws IllegalArgumentException si el tipo no es uno de los detectables
+     */
+    public static String extensionFor(String contentType) {
+        String extension = contentType != null ? EXTENSIONS.get(contentType) : null;
+        if (extension == null) {
+            throw new IllegalArgumentException("Tipo de archivo sin extensión conocida: " + contentType);
+        }
+        return extension;
+    }
+
+    /**
+     * Detecta el tipo MIME a partir de la cabecera del archivo
+     * @param header Buffer posicionado al inicio de los datos; no se modifica su posición
+     * @param extension Extensión del archivo original, usada solo para distinguir docx de otros zip
+     * @return Tipo MIME detectado o null si no corresponde a ningún formato permitido
+     */
+    public static String detect(ByteBuffer header, String extension) {
+        ByteBuffer bytes = header.duplicate();
+        int length = bytes.remaining();
+
+        if (startsWith(bytes, PNG_SIGNATURE)) {
+            return "image/png";
+        }
+        if (length >= 3 && unsigned(bytes, 0) == 0xFF && unsigned(bytes, 1) == 0xD8 && unsigned(bytes, 2) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (length >= 12 && ascii(bytes, 0, 4).equals("RIFF") && ascii(bytes, 8, 4).equals("WEBP")) {
+            return "image/webp";
+        }
+        if (length >= 4 && ascii(bytes, 0, 4).equals("%PDF")) {
+            return "application/pdf";
+        }
+        if (length >= 12 && ascii(bytes, 4, 4).equals("ftyp") && MP4_BRANDS.contains(ascii(bytes, 8, 4))) {
+            return "video/mp4";
+        }
+        if (length >= 3 && ascii(bytes, 0, 3).equals("ID3")) {
+            return "audio/mpeg";
+        }
+        // Frame MPEG de audio sin etiqueta ID3: 11 bits de sincronización en 1
+        if (length >= 2 && unsigned(bytes, 0) == 0xFF && (unsigned(bytes, 1) & 0xE0) == 0xE0) {
+            return "audio/mpeg";
+        }
+        if (startsWith(bytes, OLE_SIGNATURE)) {
+            return "application/msword";
+        }
+        // docx es un zip: solo se acepta si además la extensión lo indica
+        if (length >= 4 && unsigned(bytes, 0) == 'P' && unsigned(bytes, 1) == 'K'
+                && unsigned(bytes, 2) == 0x03 && unsigned(bytes, 3) == 0x04
+                && ".docx".equalsIgnoreCase(extension)) {
+            return DOCX_TYPE;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, byte[] signature) {
+        if (bytes.remaining() < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes.get(bytes.position() + i) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int unsigned(ByteBuffer bytes, int index) {
+        return bytes.get(bytes.position() + index) & 0xFF;
+    }
+
+    private static String ascii(ByteBuffer bytes, int offset, int length) {
+        byte[] chunk = new byte[length];
+        for (int i = 0; i < length; i++) {
+            chunk[i] = bytes.get(bytes.position() + offset + i);
+        }
+        return new String(chunk, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,366 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.DerivativeJob;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.DerivativeJobRepository;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Genera en segundo plano versiones reducidas (thumb y medium) de las imágenes subidas.
+ *
+ * Los trabajos se guardan en la tabla derivative_jobs, de modo que un reinicio no pierde
+ * trabajo pendiente, y se procesan en un pool de hilos acotado usando solo ImageIO.
+ *
+ * Antes de decodificar se leen las dimensiones de la cabecera: las imágenes con más de
+ * app.images.max-pixels se descartan (un PNG de pocos KB puede declarar gigapíxeles) y las
+ * grandes se decodifican submuestreadas, al tamaño justo para la variante medium. Solo se
+ * procesan JPEG y PNG, los formatos que ImageIO lee sin plugins.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+    private static final String DERIVATIVES_DIR = "derivatives";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int WORK_QUEUE_CAPACITY = 50;
+    private static final Set<String> SUPPORTED_TYPES = Set.of("image/jpeg", "image/png");
+
+    public enum Variant {
+        THUMB,
+        MEDIUM;
+
+        public String pathSegment() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Optional<Variant> fromParam(String value) {
+            if (value == null) {
+                return Optional.empty();
+            }
+            for (Variant variant : values()) {
+                if (variant.pathSegment().equalsIgnoreCase(value)) {
+                    return Optional.of(variant);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Value("${app.images.thumb-width:240}")
+    private int thumbWidth;
+
+    @Value("${app.images.medium-width:960}")
+    private int mediumWidth;
+
+    @Value("${app.images.workers:2}")
+    private int workers;
+
+    @Value("${app.images.max-pixels:100000000}") // 100 megapíxeles
+    private long maxPixels;
+
+    @Autowired
+    private DerivativeJobRepository derivativeJobRepository;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WORK_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Los trabajos que quedaron a medias en un reinicio vuelven a la cola
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        int recovered = derivativeJobRepository.updateStatus(DerivativeJob.JobStatus.PROCESSING, DerivativeJob.JobStatus.PENDING);
+        if (recovered > 0) {
+            logger.info("Trabajos de imágenes recuperados tras reinicio: {}", recovered);
+        }
+        dispatchPendingJobs();
+    }
+
+    /**
+     * Encola la generación de variantes si el archivo es una imagen que ImageIO puede leer
+     */
+    public void enqueue(StoredFile storedFile) {
+        if (storedFile.getContentType() == null || !SUPPORTED_TYPES.contains(storedFile.getContentType())) {
+            return;
+        }
+        enqueue(storedFile.getFileName());
+    }
+
+    public void enqueue(String fileName) {
+        if (!isSupportedName(fileName) || derivativeJobRepository.findByFileName(fileName).isPresent()) {
+            return;
+        }
+        DerivativeJob job = new DerivativeJob();
+        job.setFileName(fileName);
+        derivativeJobRepository.save(job);
+        dispatchPendingJobs();
+    }
+
+    /**
+     * Encola la imagen referenciada por una URL de descarga propia (por ejemplo la foto de perfil)
+     */
+    public void enqueueFromUrl(String url) {
+        FileIndexService.fileNameFromUrl(url)
+                .filter(this::existsInStorage)
+                .ifPresent(this::enqueue);
+    }
+
+    private boolean existsInStorage(String fileName) {
+        try {
+            return fileStorage.exists(fileName);
+        } catch (IOException e) {
+            logger.warn("No se pudo comprobar el archivo {}: {}", fileName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Devuelve el archivo de la variante si ya fue generado
+     */
+    public Optional<Path> resolveVariant(String fileName, Variant variant) {
+        Path path = getVariantPath(fileName, variant);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    public void deleteDerivatives(String fileName) {
+        for (Variant variant : Variant.values()) {
+            try {
+                Files.deleteIfExists(getVariantPath(fileName, variant));
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar la variante {} de {}: {}", variant, fileName, e.getMessage());
+            }
+        }
+        derivativeJobRepository.findByFileName(fileName).ifPresent(derivativeJobRepository::delete);
+    }
+
+    @Scheduled(fixedDelayString = "PT30S", initialDelayString = "PT30S")
+    public synchronized void dispatchPendingJobs() {
+        List<DerivativeJob> pending = derivativeJobRepository.findTop20ByStatusOrderByCreatedAtAsc(DerivativeJob.JobStatus.PENDING);
+        for (DerivativeJob job : pending) {
+            job.setStatus(DerivativeJob.JobStatus.PROCESSING);
+            job.setUpdatedAt(LocalDateTime.now());
+            derivativeJobRepository.save(job);
+            try {
+                executor.execute(() -> process(job));
+            } catch (RejectedExecutionException e) {
+                // Pool lleno: el trabajo queda pendiente para la próxima pasada
+                job.setStatus(DerivativeJob.JobStatus.PENDING);
+                derivativeJobRepository.save(job);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Imagen que no se va a poder procesar nunca (formato no soportado o demasiado grande):
+     * el trabajo falla sin reintentos
+     */
+    static class UnprocessableImageException extends IOException {
+        UnprocessableImageException(String message) {
+            super(message);
+        }
+    }
+
+    private void process(DerivativeJob job) {
+        String fileName = job.getFileName();
+        try {
+            BufferedImage original = readOriginal(fileName);
+
+            writeVariant(original, fileName, Variant.THUMB, thumbWidth);
+            writeVariant(original, fileName, Variant.MEDIUM, mediumWidth);
+
+            job.setStatus(DerivativeJob.JobStatus.DONE);
+            job.setLastError(null);
+            logger.info("Variantes de imagen generadas para {}", fileName);
+        } catch (UnprocessableImageException | OutOfMemoryError e) {
+            // Reintentar daría el mismo resultado
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(truncate(e.getClass().getSimpleName() + ": " + e.getMessage()));
+            job.setStatus(DerivativeJob.JobStatus.FAILED);
+            logger.warn("Imagen descartada para variantes {}: {}", fileName, e.getMessage());
+        } catch (Exception e) {
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(truncate(e.getMessage()));
+            job.setStatus(job.getAttempts() >= MAX_ATTEMPTS ? DerivativeJob.JobStatus.FAILED : DerivativeJob.JobStatus.PENDING);
+            logger.warn("Error generando variantes para {} (intento {}): {}", fileName, job.getAttempts(), e.getMessage());
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        derivativeJobRepository.save(job);
+    }
+
+    private BufferedImage readOriginal(String fileName) throws IOException {
+        Optional<Path> localPath = fileStorage.localPath(fileName);
+        if (localPath.isPresent()) {
+            try (ImageInputStream in = ImageIO.createImageInputStream(localPath.get().toFile())) {
+                return decodeBounded(in, mediumWidth, maxPixels);
+            }
+        }
+        try (InputStream raw = fileStorage.get(fileName, 0, -1);
+             ImageInputStream in = ImageIO.createImageInputStream(raw)) {
+            return decodeBounded(in, mediumWidth, maxPixels);
+        }
+    }
+
+    /**
+     * Decodifica la imagen después de leer sus dimensiones de la cabecera. Si mide al menos el
+     * doble de targetWidth se lee submuestreada sin bajar de ese ancho, así el BufferedImage
+     * ocupa lo necesario para la variante más grande y no lo que declara el archivo.
+     * @throws UnprocessableImageException si no hay lector para el formato o supera maxPixels
+     */
+    static BufferedImage decodeBounded(ImageInputStream in, int targetWidth, long maxPixels) throws IOException {
+        if (in == null) {
+            throw new UnprocessableImageException("No se pudo abrir la imagen");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new UnprocessableImageException("Formato de imagen no soportado por ImageIO");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in, true, true);
+            long width = reader.getWidth(0);
+            long height = reader.getHeight(0);
+            if (width <= 0 || height <= 0 || width * height > maxPixels) {
+                throw new UnprocessableImageException("Imagen de " + width + "x" + height
+                        + " píxeles, el máximo es " + maxPixels);
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = (int) Math.max(1, width / Math.max(1, targetWidth));
+            if (step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static boolean isSupportedName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    private void writeVariant(BufferedImage original, String fileName, Variant variant, int maxWidth) throws IOException {
+        Path target = getVariantPath(fileName, variant);
+        Files.createDirectories(target.getParent());
+
+        // Nunca se agranda la imagen: si ya es pequeña se reescribe con el mismo tamaño
+        int width = Math.min(maxWidth, original.getWidth());
+        int height = Math.max(1, (int) Math.round((double) original.getHeight() * width / original.getWidth()));
+        boolean hasAlpha = original.getColorModel().hasAlpha();
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            if (!ImageIO.write(scaled, formatFor(fileName), temp.toFile())) {
+                throw new IOException("No hay escritor de ImageIO para " + formatFor(fileName));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path getVariantPath(String fileName, Variant variant) {
+        String baseName = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        return Paths.get(uploadDir, DERIVATIVES_DIR, variant.pathSegment(), baseName + "." + formatFor(fileName))
+                .toAbsolutePath().normalize();
+    }
+
+    /**
+     * Las imágenes PNG conservan la transparencia; el resto se reduce a JPEG
+     */
+    private String formatFor(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".png") ? "png" : "jpg";
+    }
+
+    public String contentTypeFor(String fileName) {
+        return "png".equals(formatFor(fileName)) ? "image/png" : "image/jpeg";
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
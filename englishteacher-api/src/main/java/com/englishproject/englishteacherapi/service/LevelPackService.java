@@ -0,0 +1,238 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.dto.ActivityDTO;
+import com.englishproject.englishteacherapi.dto.LevelDTO;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Paquete descargable con todo el material de un nivel: un ZIP con los archivos de sus
+ * actividades activas y un manifest.json con los datos de cada actividad.
+ *
+ * El ZIP se escribe directamente en la respuesta, archivo por archivo, sin armarlo en memoria
+ * ni en disco. Los formatos que ya vienen comprimidos (imágenes, audio, video, PDF, docx) se
+ * guardan sin comprimir usando el CRC-32 precalculado al subirlos, así cada archivo se lee
+ * una sola vez; solo el manifiesto y los formatos sin comprimir pasan por DEFLATE. Un blob
+ * anterior a la columna del CRC va como DEFLATE de nivel 0: se copia igual sin comprimir, el
+ * CRC se calcula mientras se escribe y se guarda para el próximo paquete.
+ */
+@Service
+public class LevelPackService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LevelPackService.class);
+    private static final String MANIFEST_NAME = "manifest.json";
+    private static final String FILES_DIR = "files/";
+    private static final int MAX_ENTRY_NAME_LENGTH = 120;
+
+    // Comprimirlos de nuevo solo gasta CPU: el tamaño prácticamente no cambia
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "image/jpeg",
+            "image/jpg",
+            "image/png",
+            "image/webp",
+            "application/pdf",
+            "audio/mpeg",
+            "audio/mp3",
+            "video/mp4",
+            FileTypeDetector.DOCX_TYPE
+    );
+
+    @Autowired
+    private LevelService levelService;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    /**
+     * Archivo de una actividad y su ruta dentro del ZIP
+     */
+    public record PackEntry(ActivityDTO activity, FileIndexService.FileMetadata file, String entryName) {
+    }
+
+    /**
+     * Contenido del paquete resuelto antes de empezar a escribir la respuesta
+     */
+    public record LevelPack(LevelDTO level, List<ActivityDTO> activities, List<PackEntry> files) {
+    }
+
+    /**
+     * Reúne las actividades activas del nivel y los archivos propios a los que apuntan
+     * @return vacío si el nivel no existe
+     */
+    public Optional<LevelPack> preparePack(Long levelId) {
+        Optional<LevelDTO> level = levelService.getLevelById(levelId);
+        if (level.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<ActivityDTO> activities = activityService.getActivitiesByLevelId(levelId);
+        List<PackEntry> files = new ArrayList<>();
+        for (ActivityDTO activity : activities) {
+            // Los enlaces externos quedan solo en el manifiesto
+            FileIndexService.fileNameFromUrl(activity.getResourceFileUrl())
+                    .flatMap(blobStoreService::describe)
+                    .ifPresent(metadata -> files.add(new PackEntry(activity, metadata, entryNameFor(activity, metadata))));
+        }
+        return Optional.of(new LevelPack(level.get(), activities, files));
+    }
+
+    /**
+     * Escribe el ZIP en el stream. No cierra el stream de salida.
+     */
+    public void writePack(LevelPack pack, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        Map<Long, PackEntry> included = new HashMap<>();
+        long bytes = 0;
+
+        for (PackEntry entry : pack.files()) {
+            try {
+                writeFile(zip, entry);
+                included.put(entry.activity().getId(), entry);
+                bytes += entry.file().size();
+            } catch (NoSuchFileException e) {
+                // Se borró entre la preparación y la escritura: la actividad sigue en el manifiesto sin archivo
+                logger.warn("Archivo {} no disponible al armar el paquete del nivel {}", entry.file().fileName(), pack.level().getId());
+            }
+        }
+
+        ZipEntry manifest = new ZipEntry(MANIFEST_NAME);
+        manifest.setMethod(ZipEntry.DEFLATED);
+        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(manifest);
+        zip.write(jsonMapper.writeValueAsBytes(buildManifest(pack, included)));
+        zip.closeEntry();
+        zip.finish();
+
+        logger.info("Paquete del nivel {} enviado: {} archivos, {} bytes", pack.level().getId(), included.size(), bytes);
+    }
+
+    private void writeFile(ZipOutputStream zip, PackEntry entry) throws IOException {
+        FileIndexService.FileMetadata metadata = entry.file();
+        ZipEntry zipEntry = new ZipEntry(entry.entryName());
+        zipEntry.setTime(metadata.lastModified());
+        boolean compressed = COMPRESSED_TYPES.contains(metadata.contentType());
+        if (compressed && metadata.crc32() != null) {
+            // STORED exige tamaño y CRC en la cabecera local, antes de los bytes
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(metadata.size());
+            zipEntry.setCompressedSize(metadata.size());
+            zipEntry.setCrc(metadata.crc32());
+        } else {
+            // Sin CRC previo el tamaño y el CRC van al final de la entrada, calculados al escribir
+            zipEntry.setMethod(ZipEntry.DEFLATED);
+            zip.setLevel(compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        }
+
+        // Se abre antes de crear la entrada para poder saltear un archivo que ya no existe
+        try (InputStream in = fileStorage.get(metadata.fileName(), 0, -1)) {
+            zip.putNextEntry(zipEntry);
+            in.transferTo(zip);
+            zip.closeEntry();
+        }
+        if (compressed && metadata.crc32() == null && metadata.sha256() != null) {
+            blobStoreService.recordCrc32(metadata.fileName(), zipEntry.getCrc());
+        }
+    }
+
+    private Map<String, Object> buildManifest(LevelPack pack, Map<Long, PackEntry> included) {
+        Map<String, Object> level = new LinkedHashMap<>();
+        level.put("id", pack.level().getId());
+        level.put("name", pack.level().getName());
+        level.put("description", pack.level().getDescription());
+
+        List<Map<String, Object>> activities = new ArrayList<>();
+        for (ActivityDTO activity : pack.activities()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", activity.getId());
+            item.put("title", activity.getTitle());
+            item.put("description", activity.getDescription());
+            item.put("content", activity.getContent());
+            item.put("type", activity.getType());
+            item.put("resourceFileName", activity.getResourceFileName());
+            item.put("resourceFileUrl", activity.getResourceFileUrl());
+            item.put("createdAt", String.valueOf(activity.getCreatedAt()));
+            item.put("updatedAt", String.valueOf(activity.getUpdatedAt()));
+
+            PackEntry entry = included.get(activity.getId());
+            if (entry != null) {
+                Map<String, Object> file = new LinkedHashMap<>();
+                file.put("path", entry.entryName());
+                file.put("size", entry.file().size());
+                file.put("contentType", entry.file().contentType());
+                file.put("sha256", entry.file().sha256());
+                item.put("file", file);
+            } else {
+                item.put("file", null);
+            }
+            activities.add(item);
+        }
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("level", level);
+        manifest.put("generatedAt", LocalDateTime.now().toString());
+        manifest.put("activities", activities);
+        return manifest;
+    }
+
+    /**
+     * Nombre del archivo dentro del ZIP: id de la actividad más el nombre original, limpio
+     */
+    private String entryNameFor(ActivityDTO activity, FileIndexService.FileMetadata metadata) {
+        String storedName = metadata.fileName();
+        String extension = storedName.contains(".") ? storedName.substring(storedName.lastIndexOf('.')) : "";
+        String name = activity.getResourceFileName() != null ? sanitize(activity.getResourceFileName()) : "";
+        if (name.isEmpty()) {
+            name = storedName;
+        } else if (!name.contains(".")) {
+            name = name + extension;
+        }
+        if (name.length() > MAX_ENTRY_NAME_LENGTH) {
+            name = name.substring(name.length() - MAX_ENTRY_NAME_LENGTH);
+        }
+        return FILES_DIR + activity.getId() + "-" + name;
+    }
+
+    /**
+     * Nombre sugerido para la descarga del paquete
+     */
+    public String packFileName(LevelDTO level) {
+        String name = level.getName() != null ? sanitize(level.getName()) : "";
+        return "nivel-" + level.getId() + (name.isEmpty() ? "" : "-" + name) + ".zip";
+    }
+
+    private static String sanitize(String value) {
+        // Sin separadores de ruta ni caracteres raros: el ZIP se descomprime en cualquier sistema
+        return value.replaceAll("[^A-Za-z0-9._-]+", "_").replaceAll("^[._]+", "");
+    }
+}
@@ -1,13 +1,17 @@
 package com.englishproject.englishteacherapi.service;
 
 import com.englishproject.englishteacherapi.dto.LevelDTO;
+import com.englishproject.englishteacherapi.model.Activity;
 import com.englishproject.englishteacherapi.model.Level;
 import com.englishproject.englishteacherapi.repository.LevelRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class LevelService {
@@ -15,35 +19,34 @@ public class LevelService {
     @Autowired
     private LevelRepository levelRepository;
 
+    // Los conteos salen de una consulta agrupada: no se cargan las actividades (ni su contenido)
     public List<LevelDTO> getAllLevels() {
-        return levelRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return toDTOs(levelRepository.findAllWithActivityCounts());
     }
 
     public Optional<LevelDTO> getLevelById(Long id) {
-        return levelRepository.findById(id)
-                .map(this::convertToDTO);
+        return toDTOs(levelRepository.findByIdWithActivityCounts(id)).stream().findFirst();
     }
 
     public Optional<LevelDTO> getLevelByName(String name) {
-        return levelRepository.findByName(name)
-                .map(this::convertToDTO);
+        return toDTOs(levelRepository.findByNameWithActivityCounts(name)).stream().findFirst();
     }
 
     public LevelDTO createLevel(LevelDTO levelDTO) {
         Level level = convertToEntity(levelDTO);
         Level savedLevel = levelRepository.save(level);
-        return convertToDTO(savedLevel);
+        // Un nivel recién creado no tiene actividades
+        return new LevelDTO(savedLevel.getId(), savedLevel.getName(), savedLevel.getDescription(),
+                0L, new EnumMap<>(Activity.ActivityType.class));
     }
 
     public Optional<LevelDTO> updateLevel(Long id, LevelDTO levelDTO) {
         return levelRepository.findById(id)
                 .map(level -> {
                     updateLevelFromDTO(level, levelDTO);
-                    Level savedLevel = levelRepository.save(level);
-                    return convertToDTO(savedLevel);
-                });
+                    return levelRepository.save(level);
+                })
+                .flatMap(savedLevel -> getLevelById(savedLevel.getId()));
     }
 
     public boolean deleteLevel(Long id) {
@@ -54,18 +57,27 @@ public class LevelService {
         return false;
     }
 
-    private LevelDTO convertToDTO(Level level) {
-        Long activitiesCount = level.getActivities() != null ?
-            level.getActivities().stream()
-                .filter(activity -> Boolean.TRUE.equals(activity.getIsActive()))
-                .count() : 0L;
-
-        return new LevelDTO(
-                level.getId(),
-                level.getName(),
-                level.getDescription(),
-                activitiesCount
-        );
+    /**
+     * Arma los DTOs a partir de las filas [id, name, description, type, count] de la consulta agrupada
+     */
+    private List<LevelDTO> toDTOs(List<Object[]> rows) {
+        Map<Long, LevelDTO> levels = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            LevelDTO dto = levels.computeIfAbsent(id, key -> new LevelDTO(
+                    key,
+                    (String) row[1],
+                    (String) row[2],
+                    0L,
+                    new EnumMap<>(Activity.ActivityType.class)
+            ));
+            long count = ((Number) row[4]).longValue();
+            if (row[3] != null && count > 0) {
+                dto.getActivitiesByType().put((Activity.ActivityType) row[3], count);
+                dto.setActivitiesCount(dto.getActivitiesCount() + count);
+            }
+        }
+        return new ArrayList<>(levels.values());
     }
 
     private Level convertToEntity(LevelDTO levelDTO) {
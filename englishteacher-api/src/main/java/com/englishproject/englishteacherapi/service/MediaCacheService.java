@@ -0,0 +1,199 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+/**
+ * Caché LRU de archivos pequeños muy pedidos (imágenes y audios cortos de los niveles).
+ *
+ * El contenido se guarda en buffers directos, fuera del heap, y se escribe desde ahí a la
+ * respuesta, así las descargas frecuentes no dependen de la caché de disco del servidor.
+ * Cada entrada se valida contra el digest y la fecha del índice, de modo que un archivo
+ * reemplazado nunca se sirve desde una entrada vieja.
+ */
+@Service
+public class MediaCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaCacheService.class);
+
+    @Value("${app.media-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.media-cache.max-bytes:67108864}") // 64 MB
+    private long maxBytes;
+
+    @Value("${app.media-cache.max-entry-size:1048576}") // 1 MB
+    private long maxEntrySize;
+
+    private record CachedMedia(ByteBuffer content, String sha256, long lastModified) {
+    }
+
+    // LinkedHashMap en orden de acceso: el primero es siempre el menos usado recientemente
+    private final LinkedHashMap<String, CachedMedia> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Devuelve el contenido del archivo desde la caché, cargándolo si todavía no estaba
+     * @param filePath Ubicación actual del archivo
+     * @param metadata Entrada del índice usada como clave y validador
+     * @return Buffer de solo lectura posicionado al inicio, o null si el archivo no se cachea
+     */
+    public ByteBuffer getOrLoad(Path filePath, FileIndexService.FileMetadata metadata) throws IOException {
+        return getOrLoad(metadata, () -> read(filePath, metadata.size()));
+    }
+
+    /**
+     * Igual que {@link #getOrLoad(Path, FileIndexService.FileMetadata)} para archivos en un
+     * almacenamiento remoto; en este caso la caché además evita un viaje por la red
+     */
+    public ByteBuffer getOrLoad(FileStorage storage, FileIndexService.FileMetadata metadata) throws IOException {
+        return getOrLoad(metadata, () -> read(storage, metadata.fileName(), metadata.size()));
+    }
+
+    @FunctionalInterface
+    private interface ContentLoader {
+        ByteBuffer load() throws IOException;
+    }
+
+    private ByteBuffer getOrLoad(FileIndexService.FileMetadata metadata, ContentLoader loader) throws IOException {
+        if (!enabled || metadata.size() > maxEntrySize || metadata.sha256() == null) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            CachedMedia cached = entries.get(metadata.fileName());
+            if (cached != null) {
+                if (cached.sha256().equals(metadata.sha256()) && cached.lastModified() == metadata.lastModified()) {
+                    hits.increment();
+                    return cached.content().duplicate();
+                }
+                removeEntry(metadata.fileName());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        ByteBuffer content = loader.load();
+        if (content == null) {
+            return null;
+        }
+
+        lock.lock();
+        try {
+            removeEntry(metadata.fileName());
+            entries.put(metadata.fileName(), new CachedMedia(content, metadata.sha256(), metadata.lastModified()));
+            currentBytes += content.capacity();
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+        return content.duplicate();
+    }
+
+    public void invalidate(String fileName) {
+        lock.lock();
+        try {
+            removeEntry(fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("entries", entries.size());
+            stats.put("bytes", currentBytes);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxEntrySize", maxEntrySize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    /**
+     * Lee el archivo completo en un buffer directo; si el tamaño no coincide con el índice
+     * no se cachea y el llamador lo envía desde disco
+     */
+    private ByteBuffer read(Path filePath, long expectedSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) expectedSize);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (channel.size() != expectedSize) {
+                logger.debug("Tamaño distinto al del índice, no se cachea: {}", filePath.getFileName());
+                return null;
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    return null;
+                }
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer read(FileStorage storage, String key, long expectedSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) expectedSize);
+        try (InputStream in = storage.get(key, 0, expectedSize)) {
+            ReadableByteChannel channel = Channels.newChannel(in);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null; // Más corto que lo indicado en el índice
+                }
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, CachedMedia>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            CachedMedia eldest = iterator.next().getValue();
+            iterator.remove();
+            currentBytes -= eldest.content().capacity();
+            evictions.increment();
+        }
+    }
+
+    private void removeEntry(String fileName) {
+        CachedMedia removed = entries.remove(fileName);
+        if (removed != null) {
+            currentBytes -= removed.content().capacity();
+        }
+    }
+}
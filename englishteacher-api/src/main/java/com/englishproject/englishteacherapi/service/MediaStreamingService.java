@@ -0,0 +1,408 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Envía archivos multimedia al cliente soportando peticiones parciales (Range / If-Range)
+ * sin cargar el contenido en el heap.
+ *
+ * Si el conector de Tomcat soporta sendfile se delega la transferencia al sistema operativo
+ * (sin copias en el heap). En otro caso se usa FileChannel.transferTo sobre el stream de salida
+ * de la respuesta: como el destino no es un socket, la JVM copia por un buffer intermedio, igual
+ * que un bucle de lectura y escritura pero sin cargar el archivo entero en memoria.
+ * También resuelve las peticiones condicionales (If-None-Match / If-Modified-Since) con 304.
+ * Los archivos pequeños del índice se envían desde la caché en memoria (MediaCacheService) y,
+ * con un almacenamiento remoto, cada rango se pide al backend en streaming.
+ */
+@Service
+public class MediaStreamingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaStreamingService.class);
+
+    // Atributos de Tomcat para delegar el envío en sendfile
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final long MAX_TRANSFER_CHUNK = 8L * 1024 * 1024; // 8 MB por llamada a transferTo
+    private static final String CRLF = "\r\n";
+
+    // Los blobs con nombre UUID o sha256 nunca cambian de contenido
+    private static final Pattern IMMUTABLE_NAME_PATTERN = Pattern.compile(
+            "^([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64})([._-][a-zA-Z0-9._-]*)?$");
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    public static final String REVALIDATE_CACHE_CONTROL = "public, no-cache";
+
+    @Autowired
+    private MediaCacheService mediaCacheService;
+
+    /**
+     * Indica si el nombre corresponde a un blob inmutable (UUID o digest del contenido)
+     */
+    public static boolean isImmutableName(String fileName) {
+        return fileName != null && IMMUTABLE_NAME_PATTERN.matcher(fileName).matches();
+    }
+
+    /**
+     * Envía el archivo completo o los rangos solicitados por el cliente
+     * @param filePath Path absoluto del archivo, ya validado por el llamador
+     * @param contentType Tipo MIME del archivo
+     * @param downloadName Nombre del archivo para Content-Disposition
+     * @param digest Digest del contenido usado como ETag fuerte, o null si no se conoce
+     */
+    public void stream(Path filePath, String contentType, String downloadName, String digest,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String cacheControl = isImmutableName(filePath.getFileName().toString())
+                ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+        stream(filePath, contentType, downloadName, digest, cacheControl, request, response);
+    }
+
+    /**
+     * Igual que {@link #stream(Path, String, String, String, HttpServletRequest, HttpServletResponse)}
+     * pero con una política de Cache-Control explícita
+     */
+    public void stream(Path filePath, String contentType, String downloadName, String digest, String cacheControl,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(filePath, null, contentType, downloadName, digest, cacheControl,
+                Files.size(filePath), Files.getLastModifiedTime(filePath).toMillis(), null, request, response);
+    }
+
+    /**
+     * Envía un archivo del índice usando su tamaño, fecha y digest ya conocidos, sin consultar
+     * el sistema de archivos antes de abrirlo. Los archivos pequeños se sirven desde la caché en memoria.
+     */
+    public void stream(Path filePath, FileIndexService.FileMetadata metadata,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String cacheControl = isImmutableName(metadata.fileName()) ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+        String contentType = metadata.contentType() != null ? metadata.contentType() : "application/octet-stream";
+        stream(filePath, null, contentType, metadata.fileName(), metadata.sha256(), cacheControl,
+                metadata.size(), metadata.lastModified(), metadata, request, response);
+    }
+
+    /**
+     * Envía un archivo del índice guardado en un almacenamiento remoto, pidiendo al backend
+     * solo los rangos que solicitó el cliente
+     * @param digest Digest usado como ETag, o null para no enviarlo
+     * @param cacheControl Política de Cache-Control, o null para elegirla según el nombre
+     */
+    public void streamFromStorage(FileStorage storage, FileIndexService.FileMetadata metadata, String digest,
+                                  String cacheControl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (cacheControl == null) {
+            cacheControl = isImmutableName(metadata.fileName()) ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL;
+        }
+        String contentType = metadata.contentType() != null ? metadata.contentType() : "application/octet-stream";
+        stream(null, storage, contentType, metadata.fileName(), digest, cacheControl,
+                metadata.size(), metadata.lastModified(), digest != null ? metadata : null, request, response);
+    }
+
+    /**
+     * @param filePath Archivo local, o null si se lee de remoteStorage
+     * @param cacheKey Entrada del índice para usar la caché en memoria, o null para no usarla
+     */
+    private void stream(Path filePath, FileStorage remoteStorage, String contentType, String downloadName,
+                        String digest, String cacheControl,
+                        long length, long lastModified, FileIndexService.FileMetadata cacheKey,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = digest != null ? "\"" + digest + "\"" : null;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + downloadName + "\"");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<HttpRange> ranges = resolveRanges(request, etag, lastModified);
+        ByteBuffer cachedBody = null;
+        if (cacheKey != null && !isHeadRequest(request)) {
+            cachedBody = filePath != null
+                    ? mediaCacheService.getOrLoad(filePath, cacheKey)
+                    : mediaCacheService.getOrLoad(remoteStorage, cacheKey);
+        }
+        BodySource source = new BodySource(filePath, remoteStorage, downloadName, cachedBody);
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            writeSingle(source, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> bounds = new ArrayList<>(ranges.size());
+        long requestedBytes = 0;
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue; // Rango no satisfacible, se ignora
+            }
+            if (start > end) {
+                continue;
+            }
+            bounds.add(new long[] {start, end});
+            requestedBytes += end - start + 1;
+        }
+
+        if (bounds.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        // Rangos solapados que piden más bytes que el archivo: se envía el archivo completo
+        if (bounds.size() > 1 && requestedBytes > length) {
+            logger.warn("Rangos solapados para {}, se envía el archivo completo", downloadName);
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            writeSingle(source, 0, length, request, response);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (bounds.size() == 1) {
+            long start = bounds.get(0)[0];
+            long end = bounds.get(0)[1];
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            writeSingle(source, start, end - start + 1, request, response);
+        } else {
+            writeMultipart(source, contentType, length, bounds, request, response);
+        }
+    }
+
+    /**
+     * Evalúa If-None-Match y, si no está presente, If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) && !isHeadRequest(request)) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            if (etag == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*")) {
+                    return true;
+                }
+                // If-None-Match usa comparación débil
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Obtiene los rangos pedidos; devuelve una lista vacía si se debe enviar el archivo completo
+     */
+    private List<HttpRange> resolveRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return List.of();
+        }
+
+        // If-Range: si el validador no coincide el archivo cambió y se envía completo
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.isBlank()) {
+            String validator = ifRange.trim();
+            if (validator.startsWith("\"") || validator.startsWith("W/")) {
+                // If-Range exige comparación fuerte: un ETag débil nunca coincide
+                return validator.equals(etag) ? parseRanges(rangeHeader) : List.of();
+            }
+            long ifRangeDate;
+            try {
+                ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            } catch (IllegalArgumentException e) {
+                return List.of(); // Validador no reconocido
+            }
+            if (ifRangeDate == -1 || lastModified / 1000 != ifRangeDate / 1000) {
+                return List.of();
+            }
+        }
+
+        return parseRanges(rangeHeader);
+    }
+
+    private List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Cabecera Range inválida ignorada: {}", rangeHeader);
+            return List.of();
+        }
+    }
+
+    /**
+     * Origen de los bytes de la respuesta, en orden de preferencia: caché en memoria,
+     * archivo local o almacenamiento remoto
+     */
+    private record BodySource(Path filePath, FileStorage remoteStorage, String key, ByteBuffer cachedBody) {
+    }
+
+    private void writeSingle(BodySource source, long start, long count,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(count);
+        if (isHeadRequest(request)) {
+            return;
+        }
+
+        if (source.cachedBody() != null) {
+            writeFromCache(source.cachedBody(), start, count, Channels.newChannel(response.getOutputStream()));
+            return;
+        }
+        if (source.filePath() == null) {
+            writeFromStorage(source, start, count, response.getOutputStream());
+            return;
+        }
+        Path filePath = source.filePath();
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // Tomcat envía el archivo con sendfile al terminar la petición
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+
+        // Sin sendfile: transferTo hacia un canal que no es socket copia por un buffer intermedio
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            transfer(channel, start, count, target);
+        }
+    }
+
+    private void writeMultipart(BodySource source, String contentType, long length, List<long[]> bounds,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(bounds.size());
+        long contentLength = 0;
+
+        for (long[] range : bounds) {
+            String header = CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + CRLF
+                    + CRLF;
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            contentLength += headerBytes.length + (range[1] - range[0] + 1);
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (isHeadRequest(request)) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        if (source.cachedBody() != null || source.filePath() == null) {
+            for (int i = 0; i < bounds.size(); i++) {
+                long[] range = bounds.get(i);
+                out.write(partHeaders.get(i));
+                if (source.cachedBody() != null) {
+                    writeFromCache(source.cachedBody(), range[0], range[1] - range[0] + 1, target);
+                } else {
+                    writeFromStorage(source, range[0], range[1] - range[0] + 1, out);
+                }
+            }
+            out.write(closing);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(source.filePath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < bounds.size(); i++) {
+                long[] range = bounds.get(i);
+                out.write(partHeaders.get(i));
+                transfer(channel, range[0], range[1] - range[0] + 1, target);
+            }
+        }
+        out.write(closing);
+    }
+
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = channel.transferTo(position, Math.min(end - position, MAX_TRANSFER_CHUNK), target);
+            if (sent <= 0) {
+                throw new EOFException("El archivo terminó antes de lo esperado");
+            }
+            position += sent;
+        }
+    }
+
+    private void writeFromCache(ByteBuffer cachedBody, long start, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer slice = cachedBody.duplicate();
+        slice.position((int) start).limit((int) (start + count));
+        while (slice.hasRemaining()) {
+            target.write(slice);
+        }
+    }
+
+    private void writeFromStorage(BodySource source, long start, long count, ServletOutputStream out) throws IOException {
+        try (InputStream in = source.remoteStorage().get(source.key(), start, count)) {
+            long copied = in.transferTo(out);
+            if (copied < count) {
+                throw new EOFException("El almacenamiento devolvió menos bytes de los esperados");
+            }
+        }
+    }
+
+    private boolean isHeadRequest(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+}
@@ -0,0 +1,359 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.MaintenanceCursor;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.ActivityRepository;
+import com.englishproject.englishteacherapi.repository.MaintenanceCursorRepository;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+import com.englishproject.englishteacherapi.repository.TeacherRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Recolector incremental de archivos huérfanos.
+ *
+ * Recorre el índice de archivos por lotes (por id, retomando donde quedó la pasada anterior,
+ * también después de un reinicio) y borra los blobs que ninguna actividad ni foto de perfil
+ * referencia. Las referencias se consultan por archivo, solo para los candidatos del lote. Los archivos subidos
+ * hace poco se respetan durante un período de gracia, porque el frontend sube el archivo antes
+ * de guardar la actividad que lo usa, y los de actividades desactivadas se conservan durante
+ * un período de retención. Pasada la retención, esas actividades dejan de apuntar al archivo
+ * antes de borrarlo: si se reactivan quedan sin archivo en lugar de con un enlace roto.
+ */
+@Service
+public class OrphanFileCollectorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanFileCollectorService.class);
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CURSOR_NAME = "orphan-file-collector";
+
+    @Value("${app.upload.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.upload.gc.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.upload.gc.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${app.upload.gc.inactive-retention-days:30}")
+    private long inactiveRetentionDays;
+
+    @Value("${app.upload.gc.delete-pause-ms:50}")
+    private long deletePauseMs;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Autowired
+    private MaintenanceCursorRepository maintenanceCursorRepository;
+
+    // Último id revisado; se guarda en la base para retomar después de un reinicio. null hasta leerlo
+    private Long cursor;
+
+    // El informe recorre todo el índice: corre en su propio hilo y se consulta cuando termina
+    private ThreadPoolExecutor reportExecutor;
+    private final AtomicBoolean reportRunning = new AtomicBoolean();
+    private volatile ReportResult lastReport;
+
+    public record OrphanFile(String fileName, long size, LocalDateTime lastUploadAt) {
+    }
+
+    /**
+     * Resultado de una pasada
+     * @param scanned Entradas del índice revisadas
+     * @param orphans Huérfanos encontrados (en el informe se limita la cantidad listada)
+     * @param orphanCount Cantidad total de huérfanos encontrados
+     * @param orphanBytes Bytes que ocupan todos los huérfanos encontrados
+     * @param deleted Archivos borrados (siempre 0 en el informe)
+     */
+    public record CollectionReport(boolean dryRun, int scanned, List<OrphanFile> orphans, int orphanCount,
+                                   long orphanBytes, int deleted, long deletedBytes) {
+    }
+
+    /**
+     * Último informe generado
+     * @param generatedAt Momento en que terminó el recorrido
+     */
+    public record ReportResult(CollectionReport report, LocalDateTime generatedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        reportExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "orphan-report");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reportExecutor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.upload.gc.interval:PT15M}", initialDelayString = "PT5M")
+    public void collectScheduled() {
+        if (!enabled) {
+            return;
+        }
+        CollectionReport report = collectBatch();
+        if (report.deleted() > 0) {
+            logger.info("Recolector de huérfanos: {} archivos borrados ({} bytes) de {} revisados",
+                    report.deleted(), report.deletedBytes(), report.scanned());
+        }
+    }
+
+    /**
+     * Revisa el siguiente lote del índice y borra los huérfanos. Las referencias se consultan
+     * solo para los candidatos del lote, y se vuelven a comprobar dentro de purge antes de borrar.
+     */
+    public synchronized CollectionReport collectBatch() {
+        List<StoredFile> batch = storedFileRepository.findByIdGreaterThanOrderByIdAsc(loadCursor(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            // Fin de la pasada completa: se limpian los temporales abandonados y se reinicia
+            saveCursor(0L);
+            deleteStaleTempFiles();
+            return new CollectionReport(false, 0, List.of(), 0, 0, 0, 0);
+        }
+
+        List<OrphanFile> orphans = new ArrayList<>();
+        long orphanBytes = 0;
+        int deleted = 0;
+        long deletedBytes = 0;
+        for (StoredFile storedFile : batch) {
+            if (!isOrphan(storedFile)) {
+                continue;
+            }
+            orphans.add(toOrphanFile(storedFile));
+            orphanBytes += storedFile.getSize();
+            try {
+                if (blobStoreService.purge(storedFile.getFileName(), storedFile.getSha256(), this::detachIfOrphan)) {
+                    imageDerivativeService.deleteDerivatives(storedFile.getFileName());
+                    deleted++;
+                    deletedBytes += storedFile.getSize();
+                    logger.info("Archivo huérfano eliminado: {} ({} bytes)", storedFile.getFileName(), storedFile.getSize());
+                    pause();
+                }
+            } catch (IOException e) {
+                logger.warn("No se pudo eliminar el archivo huérfano {}: {}", storedFile.getFileName(), e.getMessage());
+            }
+        }
+        saveCursor(batch.get(batch.size() - 1).getId());
+        return new CollectionReport(false, batch.size(), orphans, orphans.size(), orphanBytes, deleted, deletedBytes);
+    }
+
+    /**
+     * Lanza en segundo plano un recorrido de todo el índice que no borra nada
+     * @param limit Cantidad máxima de huérfanos listados en el informe
+     * @return false si ya había un informe en curso
+     */
+    public boolean startReport(int limit) {
+        if (!reportRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            reportExecutor.execute(() -> {
+                try {
+                    lastReport = new ReportResult(dryRun(limit), LocalDateTime.now());
+                } catch (RuntimeException e) {
+                    logger.warn("No se pudo generar el informe de huérfanos: {}", e.getMessage());
+                } finally {
+                    reportRunning.set(false);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            reportRunning.set(false);
+            return false;
+        }
+    }
+
+    public boolean isReportRunning() {
+        return reportRunning.get();
+    }
+
+    public Optional<ReportResult> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /**
+     * Recorre todo el índice sin borrar nada y devuelve lo que se eliminaría
+     * @param limit Cantidad máxima de huérfanos listados en el informe
+     */
+    CollectionReport dryRun(int limit) {
+        List<OrphanFile> orphans = new ArrayList<>();
+        int scanned = 0;
+        int orphanCount = 0;
+        long orphanBytes = 0;
+        long lastId = 0;
+        while (true) {
+            List<StoredFile> batch = storedFileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (StoredFile storedFile : batch) {
+                if (isOrphan(storedFile)) {
+                    orphanCount++;
+                    orphanBytes += storedFile.getSize();
+                    if (orphans.size() < limit) {
+                        orphans.add(toOrphanFile(storedFile));
+                    }
+                }
+            }
+            scanned += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        return new CollectionReport(true, scanned, orphans, orphanCount, orphanBytes, 0, 0);
+    }
+
+    /**
+     * Un archivo es huérfano si pasó el período de gracia desde su última subida y ninguna
+     * actividad ni foto de perfil lo referencia
+     */
+    private boolean isOrphan(StoredFile storedFile) {
+        LocalDateTime lastUpload = storedFile.getLastUploadAt() != null ? storedFile.getLastUploadAt() : storedFile.getCreatedAt();
+        if (lastUpload != null && !lastUpload.isBefore(LocalDateTime.now().minusHours(gracePeriodHours))) {
+            return false;
+        }
+        return isUnreferenced(storedFile.getFileName());
+    }
+
+    /**
+     * true si ninguna actividad (activa o desactivada dentro de la retención) ni foto de perfil
+     * usa el archivo. Es la misma comprobación que decide si un archivo es huérfano
+     */
+    public boolean isUnreferenced(String fileName) {
+        String urlPattern = urlPatternOf(fileName);
+        return activityRepository.countFileReferences(urlPattern, inactiveSince()) == 0
+                && teacherRepository.countProfileImageReferences(urlPattern) == 0;
+    }
+
+    /**
+     * Última comprobación antes de borrar (con el archivo bloqueado): si sigue huérfano, las
+     * actividades desactivadas que todavía lo mencionan lo sueltan
+     */
+    private boolean detachIfOrphan(StoredFile storedFile) {
+        if (!isOrphan(storedFile)) {
+            return false;
+        }
+        int detached = activityRepository.detachExpiredFileReferences(urlPatternOf(storedFile.getFileName()), inactiveSince());
+        if (detached > 0) {
+            logger.info("{} actividades desactivadas dejan de referenciar {}", detached, storedFile.getFileName());
+        }
+        return true;
+    }
+
+    private static String urlPatternOf(String fileName) {
+        return "%" + escapeLike(FileIndexService.fileUrlOf(fileName));
+    }
+
+    private LocalDateTime inactiveSince() {
+        return LocalDateTime.now().minusDays(inactiveRetentionDays);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private long loadCursor() {
+        if (cursor == null) {
+            cursor = maintenanceCursorRepository.findById(CURSOR_NAME).map(MaintenanceCursor::getPosition).orElse(0L);
+        }
+        return cursor;
+    }
+
+    private void saveCursor(long position) {
+        cursor = position;
+        try {
+            maintenanceCursorRepository.save(new MaintenanceCursor(CURSOR_NAME, position, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            // Si no se guarda, después de un reinicio se repasa parte del índice: no se pierde nada
+            logger.warn("No se pudo guardar el cursor del recolector de huérfanos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los temporales de subidas interrumpidas (por ejemplo por un reinicio a mitad de copia)
+     */
+    private void deleteStaleTempFiles() {
+        Path directory = fileLayoutService.getActivitiesPath();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long cutoff = LocalDateTime.now().minusHours(gracePeriodHours)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                    Files.deleteIfExists(path);
+                    logger.info("Temporal abandonado eliminado: {}", path.getFileName());
+                    pause();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudieron limpiar los temporales de subida: {}", e.getMessage());
+        }
+    }
+
+    private OrphanFile toOrphanFile(StoredFile storedFile) {
+        return new OrphanFile(storedFile.getFileName(), storedFile.getSize(),
+                storedFile.getLastUploadAt() != null ? storedFile.getLastUploadAt() : storedFile.getCreatedAt());
+    }
+
+    /**
+     * Pausa entre borrados para no saturar el disco compartido
+     */
+    private void pause() {
+        if (deletePauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(deletePauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
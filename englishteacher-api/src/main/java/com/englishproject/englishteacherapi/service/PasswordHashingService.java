@@ -0,0 +1,275 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Hash y verificación de contraseñas con BCrypt en un carril de ejecución propio.
+ *
+ * BCrypt es caro a propósito: si corriera en los hilos de las peticiones, una ráfaga de logins
+ * (o un ataque de fuerza bruta dentro del rate limit) ocuparía todos los núcleos y frenaría al
+ * resto de la API. Acá corre en un pool fijo con una cola acotada; lo que no entra, o lo que
+ * según el tiempo medio por hash no llegaría a empezar dentro de max-wait, se rechaza enseguida
+ * para que el cliente reintente, en vez de acumular trabajo. Un trabajo cuyo llamador ya dejó de
+ * esperar no se ejecuta; uno que ya empezó se espera hasta el final, porque BCrypt no se puede
+ * interrumpir y cancelarlo solo tiraría el resultado.
+ *
+ * El costo de BCrypt se elige al arrancar midiendo cuánto tarda un hash en esta máquina
+ * (app.auth.password.target-verify-time), salvo que se fije con app.auth.password.bcrypt-cost.
+ * Con varias instancias hay que fijarlo: cada nodo calibraría un valor distinto. Los hashes
+ * guardados con un costo menor se recalculan en el siguiente login exitoso; los de costo mayor
+ * se dejan como están, para que un arranque con la máquina ocupada no debilite las contraseñas.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+    private static final int MIN_COST = 10; // El valor por defecto de BCryptPasswordEncoder: nunca se baja de acá
+    private static final int MAX_COST = 16;
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    @Value("${app.auth.password.threads:0}")
+    private int threads;
+
+    @Value("${app.auth.password.max-queue:16}")
+    private int maxQueue;
+
+    @Value("${app.auth.password.max-wait:PT5S}")
+    private Duration maxWait;
+
+    @Value("${app.auth.password.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    @Value("${app.auth.password.bcrypt-cost:0}")
+    private int configuredCost;
+
+    @Value("${app.auth.password.target-verify-time:PT0.25S}")
+    private Duration targetVerifyTime;
+
+    private ThreadPoolExecutor executor;
+    private int poolSize;
+    private BCryptPasswordEncoder encoder;
+    private int cost;
+    private String dummyHash;
+
+    // Tiempo medio por hash, para estimar la espera de un trabajo nuevo. Se actualiza sin
+    // sincronizar: es solo una estimación
+    private volatile long averageNanos;
+
+    /**
+     * Resultado de verificar una contraseña
+     * @param newHash Hash recalculado con el costo actual, si el guardado usaba uno menor; null si no hace falta
+     */
+    public record Verification(boolean matches, String newHash) {
+    }
+
+    /**
+     * Se lanza cuando el carril de contraseñas está saturado; el llamador responde 503 con Retry-After
+     */
+    public static class PasswordHashingBusyException extends IllegalStateException {
+        private final long retryAfterSeconds;
+
+        public PasswordHashingBusyException(long retryAfterSeconds) {
+            super("El servidor está procesando demasiados inicios de sesión, intenta de nuevo en " + retryAfterSeconds + " segundos");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // La mitad de los núcleos por defecto: el resto queda para atender peticiones
+        poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueue)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        cost = configuredCost > 0 ? Math.max(4, Math.min(31, configuredCost)) : calibrate();
+        encoder = new BCryptPasswordEncoder(cost);
+        // Se verifica contra este hash cuando el email no existe, así la respuesta tarda lo mismo
+        long start = System.nanoTime();
+        dummyHash = encoder.encode("dummy-password-for-unknown-accounts");
+        averageNanos = System.nanoTime() - start;
+        logger.info("Hash de contraseñas: BCrypt costo {}, {} hilos, cola de {}", cost, poolSize, maxQueue);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Elige el mayor costo cuyo hash tarde como mucho el tiempo objetivo. Cada punto de costo
+     * duplica el trabajo, así que alcanza con medir el mínimo y extrapolar.
+     */
+    private int calibrate() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_COST);
+        probe.encode("calibration"); // Calentamiento del JIT
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int chosen = MIN_COST;
+        long estimate = best;
+        while (chosen < MAX_COST && estimate * 2 <= targetVerifyTime.toNanos()) {
+            estimate *= 2;
+            chosen++;
+        }
+        logger.info("Calibración de BCrypt: costo {} tarda {} ms, se usa costo {} (~{} ms, objetivo {} ms)",
+                MIN_COST, TimeUnit.NANOSECONDS.toMillis(best), chosen,
+                TimeUnit.NANOSECONDS.toMillis(estimate), targetVerifyTime.toMillis());
+        return chosen;
+    }
+
+    /**
+     * Calcula el hash de una contraseña nueva
+     * @throws PasswordHashingBusyException si el carril está saturado
+     */
+    public String hash(String plainPassword) {
+        return submit(() -> encoder.encode(plainPassword));
+    }
+
+    /**
+     * Verifica una contraseña contra el hash guardado (o contra uno ficticio si storedHash es null)
+     * y, si coincide pero fue generado con un costo menor, devuelve también el hash nuevo
+     * @throws PasswordHashingBusyException si el carril está saturado
+     */
+    public Verification verify(String plainPassword, String storedHash) {
+        return submit(() -> {
+            if (storedHash == null) {
+                encoder.matches(plainPassword, dummyHash);
+                return new Verification(false, null);
+            }
+            if (!encoder.matches(plainPassword, storedHash)) {
+                return new Verification(false, null);
+            }
+            return new Verification(true, costOf(storedHash) < cost ? encoder.encode(plainPassword) : null);
+        });
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Ejecuta el trabajo en el carril y espera el resultado
+     * @throws PasswordHashingBusyException si no hay lugar en la cola, si no llegaría a empezar
+     *         dentro de max-wait o si no empezó a tiempo
+     */
+    private <T> T submit(Callable<T> work) {
+        // Estimación conservadora: las rondas de la cola por delante más la que está en curso
+        long expectedWait = (long) (executor.getQueue().size() / poolSize + 1) * averageNanos;
+        if (expectedWait > maxWait.toNanos()) {
+            throw reject("espera estimada de " + TimeUnit.NANOSECONDS.toMillis(expectedWait) + " ms");
+        }
+
+        Task<T> task = new Task<>(work);
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw reject("cola llena");
+        }
+        try {
+            try {
+                return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (task.abandon()) {
+                    throw reject("espera agotada");
+                }
+                // Ya empezó: se espera el resultado, a lo sumo lo que tarda un hash
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            task.abandon();
+            Thread.currentThread().interrupt();
+            throw reject("espera interrumpida");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error calculando el hash de la contraseña", e.getCause());
+        }
+    }
+
+    /**
+     * Trabajo del carril: solo empieza si el llamador todavía lo espera
+     */
+    private final class Task<T> implements Callable<T> {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        private final Callable<T> work;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Task(Callable<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (!state.compareAndSet(WAITING, RUNNING)) {
+                return null; // El llamador ya recibió el rechazo: no se gasta CPU en el hash
+            }
+            long start = System.nanoTime();
+            try {
+                return work.call();
+            } finally {
+                averageNanos += (System.nanoTime() - start - averageNanos) / 8;
+            }
+        }
+
+        /**
+         * @return false si el trabajo ya empezó y hay que esperar su resultado
+         */
+        boolean abandon() {
+            return state.compareAndSet(WAITING, ABANDONED);
+        }
+    }
+
+    private PasswordHashingBusyException reject(String reason) {
+        logger.warn("Verificación de contraseña rechazada ({}): {} en cola", reason, executor.getQueue().size());
+        return new PasswordHashingBusyException(retryAfterSeconds);
+    }
+
+    /**
+     * Costo codificado en el hash ($2a$10$...); -1 si no tiene el formato de BCrypt
+     */
+    private static int costOf(String hash) {
+        if (hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
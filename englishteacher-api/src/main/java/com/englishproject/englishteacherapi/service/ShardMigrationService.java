@@ -0,0 +1,134 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+/**
+ * Migra en segundo plano los archivos del directorio plano activities/ a la ubicación
+ * particionada, por lotes pequeños para no competir con las descargas. Mientras tanto
+ * ambas ubicaciones siguen sirviéndose. Solo se mueven archivos ya indexados; los demás se
+ * encolan en la indexación de BlobStoreService y se mueven en pasadas posteriores. La
+ * migración termina cuando una pasada recorre el directorio entero sin encontrar archivos.
+ */
+@Service
+public class ShardMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardMigrationService.class);
+    private static final Pattern SAFE_FILENAME_PATTERN = Pattern.compile("^[a-zA-Z0-9._-]{1,100}$");
+
+    @Value("${app.upload.sharding.migration-enabled:true}")
+    private boolean migrationEnabled;
+
+    @Value("${app.upload.sharding.batch-size:200}")
+    private int batchSize;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Autowired
+    private FileIndexService fileIndexService;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    private volatile boolean completed = false;
+    private long migratedTotal = 0;
+
+    @Scheduled(fixedDelayString = "${app.upload.sharding.migration-interval:PT1M}", initialDelayString = "PT2M")
+    public synchronized void migrateBatch() {
+        if (!migrationEnabled || completed || !fileStorage.isLocal()) {
+            return;
+        }
+
+        LegacyScan scan;
+        try {
+            scan = scanLegacyFiles();
+        } catch (IOException e) {
+            logger.warn("No se pudo listar el directorio de actividades: {}", e.getMessage());
+            return;
+        }
+
+        if (scan.complete() && scan.legacyCount() == 0) {
+            completed = true;
+            logger.info("Migración a directorios particionados completa ({} archivos movidos)", migratedTotal);
+            return;
+        }
+
+        int moved = 0;
+        for (String fileName : scan.indexed()) {
+            try {
+                if (blobStoreService.moveToShardedLayout(fileName)) {
+                    moved++;
+                }
+            } catch (IOException e) {
+                logger.warn("No se pudo migrar {}: {}", fileName, e.getMessage());
+            }
+        }
+        migratedTotal += moved;
+        // Los que no se movieron (sin indexar todavía, o con error) se reintentan en la próxima pasada
+        logger.info("Migración a directorios particionados: {} archivos movidos en este lote, {} esperando indexación",
+                moved, scan.unindexed());
+    }
+
+    /**
+     * Resultado de recorrer la ubicación plana
+     * @param indexed Archivos ya indexados, listos para mover (hasta batchSize)
+     * @param unindexed Archivos sin indexar vistos; quedan encolados para indexarse en segundo plano
+     * @param legacyCount Archivos vistos en la ubicación plana
+     * @param complete true si se recorrió el directorio entero
+     */
+    private record LegacyScan(List<String> indexed, int unindexed, int legacyCount, boolean complete) {
+    }
+
+    /**
+     * Recorre activities/ hasta juntar un lote de archivos indexados. Los que no están en el
+     * índice se saltean (el hash queda para la indexación en segundo plano) y no frenan el
+     * avance: el lote siempre se completa con los siguientes.
+     */
+    private LegacyScan scanLegacyFiles() throws IOException {
+        List<String> indexed = new ArrayList<>(batchSize);
+        int unindexed = 0;
+        int legacyCount = 0;
+        Path directory = fileLayoutService.getActivitiesPath();
+        if (!Files.isDirectory(directory)) {
+            return new LegacyScan(indexed, 0, 0, true);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                // Los temporales de subidas en curso se quedan donde están
+                if (fileName.endsWith(".tmp") || !SAFE_FILENAME_PATTERN.matcher(fileName).matches()) {
+                    continue;
+                }
+                legacyCount++;
+                if (fileIndexService.lookup(fileName).isEmpty()) {
+                    unindexed++;
+                    blobStoreService.requestIndexing(fileName);
+                    continue;
+                }
+                indexed.add(fileName);
+                if (indexed.size() >= batchSize) {
+                    return new LegacyScan(indexed, unindexed, legacyCount, false);
+                }
+            }
+        }
+        return new LegacyScan(indexed, unindexed, legacyCount, true);
+    }
+}
@@ -0,0 +1,355 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.StorageUsage;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.ActivityRepository;
+import com.englishproject.englishteacherapi.repository.StorageUsageRepository;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+
+/**
+ * Contadores de espacio ocupado por nivel y por profesor, y cuotas sobre ellos.
+ *
+ * Los contadores cuentan bytes físicos: un blob suma al profesor que lo subió primero y a
+ * cada nivel con alguna actividad que lo usa, y una subida deduplicada no suma nada. El de
+ * profesor se actualiza con incrementos atómicos en la misma transacción que crea o borra la
+ * fila de stored_files; el de nivel se recalcula cuando cambian las actividades del nivel.
+ * Una pasada periódica los compara con stored_files y corrige cualquier desvío.
+ *
+ * La cuota del profesor se impone al subir; la del nivel, al asignar el archivo a una
+ * actividad del nivel, que es cuando se sabe a qué nivel va.
+ */
+@Service
+public class StorageQuotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageQuotaService.class);
+
+    @Value("${app.storage.quota.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.storage.quota.uploader-max-bytes:5368709120}") // 5 GB
+    private long uploaderMaxBytes;
+
+    @Value("${app.storage.quota.level-max-bytes:2147483648}") // 2 GB
+    private long levelMaxBytes;
+
+    @Autowired
+    private StorageUsageRepository storageUsageRepository;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    /**
+     * Se lanza cuando la subida dejaría al profesor o al nivel por encima de su cuota
+     */
+    public static class QuotaExceededException extends IllegalStateException {
+        private final StorageUsage.Scope scope;
+        private final long usedBytes;
+        private final long maxBytes;
+
+        public QuotaExceededException(StorageUsage.Scope scope, long usedBytes, long maxBytes) {
+            super((scope == StorageUsage.Scope.LEVEL ? "El nivel" : "El profesor")
+                    + " superaría su cuota de almacenamiento (" + usedBytes + " de " + maxBytes + " bytes usados)");
+            this.scope = scope;
+            this.usedBytes = usedBytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public StorageUsage.Scope getScope() {
+            return scope;
+        }
+
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Resultado de una pasada de conciliación
+     * @param corrected Contadores que no coincidían con stored_files y se corrigieron
+     */
+    public record ReconcileReport(int checked, int corrected) {
+    }
+
+    /**
+     * Control previo de la cuota del profesor, antes de leer el cuerpo de la subida. Es solo
+     * un adelanto: la cuota se vuelve a imponer mientras se leen los bytes (remainingBytes) y
+     * al registrar el blob (recordCreated), así que una subida sin Content-Length no la evita.
+     * @param uploadedBy Email del profesor que sube el archivo
+     * @param incomingBytes Tamaño anunciado (Content-Length o tamaño declarado de la sesión), o -1 si no se conoce
+     * @throws QuotaExceededException si la cuota se superaría
+     */
+    public void checkQuota(String uploadedBy, long incomingBytes) {
+        if (!enabled || uploadedBy == null || uploaderMaxBytes <= 0) {
+            return;
+        }
+        long used = getUsedBytes(StorageUsage.Scope.UPLOADER, uploadedBy);
+        if (used + Math.max(0, incomingBytes) > uploaderMaxBytes || (incomingBytes < 0 && used >= uploaderMaxBytes)) {
+            throw new QuotaExceededException(StorageUsage.Scope.UPLOADER, used, uploaderMaxBytes);
+        }
+    }
+
+    /**
+     * Bytes que el profesor todavía puede subir; sirve de límite mientras se lee la subida
+     */
+    public long remainingBytes(String uploadedBy) {
+        if (!enabled || uploadedBy == null || uploaderMaxBytes <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, uploaderMaxBytes - getUsedBytes(StorageUsage.Scope.UPLOADER, uploadedBy));
+    }
+
+    /**
+     * Excepción para una subida que ya superó lo que le quedaba al profesor mientras se leía
+     */
+    public QuotaExceededException uploaderQuotaExceeded(String uploadedBy) {
+        return new QuotaExceededException(StorageUsage.Scope.UPLOADER,
+                getUsedBytes(StorageUsage.Scope.UPLOADER, uploadedBy), uploaderMaxBytes);
+    }
+
+    /**
+     * Comprueba que asignar el archivo a una actividad no deje al nivel por encima de su cuota.
+     * Un archivo que el nivel ya usa en otra actividad no suma bytes.
+     * @param fileUrl URL del archivo de la actividad (/api/files/activities/{fileName})
+     * @throws QuotaExceededException si la cuota del nivel se superaría
+     */
+    public void checkLevelQuota(Long levelId, String fileUrl) {
+        if (!enabled || levelId == null || levelMaxBytes <= 0) {
+            return;
+        }
+        Optional<StoredFile> storedFile = FileIndexService.fileNameFromUrl(fileUrl)
+                .flatMap(storedFileRepository::findByFileName);
+        if (storedFile.isEmpty() || activityRepository.findLevelIdsByResourceFileUrl(fileUrl).contains(levelId)) {
+            return;
+        }
+        Long bytes = storedFileRepository.sumSizeByLevelId(levelId);
+        long used = bytes != null ? bytes : 0L;
+        if (used + storedFile.get().getSize() > levelMaxBytes) {
+            throw new QuotaExceededException(StorageUsage.Scope.LEVEL, used, levelMaxBytes);
+        }
+    }
+
+    public long getUsedBytes(StorageUsage.Scope scope, String ownerKey) {
+        return storageUsageRepository.findByScopeAndOwnerKey(scope, ownerKey)
+                .map(StorageUsage::getBytes)
+                .orElse(0L);
+    }
+
+    /**
+     * Crea el contador del profesor si todavía no existe. Se llama antes de abrir la transacción
+     * de la subida: dentro de ella los contadores solo se modifican con UPDATE, porque un INSERT
+     * duplicado dejaría la transacción abortada en Postgres.
+     */
+    public void ensureUploaderRow(String uploadedBy) {
+        if (uploadedBy == null || storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, uploadedBy).isPresent()) {
+            return;
+        }
+        StorageUsage usage = new StorageUsage();
+        usage.setScope(StorageUsage.Scope.UPLOADER);
+        usage.setOwnerKey(uploadedBy);
+        try {
+            storageUsageRepository.save(usage);
+        } catch (DataIntegrityViolationException e) {
+            // Otra petición la creó al mismo tiempo
+        }
+    }
+
+    /**
+     * Suma un blob nuevo al profesor que lo subió y a los niveles que ya lo usan. Debe llamarse
+     * dentro de la transacción que inserta la fila en stored_files: si la cuota no alcanza se
+     * lanza la excepción y la inserción se deshace junto con el contador.
+     * @throws QuotaExceededException si el blob deja al profesor por encima de su cuota
+     */
+    public void recordCreated(StoredFile storedFile) {
+        String uploadedBy = storedFile.getUploadedBy();
+        if (uploadedBy != null) {
+            LocalDateTime now = LocalDateTime.now();
+            if (enabled && uploaderMaxBytes > 0) {
+                if (storageUsageRepository.incrementWithinLimit(StorageUsage.Scope.UPLOADER, uploadedBy,
+                        storedFile.getSize(), 1, uploaderMaxBytes, now) == 0) {
+                    throw uploaderQuotaExceeded(uploadedBy);
+                }
+            } else {
+                storageUsageRepository.increment(StorageUsage.Scope.UPLOADER, uploadedBy, storedFile.getSize(), 1, now);
+            }
+        }
+        updateLevelsUsing(storedFile.getFileName());
+    }
+
+    /**
+     * Descuenta un blob que se borra; va en la misma transacción que el borrado de la fila
+     */
+    public void recordDeleted(StoredFile storedFile) {
+        if (storedFile.getUploadedBy() != null) {
+            storageUsageRepository.increment(StorageUsage.Scope.UPLOADER, storedFile.getUploadedBy(),
+                    -storedFile.getSize(), -1, LocalDateTime.now());
+        }
+        updateLevelsUsing(storedFile.getFileName());
+    }
+
+    /**
+     * Recalcula el uso de un nivel a partir de los archivos que referencian sus actividades.
+     * Se llama después de crear, editar o borrar una actividad: un blob deduplicado puede estar
+     * en varios niveles a la vez, así que el contador no se puede mover con incrementos.
+     */
+    public void refreshLevel(Long levelId) {
+        if (levelId == null) {
+            return;
+        }
+        try {
+            if (updateLevelTotals(levelId)) {
+                return;
+            }
+            StorageUsage usage = new StorageUsage();
+            usage.setScope(StorageUsage.Scope.LEVEL);
+            usage.setOwnerKey(levelId.toString());
+            try {
+                storageUsageRepository.save(usage);
+            } catch (DataIntegrityViolationException e) {
+                // Otra petición la creó al mismo tiempo
+            }
+            updateLevelTotals(levelId);
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo recalcular el uso del nivel {}: {}", levelId, e.getMessage());
+        }
+    }
+
+    /**
+     * Fija los totales del nivel desde stored_files
+     * @return false si el nivel todavía no tiene contador
+     */
+    private boolean updateLevelTotals(Long levelId) {
+        Long bytes = storedFileRepository.sumSizeByLevelId(levelId);
+        Long files = storedFileRepository.countByLevelId(levelId);
+        return storageUsageRepository.setTotals(StorageUsage.Scope.LEVEL, levelId.toString(),
+                bytes != null ? bytes : 0L, files != null ? files : 0L, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * Un blob que aparece o desaparece cambia el uso de los niveles cuyas actividades ya lo
+     * referencian. Un nivel sin contador lo crea la próxima conciliación.
+     */
+    private void updateLevelsUsing(String fileName) {
+        for (Long levelId : activityRepository.findLevelIdsByResourceFileUrl(FileIndexService.fileUrlOf(fileName))) {
+            updateLevelTotals(levelId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.quota.reconcile-interval:PT1H}", initialDelayString = "PT3M")
+    public void reconcileScheduled() {
+        ReconcileReport report = reconcile();
+        if (report.corrected() > 0) {
+            logger.warn("Conciliación de uso de almacenamiento: {} de {} contadores corregidos",
+                    report.corrected(), report.checked());
+        }
+    }
+
+    /**
+     * Recalcula los totales desde stored_files y corrige los contadores que no coinciden.
+     * Los contadores se leen antes que los totales: si una subida los modifica durante la
+     * pasada, el control de versión descarta la corrección y se revisa en la próxima.
+     */
+    public synchronized ReconcileReport reconcile() {
+        Map<String, StorageUsage> uploaders = byOwner(storageUsageRepository.findByScopeOrderByBytesDesc(StorageUsage.Scope.UPLOADER));
+        Map<String, StorageUsage> levels = byOwner(storageUsageRepository.findByScopeOrderByBytesDesc(StorageUsage.Scope.LEVEL));
+
+        int[] counts = new int[2];
+        reconcileScope(StorageUsage.Scope.UPLOADER, uploaders, totalsByOwner(storedFileRepository.sumSizeGroupByUploader()), counts);
+        reconcileScope(StorageUsage.Scope.LEVEL, levels, totalsByOwner(storedFileRepository.sumSizeGroupByLevel()), counts);
+        return new ReconcileReport(counts[0], counts[1]);
+    }
+
+    private void reconcileScope(StorageUsage.Scope scope, Map<String, StorageUsage> current,
+                                Map<String, long[]> expected, int[] counts) {
+        Set<String> owners = new HashSet<>(current.keySet());
+        owners.addAll(expected.keySet());
+
+        for (String owner : owners) {
+            counts[0]++;
+            long[] totals = expected.getOrDefault(owner, new long[2]);
+            StorageUsage usage = current.get(owner);
+            if (usage == null) {
+                usage = new StorageUsage();
+                usage.setScope(scope);
+                usage.setOwnerKey(owner);
+            } else if (usage.getBytes() == totals[0] && usage.getFileCount() == totals[1]) {
+                continue;
+            } else {
+                logger.warn("Uso de {} {} desviado: contador {} bytes / {} archivos, real {} bytes / {} archivos",
+                        scope, owner, usage.getBytes(), usage.getFileCount(), totals[0], totals[1]);
+            }
+
+            usage.setBytes(totals[0]);
+            usage.setFileCount(totals[1]);
+            usage.setUpdatedAt(LocalDateTime.now());
+            try {
+                storageUsageRepository.save(usage);
+                counts[1]++;
+            } catch (ObjectOptimisticLockingFailureException | DataIntegrityViolationException e) {
+                logger.debug("Contador de {} {} modificado durante la conciliación, se revisa en la próxima", scope, owner);
+            }
+        }
+    }
+
+    private Map<String, StorageUsage> byOwner(List<StorageUsage> usages) {
+        Map<String, StorageUsage> result = new HashMap<>();
+        for (StorageUsage usage : usages) {
+            result.put(usage.getOwnerKey(), usage);
+        }
+        return result;
+    }
+
+    private Map<String, long[]> totalsByOwner(List<Object[]> rows) {
+        Map<String, long[]> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.put(String.valueOf(row[0]), new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+        }
+        return result;
+    }
+
+    /**
+     * Uso y cuota del profesor indicado; no expone el de los demás
+     */
+    public Map<String, Object> getUsage(String email) {
+        Map<String, Object> usage = new HashMap<>();
+        usage.put("enabled", enabled);
+        usage.put("uploaderMaxBytes", uploaderMaxBytes);
+        usage.put("levelMaxBytes", levelMaxBytes);
+        usage.put("uploader", storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, email)
+                .map(this::toView)
+                .orElse(null));
+        return usage;
+    }
+
+    private Map<String, Object> toView(StorageUsage usage) {
+        Map<String, Object> view = new HashMap<>();
+        view.put("owner", usage.getOwnerKey());
+        view.put("bytes", usage.getBytes());
+        view.put("fileCount", usage.getFileCount());
+        view.put("updatedAt", usage.getUpdatedAt());
+        return view;
+    }
+}
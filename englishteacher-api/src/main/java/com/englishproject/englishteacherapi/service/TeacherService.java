@@ -1,13 +1,15 @@
 package com.englishproject.englishteacherapi.service;
 
+import com.englishproject.englishteacherapi.dto.PageCursor;
 import com.englishproject.englishteacherapi.dto.TeacherDTO;
 import com.englishproject.englishteacherapi.model.Teacher;
 import com.englishproject.englishteacherapi.repository.TeacherRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class TeacherService {
@@ -15,11 +17,33 @@ public class TeacherService {
     @Autowired
     private TeacherRepository teacherRepository;
 
-    public List<TeacherDTO> getAllTeachers() {
-        return teacherRepository.findAll()
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    private static final String TEACHERS_SCOPE = "teachers";
+
+    /**
+     * Página de profesores por keyset sobre el id
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera
+     * @throws IllegalArgumentException si el cursor es inválido
+     */
+    public PageCursor.Page<TeacherDTO> getTeachersPage(String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor, TEACHERS_SCOPE);
+        // Se pide una fila de más para saber si hay página siguiente sin contar el total
+        List<Teacher> rows = teacherRepository.findPageAfter(after != null ? after.id() : 0L, PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            nextCursor = new PageCursor(null, rows.get(size - 1).getId()).encode(TEACHERS_SCOPE);
+        }
+        return new PageCursor.Page<>(rows.stream().map(this::convertToDTO).toList(), nextCursor);
     }
 
     public Optional<TeacherDTO> getTeacherById(Long id) {
@@ -30,21 +54,29 @@ public class TeacherService {
     public TeacherDTO createTeacher(TeacherDTO teacherDTO) {
         Teacher teacher = convertToEntity(teacherDTO);
         Teacher savedTeacher = teacherRepository.save(teacher);
+        imageDerivativeService.enqueueFromUrl(savedTeacher.getProfileImageUrl());
         return convertToDTO(savedTeacher);
     }
 
     public Optional<TeacherDTO> updateTeacher(Long id, TeacherDTO teacherDTO) {
         return teacherRepository.findById(id)
                 .map(teacher -> {
+                    String previousEmail = teacher.getEmail();
                     updateTeacherFromDTO(teacher, teacherDTO);
                     Teacher savedTeacher = teacherRepository.save(teacher);
+                    // Si cambió el email, los tokens emitidos con el anterior dejan de valer ya
+                    authService.invalidatePrincipal(previousEmail);
+                    authService.invalidatePrincipal(savedTeacher.getEmail());
+                    imageDerivativeService.enqueueFromUrl(savedTeacher.getProfileImageUrl());
                     return convertToDTO(savedTeacher);
                 });
     }
 
     public boolean deleteTeacher(Long id) {
-        if (teacherRepository.existsById(id)) {
+        Optional<Teacher> teacher = teacherRepository.findById(id);
+        if (teacher.isPresent()) {
             teacherRepository.deleteById(id);
+            authService.invalidatePrincipal(teacher.get().getEmail());
             return true;
         }
         return false;
@@ -85,7 +117,9 @@ public class TeacherService {
 
         // Solo actualizar la contraseña si se proporciona una nueva
         if (teacherDTO.getPassword() != null && !teacherDTO.getPassword().trim().isEmpty()) {
-            teacher.setPasswordWithHash(teacherDTO.getPassword());
+            teacher.setPassword(passwordHashingService.hash(teacherDTO.getPassword()));
+            // Los tokens emitidos hasta ahora (incluidos refresh tokens robados) dejan de valer
+            teacher.setCredentialsChangedAt(Instant.now().getEpochSecond() * 1000);
         }
     }
 }
@@ -0,0 +1,193 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.englishproject.englishteacherapi.model.RevokedToken;
+import com.englishproject.englishteacherapi.repository.RevokedTokenRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Tokens revocados (logout y refresh tokens ya usados).
+ *
+ * La lista exacta vive en la tabla revoked_tokens; delante hay un filtro de Bloom en memoria
+ * con los jti revocados. Si el filtro dice que un jti no está, seguro no está: el caso normal
+ * (token no revocado) cuesta unos pocos hashes y ningún acceso a la base. Solo cuando el filtro
+ * da positivo se confirma con la base, para descartar falsos positivos.
+ *
+ * Un filtro de Bloom no admite borrados, así que se reconstruye periódicamente desde la base:
+ * eso quita los tokens ya expirados e incorpora lo revocado en otras instancias.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    @Value("${app.auth.revocation.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Value("${app.auth.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private volatile BloomFilter filter;
+
+    // Revocaciones de esta instancia que la reconstrucción en curso podría no haber leído todavía
+    private final Map<String, Long> recentRevocations = new ConcurrentHashMap<>();
+
+    /**
+     * Filtro de Bloom de tamaño fijo con doble hashing (h1 + i*h2) sobre un AtomicLongArray
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            int n = Math.max(1, expectedEntries);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.max(1, (m + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void add(String tokenId) {
+            long[] hashes = hash(tokenId);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(word);
+                while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    current = bits.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(String tokenId) {
+            long[] hashes = hash(tokenId);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Los jti son UUID aleatorios: sus dos mitades ya son hashes uniformes
+         */
+        private static long[] hash(String tokenId) {
+            long h1;
+            long h2;
+            try {
+                UUID uuid = UUID.fromString(tokenId);
+                h1 = mix(uuid.getMostSignificantBits());
+                h2 = mix(uuid.getLeastSignificantBits());
+            } catch (IllegalArgumentException e) {
+                h1 = 0x9E3779B97F4A7C15L;
+                h2 = 0xC2B2AE3D27D4EB4FL;
+                for (byte b : tokenId.getBytes(StandardCharsets.UTF_8)) {
+                    h1 = (h1 ^ b) * 0x100000001B3L;
+                    h2 = (h2 ^ b) * 0xFF51AFD7ED558CCDL;
+                }
+                h1 = mix(h1);
+                h2 = mix(h2);
+            }
+            return new long[] {h1, h2 | 1}; // h2 impar: recorre posiciones distintas
+        }
+
+        private static long mix(long value) {
+            value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+            value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return value ^ (value >>> 33);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Indica si el token fue revocado. Los tokens sin jti (emitidos antes de que existiera la
+     * revocación) no se pueden revocar y expiran solos.
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        try {
+            return revokedTokenRepository.existsByTokenId(tokenId); // Puede ser un falso positivo del filtro
+        } catch (DataAccessException e) {
+            // Si la base no responde se asume revocado: mejor pedir login de nuevo que aceptar un token dado de baja
+            logger.error("No se pudo confirmar la revocación del token {}: {}", tokenId, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Revoca un token hasta su expiración
+     * @return false si ya estaba revocado (por ejemplo, un refresh token que se intenta usar dos veces)
+     */
+    public boolean revoke(String tokenId, String email, long expiresAtMillis) {
+        RevokedToken revoked = new RevokedToken();
+        revoked.setTokenId(tokenId);
+        revoked.setEmail(email);
+        revoked.setExpiresAt(expiresAtMillis);
+        revoked.setRevokedAt(System.currentTimeMillis());
+        try {
+            revokedTokenRepository.save(revoked);
+        } catch (DataIntegrityViolationException e) {
+            return false; // La restricción única sobre token_id garantiza un solo uso entre instancias
+        }
+        recentRevocations.put(tokenId, System.nanoTime());
+        filter.add(tokenId);
+        return true;
+    }
+
+    /**
+     * Vuelve a armar el filtro con los tokens vigentes de la base y borra los expirados
+     */
+    @Scheduled(fixedDelayString = "${app.auth.revocation.refresh-interval:PT1M}",
+            initialDelayString = "${app.auth.revocation.refresh-interval:PT1M}")
+    public void rebuild() {
+        long buildStart = System.nanoTime();
+        long now = System.currentTimeMillis();
+        try {
+            int deleted = revokedTokenRepository.deleteExpired(now);
+            List<String> active = revokedTokenRepository.findActiveTokenIds(now);
+
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, active.size() * 2), falsePositiveRate);
+            active.forEach(rebuilt::add);
+            filter = rebuilt;
+            // Lo revocado durante la lectura puede no estar en el resultado: se agrega después del cambio
+            recentRevocations.keySet().forEach(rebuilt::add);
+            recentRevocations.values().removeIf(revokedAt -> revokedAt - buildStart < 0);
+
+            logger.debug("Filtro de tokens revocados reconstruido: {} vigentes, {} expirados eliminados", active.size(), deleted);
+        } catch (DataAccessException e) {
+            if (filter == null) {
+                throw e; // Sin filtro inicial no se puede arrancar de forma segura
+            }
+            logger.warn("No se pudo reconstruir el filtro de tokens revocados: {}", e.getMessage());
+        }
+    }
+}
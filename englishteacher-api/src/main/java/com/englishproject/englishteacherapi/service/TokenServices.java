@@ -2,13 +2,24 @@ package com.englishproject.englishteacherapi.service;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class TokenServices {
@@ -20,6 +31,69 @@ public class TokenServices {
     @Value("${jwt.expiration:1800}") // 30 minutos por defecto
     private int defaultExpirationTime;
 
+    @Value("${jwt.refresh-expiration:604800}") // 7 días por defecto
+    private int refreshExpirationTime;
+
+    // Claim que distingue los refresh tokens: no sirven para autenticar peticiones
+    private static final String TOKEN_TYPE_CLAIM = "type";
+    private static final String REFRESH_TYPE = "refresh";
+    // Cadena de refresh tokens que sale de un mismo login; se revoca entera si uno se reutiliza
+    private static final String FAMILY_CLAIM = "fam";
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    // Tokens ya verificados, por hash del token, hasta su expiración: evita recalcular la firma en cada petición.
+    // Con el máximo alcanzado cada token nuevo reemplaza a otro elegido con CLOCK
+    @Value("${jwt.verification-cache.max-entries:10000}")
+    private int verificationCacheMaxEntries;
+
+    // La clave y el parser son inmutables y thread-safe: se arman una sola vez
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    private final Map<String, CachedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    // Reloj de CLOCK sobre las claves de verifiedTokens, como en LocalRateLimitStore; solo se modifica con cacheLock
+    private final ReentrantLock cacheLock = new ReentrantLock();
+    private String[] ring;
+    private int used;
+    private int hand;
+
+    /**
+     * Token en caché. Entra sin marca de uso: un token que se usa una sola vez es el primero en
+     * salir, y los que vuelven a usarse sobreviven a una pasada de la aguja
+     */
+    private static final class CachedToken {
+        final VerifiedToken token;
+        volatile boolean referenced;
+
+        CachedToken(VerifiedToken token) {
+            this.token = token;
+        }
+    }
+
+    /**
+     * Datos de un token con firma y expiración ya verificadas
+     * @param id Claim jti, usado para revocarlo; null en tokens emitidos antes de que existiera
+     * @param familyId Cadena de un refresh token; null en tokens de acceso y refresh tokens anteriores
+     */
+    public record VerifiedToken(String email, String id, Date issuedAt, Date expiration, String familyId) {
+
+        public boolean isExpired() {
+            return expiration != null && !expiration.after(new Date());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        ring = new String[Math.max(0, verificationCacheMaxEntries)];
+    }
+
     /**
      * Genera un token JWT para un usuario
      */
@@ -35,6 +109,28 @@ public class TokenServices {
         return generateToken(email, defaultExpirationTime);
     }
 
+    /**
+     * Genera el primer refresh token de un login, que empieza una cadena nueva
+     */
+    public String generateRefreshToken(String email) {
+        return generateRefreshToken(email, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Genera un refresh token: solo sirve para pedir un nuevo par en /api/auth/refresh y es de un solo uso
+     * @param familyId Cadena a la que pertenece; en la rotación se conserva la del token usado
+     */
+    public String generateRefreshToken(String email, String familyId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TOKEN_TYPE_CLAIM, REFRESH_TYPE);
+        claims.put(FAMILY_CLAIM, familyId);
+        return createToken(claims, email, refreshExpirationTime);
+    }
+
+    public int getRefreshExpirationTime() {
+        return refreshExpirationTime;
+    }
+
     /**
      * Crea el token JWT
      */
@@ -42,92 +138,200 @@ public class TokenServices {
         Date now = new Date(System.currentTimeMillis());
         Date expiryDate = new Date(System.currentTimeMillis() + expirationTimeInSeconds * 1000L);
 
-        SecretKey key = Keys.hmacShaKeyFor(secretKey.getBytes());
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     /**
-     * Extrae el email (subject) del token
+     * Verifica firma, expiración y revocación de un token de acceso y devuelve sus datos.
+     * Los tokens válidos quedan en caché hasta que expiran; la revocación se consulta siempre.
+     * @return vacío si el token es inválido, está mal formado, expiró, fue revocado o es un refresh token
      */
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        String digest = digest(token);
+        CachedToken cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            // Un token expirado queda hasta la limpieza o hasta que la aguja lo alcance, sin marca de uso
+            if (cached.token.isExpired()) {
+                return Optional.empty();
+            }
+            if (!cached.referenced) {
+                cached.referenced = true; // Se escribe solo si cambia, para no invalidar la línea de caché en cada petición
+            }
+            return tokenRevocationService.isRevoked(cached.token.id()) ? Optional.empty() : Optional.of(cached.token);
+        }
+
+        try {
+            Claims claims = extractAllClaims(token);
+            if (REFRESH_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM))) {
+                return Optional.empty();
+            }
+            VerifiedToken verified = toVerifiedToken(claims);
+            if (verified.email() == null || verified.isExpired() || tokenRevocationService.isRevoked(verified.id())) {
+                return Optional.empty();
+            }
+            if (verified.expiration() != null && ring.length > 0) {
+                cache(digest, verified);
+            }
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     /**
-     * Extrae la fecha de expiración del token
+     * Verifica un refresh token. No usa la caché: cada refresh token se usa una sola vez.
+     * No rechaza un token ya usado: el llamador lo detecta al revocarlo (revoke devuelve false)
+     * para poder revocar también su cadena.
+     * @return vacío si es inválido, expiró, su cadena fue revocada o no es un refresh token
      */
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public Optional<VerifiedToken> verifyRefreshToken(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Claims claims = extractAllClaims(token);
+            if (!REFRESH_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM))) {
+                return Optional.empty();
+            }
+            VerifiedToken verified = toVerifiedToken(claims);
+            if (verified.email() == null || verified.id() == null || verified.isExpired()
+                    || tokenRevocationService.isRevoked(verified.familyId())) {
+                return Optional.empty();
+            }
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     /**
-     * Extrae un claim específico del token
+     * Revoca el token hasta su expiración
+     * @return false si ya estaba revocado
      */
-    public <T> T extractClaim(String token, ClaimsResolver<T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.resolve(claims);
+    public boolean revoke(VerifiedToken token) {
+        if (token.id() == null || token.expiration() == null) {
+            return false; // Tokens sin jti: no se pueden revocar, expiran solos
+        }
+        return tokenRevocationService.revoke(token.id(), token.email(), token.expiration().getTime());
     }
 
     /**
-     * Extrae todos los claims del token
+     * Revoca la cadena del refresh token: ninguno de sus tokens, ni los ya emitidos, sirve para renovar.
+     * Dura lo que el refresh token más nuevo posible de la cadena.
+     * @return false si el token no tiene cadena o ya estaba revocada
      */
-    private Claims extractAllClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secretKey.getBytes());
+    public boolean revokeFamily(VerifiedToken refreshToken) {
+        if (refreshToken.familyId() == null) {
+            return false;
+        }
+        long expiresAt = System.currentTimeMillis() + refreshExpirationTime * 1000L;
+        return tokenRevocationService.revoke(refreshToken.familyId(), refreshToken.email(), expiresAt);
+    }
 
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static VerifiedToken toVerifiedToken(Claims claims) {
+        return new VerifiedToken(claims.getSubject(), claims.getId(), claims.getIssuedAt(), claims.getExpiration(),
+                claims.get(FAMILY_CLAIM, String.class));
     }
 
     /**
-     * Verifica si el token ha expirado
+     * Verifica la firma y la expiración y extrae todos los claims. Solo lo usan verify y
+     * verifyRefreshToken: el resto del código lee los datos del token desde VerifiedToken
      */
-    public boolean isTokenExpired(String token) {
-        try {
-            return extractExpiration(token).before(new Date());
-        } catch (JwtException e) {
-            return true;
-        }
+    private Claims extractAllClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
      * Valida el token
      */
     public boolean validateToken(String token, String email) {
-        try {
-            final String extractedEmail = extractEmail(token);
-            return (extractedEmail.equals(email) && !isTokenExpired(token));
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verify(token)
+                .map(verified -> verified.email().equals(email))
+                .orElse(false);
     }
 
     /**
      * Valida si el token es válido (sin verificar el email)
      */
     public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
+    /**
+     * Descarta de la caché los tokens que ya expiraron
+     */
+    @Scheduled(fixedDelayString = "PT5M", initialDelayString = "PT5M")
+    public void cleanupVerifiedTokens() {
+        cacheLock.lock();
         try {
-            extractAllClaims(token);
-            return !isTokenExpired(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            for (int position = 0; position < used; position++) {
+                String digest = ring[position];
+                CachedToken cached = digest != null ? verifiedTokens.get(digest) : null;
+                if (cached != null && cached.token.isExpired()) {
+                    verifiedTokens.remove(digest);
+                    ring[position] = null; // La aguja reutiliza los huecos
+                }
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Agrega un token a la caché; si está llena reemplaza a otro elegido con CLOCK
+     */
+    private void cache(String digest, VerifiedToken verified) {
+        cacheLock.lock();
+        try {
+            if (verifiedTokens.containsKey(digest)) {
+                return;
+            }
+            int position = used < ring.length ? used++ : nextVictim();
+            ring[position] = digest;
+            verifiedTokens.put(digest, new CachedToken(verified));
+        } finally {
+            cacheLock.unlock();
         }
     }
 
     /**
-     * Interface funcional para resolver claims
+     * Avanza la aguja hasta una posición libre, un token expirado o uno sin uso desde la pasada
+     * anterior. Como cada pasada limpia las marcas, termina en a lo sumo dos vueltas.
      */
-    @FunctionalInterface
-    public interface ClaimsResolver<T> {
-        T resolve(Claims claims);
+    private int nextVictim() {
+        while (true) {
+            int position = hand;
+            hand = (hand + 1) % ring.length;
+            String candidate = ring[position];
+            if (candidate == null) {
+                return position;
+            }
+            CachedToken cached = verifiedTokens.get(candidate);
+            if (cached != null && cached.referenced && !cached.token.isExpired()) {
+                cached.referenced = false; // Segunda oportunidad
+                continue;
+            }
+            verifiedTokens.remove(candidate);
+            return position;
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 }
@@ -0,0 +1,155 @@
+package com.englishproject.englishteacherapi.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Control de admisión de las subidas.
+ *
+ * Hay dos límites separados:
+ * - Cuerpos en recepción: cuántas subidas pueden estar leyendo de la red a la vez. Se toma
+ *   antes de que se procese el multipart y no espera: si no hay lugar se rechaza enseguida,
+ *   así una ráfaga no termina volcada entera al disco temporal.
+ * - Escrituras en curso: cuántas subidas ya recibidas se procesan (hash, copia al almacén) a
+ *   la vez. Nunca se toma mientras se lee de la red, para que unos pocos clientes lentos no
+ *   ocupen todos los permisos; las que no consiguen permiso esperan en una cola acotada y, si
+ *   la cola está llena o la espera se agota, se rechazan para que el cliente reintente.
+ */
+@Service
+public class UploadAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionService.class);
+
+    @Value("${app.upload.admission.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${app.upload.admission.max-receiving:32}")
+    private int maxReceiving;
+
+    @Value("${app.upload.admission.max-queue:32}")
+    private int maxQueue;
+
+    @Value("${app.upload.admission.max-wait:PT10S}")
+    private Duration maxWait;
+
+    @Value("${app.upload.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    private Semaphore permits;
+    private Semaphore receiving;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Se lanza cuando la subida no puede admitirse; el llamador responde 503 con Retry-After
+     */
+    public static class UploadRejectedException extends IllegalStateException {
+        private final long retryAfterSeconds;
+
+        public UploadRejectedException(long retryAfterSeconds) {
+            super("El servidor está procesando demasiadas subidas, intenta de nuevo en " + retryAfterSeconds + " segundos");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Permiso de escritura o de recepción; se devuelve al cerrarlo
+     */
+    public static final class Permit implements AutoCloseable {
+        private final Semaphore semaphore;
+        private boolean released = false;
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                semaphore.release();
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // Semáforo justo: las subidas en espera se atienden en orden de llegada
+        permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        receiving = new Semaphore(Math.max(1, maxReceiving));
+    }
+
+    /**
+     * Obtiene un lugar para recibir el cuerpo de una subida, sin esperar: un cliente que espera
+     * ya tiene la conexión abierta, así que no tiene sentido encolarlo
+     * @throws UploadRejectedException si ya hay demasiados cuerpos en recepción
+     */
+    public Permit acquireReceiving() {
+        if (receiving.tryAcquire()) {
+            return new Permit(receiving);
+        }
+        throw reject("demasiadas subidas en recepción");
+    }
+
+    /**
+     * Obtiene un permiso para procesar una subida cuyo contenido ya está en el servidor,
+     * esperando en la cola si hace falta.
+     * Las peticiones corren en hilos virtuales, por lo que la espera no ocupa un hilo del sistema.
+     * @throws UploadRejectedException si la cola está llena o se agotó la espera
+     */
+    public Permit acquire() {
+        if (permits.tryAcquire()) {
+            return new Permit(permits);
+        }
+
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            throw reject("cola llena");
+        }
+        try {
+            if (permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                return new Permit(permits);
+            }
+            throw reject("espera agotada");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("espera interrumpida");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inFlight", Math.max(1, maxConcurrent) - permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("maxReceiving", maxReceiving);
+        stats.put("receiving", Math.max(1, maxReceiving) - receiving.availablePermits());
+        stats.put("maxQueue", maxQueue);
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private UploadRejectedException reject(String reason) {
+        rejected.increment();
+        logger.warn("Subida rechazada por control de admisión ({}): {} en espera", reason, waiting.get());
+        return new UploadRejectedException(retryAfterSeconds);
+    }
+}
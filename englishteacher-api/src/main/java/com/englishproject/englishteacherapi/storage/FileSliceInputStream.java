@@ -0,0 +1,59 @@
+package com.englishproject.englishteacherapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream sobre un rango de un archivo, leído con lecturas posicionales
+ */
+class FileSliceInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    FileSliceInputStream(Path path, long offset, long length) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.position = offset;
+        this.remaining = length >= 0 ? length : Math.max(0, channel.size() - offset);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int toRead = (int) Math.min(len, remaining);
+        int read = channel.read(ByteBuffer.wrap(buffer, off, toRead), position);
+        if (read < 0) {
+            remaining = 0;
+            return -1;
+        }
+        position += read;
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
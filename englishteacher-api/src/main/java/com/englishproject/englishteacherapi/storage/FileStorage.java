@@ -0,0 +1,58 @@
+package com.englishproject.englishteacherapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Almacenamiento de los archivos de actividades.
+ *
+ * La clave es el nombre público del archivo (sha256 + extensión o UUID heredado). Cada
+ * implementación decide dónde guardarlo: en el disco local o en un bucket compatible con S3
+ * compartido por varias instancias de la API.
+ */
+public interface FileStorage {
+
+    /**
+     * Guarda un archivo ya escrito en disco. El archivo de origen deja de pertenecer al
+     * llamador: la implementación puede moverlo o borrarlo.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Igual que {@link #put(String, Path)} pero sin bloquear al llamador; los archivos grandes
+     * se suben por partes en paralelo cuando el backend lo permite
+     */
+    CompletableFuture<Void> putAsync(String key, Path source);
+
+    /**
+     * Abre un rango del archivo para leerlo en streaming
+     * @param offset Primer byte a leer
+     * @param length Cantidad de bytes, o -1 para leer hasta el final
+     * @throws java.nio.file.NoSuchFileException si la clave no existe
+     */
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * @return true si el archivo existía y se borró
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Ruta local del archivo cuando el backend es el disco, para poder enviarlo con sendfile
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    /**
+     * true si los archivos viven en el disco de esta instancia
+     */
+    default boolean isLocal() {
+        return false;
+    }
+}
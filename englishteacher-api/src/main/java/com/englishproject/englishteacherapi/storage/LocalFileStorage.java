@@ -0,0 +1,74 @@
+package com.englishproject.englishteacherapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.englishproject.englishteacherapi.service.FileLayoutService;
+
+/**
+ * Almacenamiento en el disco local, bajo app.upload.dir con la estructura particionada.
+ * Es el backend por defecto y el único que permite enviar archivos con sendfile.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalFileStorage implements FileStorage {
+
+    @Autowired
+    private FileLayoutService fileLayoutService;
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = fileLayoutService.shardedPath(key);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Path source) {
+        // Un move dentro del mismo disco es inmediato: no hace falta otro hilo
+        try {
+            put(key, source);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        Path path = fileLayoutService.locate(key).orElseThrow(() -> new NoSuchFileException(key));
+        return new FileSliceInputStream(path, offset, length);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return fileLayoutService.locate(key).isPresent();
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // Durante la migración el archivo puede estar en cualquiera de las dos ubicaciones
+        boolean deleted = Files.deleteIfExists(fileLayoutService.shardedPath(key));
+        return Files.deleteIfExists(fileLayoutService.legacyPath(key)) || deleted;
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return fileLayoutService.locate(key);
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+}
@@ -0,0 +1,377 @@
+package com.englishproject.englishteacherapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Almacenamiento en un bucket compatible con S3 (AWS, MinIO u otro servicio con la misma API),
+ * para que varias instancias de la API compartan los mismos archivos.
+ *
+ * Usa el HttpClient del JDK con firma AWS Signature V4, direccionamiento por path
+ * (endpoint/bucket/clave) y UNSIGNED-PAYLOAD, de modo que los archivos se envían en streaming
+ * sin leerlos dos veces. Los archivos grandes se suben por partes en paralelo.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3FileStorage implements FileStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3FileStorage.class);
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024; // Mínimo que exige S3 salvo la última parte
+    private static final DateTimeFormatter AMZ_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE_STAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    @Value("${app.storage.s3.endpoint:http://localhost:9000}")
+    private String endpoint;
+
+    @Value("${app.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${app.storage.s3.bucket:englishteacher}")
+    private String bucket;
+
+    @Value("${app.storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${app.storage.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${app.storage.s3.key-prefix:activities/}")
+    private String keyPrefix;
+
+    @Value("${app.storage.s3.multipart-threshold:16777216}") // 16 MB
+    private long multipartThreshold;
+
+    @Value("${app.storage.s3.part-size:8388608}") // 8 MB
+    private long partSize;
+
+    @Value("${app.storage.s3.upload-concurrency:4}")
+    private int uploadConcurrency;
+
+    private HttpClient httpClient;
+    private ExecutorService uploadExecutor;
+    private Semaphore partPermits;
+
+    @PostConstruct
+    public void init() {
+        if (accessKey.isBlank() || secretKey.isBlank()) {
+            throw new IllegalStateException("app.storage.s3.access-key y app.storage.s3.secret-key son obligatorios con app.storage.type=s3");
+        }
+        partSize = Math.max(partSize, MIN_PART_SIZE);
+        endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        // Las subidas esperan a la red: hilos virtuales y un semáforo para acotar las partes en vuelo
+        uploadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        partPermits = new Semaphore(Math.max(1, uploadConcurrency));
+        logger.info("Almacenamiento S3 configurado: {}/{} (prefijo {})", endpoint, bucket, keyPrefix);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            long size = Files.size(source);
+            if (size > multipartThreshold) {
+                putMultipart(key, source, size);
+            } else {
+                HttpResponse<String> response = send("PUT", key, Map.of(), Map.of(),
+                        HttpRequest.BodyPublishers.ofFile(source), HttpResponse.BodyHandlers.ofString());
+                requireSuccess(response, "PUT " + key);
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Path source) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                put(key, source);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, uploadExecutor);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        Map<String, String> headers = new TreeMap<>();
+        if (offset > 0 || length >= 0) {
+            headers.put("Range", "bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        HttpResponse<InputStream> response = send("GET", key, Map.of(), headers,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            throw new NoSuchFileException(key);
+        }
+        if (response.statusCode() != 200 && response.statusCode() != 206) {
+            String body = new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+            throw new IOException("GET " + key + " respondió " + response.statusCode() + ": " + body);
+        }
+        return response.body();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", key, Map.of(), Map.of(),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HEAD " + key + " respondió " + response.statusCode());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // S3 responde 204 exista o no la clave, por eso se consulta antes
+        if (!exists(key)) {
+            return false;
+        }
+        HttpResponse<String> response = send("DELETE", key, Map.of(), Map.of(),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        requireSuccess(response, "DELETE " + key);
+        return true;
+    }
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        HttpResponse<String> created = send("POST", key, Map.of("uploads", ""), Map.of(),
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        requireSuccess(created, "CreateMultipartUpload " + key);
+        Matcher matcher = UPLOAD_ID_PATTERN.matcher(created.body());
+        if (!matcher.find()) {
+            throw new IOException("Respuesta de CreateMultipartUpload sin UploadId");
+        }
+        String uploadId = matcher.group(1);
+
+        try {
+            int partCount = (int) ((size + partSize - 1) / partSize);
+            List<Future<String>> etags = new ArrayList<>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                long length = Math.min(partSize, size - offset);
+                etags.add(uploadExecutor.submit(() -> uploadPart(key, uploadId, partNumber, source, offset, length)));
+            }
+
+            StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < partCount; i++) {
+                body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i).get()).append("</ETag></Part>");
+            }
+            body.append("</CompleteMultipartUpload>");
+
+            HttpResponse<String> completed = send("POST", key, Map.of("uploadId", uploadId),
+                    Map.of("Content-Type", "application/xml"),
+                    HttpRequest.BodyPublishers.ofString(body.toString()), HttpResponse.BodyHandlers.ofString());
+            requireSuccess(completed, "CompleteMultipartUpload " + key);
+            // S3 puede responder 200 con un error en el cuerpo
+            if (completed.body().contains("<Error>")) {
+                throw new IOException("CompleteMultipartUpload falló: " + completed.body());
+            }
+            logger.info("Subida por partes completada: {} ({} partes, {} bytes)", key, partCount, size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortMultipart(key, uploadId);
+            throw new IOException("Subida por partes interrumpida", e);
+        } catch (ExecutionException e) {
+            abortMultipart(key, uploadId);
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(key, uploadId);
+            throw e;
+        }
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, Path source,
+                              long offset, long length) throws IOException, InterruptedException {
+        partPermits.acquire();
+        try {
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                    HttpRequest.BodyPublishers.ofInputStream(() -> openSlice(source, offset, length)), length);
+            Map<String, String> query = new TreeMap<>();
+            query.put("partNumber", String.valueOf(partNumber));
+            query.put("uploadId", uploadId);
+            HttpResponse<String> response = send("PUT", key, query, Map.of(), body, HttpResponse.BodyHandlers.ofString());
+            requireSuccess(response, "UploadPart " + partNumber + " de " + key);
+            return response.headers().firstValue("ETag")
+                    .orElseThrow(() -> new IOException("UploadPart sin ETag en la respuesta"));
+        } finally {
+            partPermits.release();
+        }
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        try {
+            send("DELETE", key, Map.of("uploadId", uploadId), Map.of(),
+                    HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            logger.warn("No se pudo abortar la subida por partes {} de {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private InputStream openSlice(Path source, long offset, long length) {
+        try {
+            return new FileSliceInputStream(source, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Firma y envía una petición con AWS Signature V4
+     */
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query, Map<String, String> headers,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler) throws IOException {
+        String canonicalUri = "/" + uriEncode(bucket, false) + "/" + uriEncode(keyPrefix + key, true);
+        StringBuilder canonicalQuery = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(query).entrySet()) {
+            if (canonicalQuery.length() > 0) {
+                canonicalQuery.append('&');
+            }
+            canonicalQuery.append(uriEncode(entry.getKey(), false)).append('=').append(uriEncode(entry.getValue(), false));
+        }
+
+        URI uri = URI.create(endpoint + canonicalUri + (canonicalQuery.length() > 0 ? "?" + canonicalQuery : ""));
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = now.format(AMZ_DATE_FORMAT);
+        String dateStamp = now.format(DATE_STAMP_FORMAT);
+
+        String canonicalHeaders = "host:" + hostHeader(uri) + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n";
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaders + "\n" + UNSIGNED_PAYLOAD;
+
+        String scope = dateStamp + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8),
+                dateStamp), region), "s3"), "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature)
+                .method(method, body);
+        headers.forEach(builder::header);
+
+        try {
+            return httpClient.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Petición a S3 interrumpida", e);
+        }
+    }
+
+    private void requireSuccess(HttpResponse<String> response, String operation) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(operation + " respondió " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    /**
+     * El HttpClient del JDK solo agrega el puerto al Host cuando no es el de por defecto
+     */
+    private String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equals(uri.getScheme()) && port == 80)
+                || ("https".equals(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Codificación de URI de SigV4: solo quedan sin codificar los caracteres no reservados
+     */
+    private static String uriEncode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible en la JVM", e);
+        }
+    }
+}
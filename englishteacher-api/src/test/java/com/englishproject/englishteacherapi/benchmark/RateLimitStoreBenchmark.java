@@ -0,0 +1,86 @@
+package com.englishproject.englishteacherapi.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.ratelimit.ClientAddress;
+import com.englishproject.englishteacherapi.ratelimit.LocalRateLimitStore;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitPolicy;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitStore;
+
+/**
+ * Costo por petición del rate limiting en memoria (GCRA) según el límite configurado.
+ * El estado por IP y política es un solo long, así que el tiempo por llamada no debería
+ * cambiar entre un límite de 10 y uno de 100000.
+ *
+ * Se ejecuta a mano: mvn test-compile y luego esta clase (tiene main) con el classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitStoreBenchmark {
+
+    private static final int CLIENTS = 1024;
+
+    @Param({"10", "1000", "100000"})
+    private int limit;
+
+    private LocalRateLimitStore store;
+    private RateLimitPolicy policy;
+    private ClientAddress[] clients;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        store = new LocalRateLimitStore();
+        ReflectionTestUtils.setField(store, "maxClients", CLIENTS * 2);
+        store.init();
+        policy = new RateLimitPolicy("bench", 0, List.of("/api/**"), Set.of(), limit, Duration.ofMinutes(1), limit);
+        clients = new ClientAddress[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = ClientAddress.parse("10.0." + (i >> 8) + "." + (i & 0xFF));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RateLimitStore.Decision singleThread(Cursor cursor) {
+        return store.acquire(clients[cursor.next++ & (CLIENTS - 1)], policy);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RateLimitStore.Decision fourThreads(Cursor cursor) {
+        return store.acquire(clients[cursor.next++ & (CLIENTS - 1)], policy);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RateLimitStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
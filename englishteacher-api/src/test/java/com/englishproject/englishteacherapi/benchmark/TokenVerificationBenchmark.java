@@ -0,0 +1,94 @@
+package com.englishproject.englishteacherapi.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.repository.RevokedTokenRepository;
+import com.englishproject.englishteacherapi.service.TokenRevocationService;
+import com.englishproject.englishteacherapi.service.TokenServices;
+
+/**
+ * Costo de verificar un token de acceso por petición: con la caché de verificación
+ * (cacheSize > 0) contra recalcular la firma HMAC y parsear los claims cada vez (cacheSize = 0).
+ * La consulta de revocación (filtro de Bloom) se hace en los dos casos.
+ *
+ * Se ejecuta a mano: mvn test-compile y luego esta clase (tiene main) con el classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    private static final int TOKENS = 256;
+
+    @Param({"0", "10000"})
+    private int cacheSize;
+
+    private TokenServices tokenServices;
+    private String[] tokens;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        TokenRevocationService revocation = new TokenRevocationService();
+        ReflectionTestUtils.setField(revocation, "expectedEntries", 100_000);
+        ReflectionTestUtils.setField(revocation, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(revocation, "revokedTokenRepository", mock(RevokedTokenRepository.class));
+        revocation.init();
+
+        tokenServices = new TokenServices();
+        ReflectionTestUtils.setField(tokenServices, "secretKey", "claveDeBenchmarkParaFirmarTokensDeAlMenos256Bits");
+        ReflectionTestUtils.setField(tokenServices, "defaultExpirationTime", 1800);
+        ReflectionTestUtils.setField(tokenServices, "refreshExpirationTime", 3600);
+        ReflectionTestUtils.setField(tokenServices, "verificationCacheMaxEntries", cacheSize);
+        ReflectionTestUtils.setField(tokenServices, "tokenRevocationService", revocation);
+        tokenServices.init();
+
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = tokenServices.generateToken("teacher" + i + "@example.com");
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<TokenServices.VerifiedToken> singleThread(Cursor cursor) {
+        return tokenServices.verify(tokens[cursor.next++ & (TOKENS - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<TokenServices.VerifiedToken> fourThreads(Cursor cursor) {
+        return tokenServices.verify(tokens[cursor.next++ & (TOKENS - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenVerificationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.englishproject.englishteacherapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.service.AuthService;
+import com.englishproject.englishteacherapi.service.TokenServices;
+
+class JwtAuthenticationFilterTest {
+
+    private TokenServices tokenServices;
+    private AuthService authService;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        tokenServices = mock(TokenServices.class);
+        authService = mock(AuthService.class);
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "tokenServices", tokenServices);
+        ReflectionTestUtils.setField(filter, "authService", authService);
+        ReflectionTestUtils.setField(filter, "adminEmails", Set.of("Admin@Example.com"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void configuredAdminGetsTheAdminRole() throws Exception {
+        assertThat(authoritiesOf(authenticate("admin@example.com"))).containsExactly("ROLE_ADMIN");
+    }
+
+    @Test
+    void otherTeachersAreAuthenticatedWithoutTheAdminRole() throws Exception {
+        Authentication authentication = authenticate("teacher@example.com");
+
+        assertThat(authentication).isNotNull();
+        assertThat(authoritiesOf(authentication)).isEmpty();
+    }
+
+    private Authentication authenticate(String email) throws Exception {
+        when(tokenServices.verify("token")).thenReturn(Optional.of(new TokenServices.VerifiedToken(email, "id", null, null, null)));
+        when(authService.isActivePrincipal(email, null)).thenReturn(true);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/rate-limit/admin/top-offenders");
+        request.addHeader("Authorization", "Bearer token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static Set<String> authoritiesOf(Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+}
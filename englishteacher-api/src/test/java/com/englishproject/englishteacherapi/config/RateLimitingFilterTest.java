@@ -0,0 +1,78 @@
+package com.englishproject.englishteacherapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.ratelimit.ClientAddress;
+import com.englishproject.englishteacherapi.ratelimit.ClientAddressResolver;
+import com.englishproject.englishteacherapi.ratelimit.HeavyHitterTracker;
+import com.englishproject.englishteacherapi.ratelimit.LocalRateLimitStore;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitPolicy;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitPolicyRegistry;
+import com.englishproject.englishteacherapi.ratelimit.RateLimitStore;
+
+class RateLimitingFilterTest {
+
+    private RateLimitStore store;
+    private RateLimitingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        LocalRateLimitStore local = new LocalRateLimitStore();
+        ReflectionTestUtils.setField(local, "maxClients", 16);
+        local.init();
+        store = spy(local);
+
+        RateLimitPolicy policy = new RateLimitPolicy("api", 0, List.of("/api/**"), Set.of(), 10, Duration.ofMinutes(1), 10);
+        RateLimitPolicyRegistry registry = mock(RateLimitPolicyRegistry.class);
+        when(registry.resolve(any(), any())).thenReturn(policy);
+        ClientAddressResolver resolver = mock(ClientAddressResolver.class);
+        when(resolver.resolve(any())).thenReturn(ClientAddress.parse("203.0.113.7"));
+
+        filter = new RateLimitingFilter();
+        ReflectionTestUtils.setField(filter, "rateLimitStore", store);
+        ReflectionTestUtils.setField(filter, "rateLimitPolicyRegistry", registry);
+        ReflectionTestUtils.setField(filter, "clientAddressResolver", resolver);
+        ReflectionTestUtils.setField(filter, "heavyHitterTracker", mock(HeavyHitterTracker.class));
+    }
+
+    @Test
+    void registeredTwiceItStillConsumesOneRequest() throws Exception {
+        // Como en la aplicación: filtro del servlet y, dentro, otra vez en la cadena de seguridad
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/levels");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> filter.doFilter(req, res, new MockFilterChain()));
+
+        verify(store, times(1)).acquire(any(), any());
+        assertThat(response.getHeader("X-RateLimit-Remaining")).isEqualTo("9");
+    }
+
+    @Test
+    void remainingDropsByOnePerRequest() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/levels"), first, new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/levels"), second, new MockFilterChain());
+
+        assertThat(first.getHeader("X-RateLimit-Remaining")).isEqualTo("9");
+        assertThat(second.getHeader("X-RateLimit-Remaining")).isEqualTo("8");
+    }
+}
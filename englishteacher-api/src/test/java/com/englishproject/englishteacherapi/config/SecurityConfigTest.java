@@ -0,0 +1,96 @@
+package com.englishproject.englishteacherapi.config;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+
+/**
+ * Reglas de acceso de la cadena de seguridad. Sin controladores registrados, una petición que
+ * pasa la seguridad termina en 404 y una rechazada en 403.
+ */
+@SpringJUnitWebConfig(classes = {SecurityConfig.class, SecurityConfigTest.Filters.class})
+class SecurityConfigTest {
+
+    private static final RequestPostProcessor TEACHER = user("teacher@example.com");
+    private static final RequestPostProcessor ADMIN = user("admin@example.com").roles("ADMIN");
+
+    @Configuration
+    static class Filters {
+        // Se registran ya construidos para que Spring no intente inyectarles sus dependencias
+        @Bean
+        static BeanFactoryPostProcessor passThroughFilters() {
+            return beanFactory -> {
+                beanFactory.registerSingleton("jwtAuthenticationFilter", passThrough(JwtAuthenticationFilter.class));
+                beanFactory.registerSingleton("rateLimitingFilter", passThrough(RateLimitingFilter.class));
+            };
+        }
+
+        private static <T extends OncePerRequestFilter> T passThrough(Class<T> type) {
+            T filter = mock(type);
+            try {
+                doAnswer(invocation -> {
+                    invocation.<FilterChain>getArgument(2).doFilter(invocation.getArgument(0), invocation.getArgument(1));
+                    return null;
+                }).when(filter).doFilter(any(ServletRequest.class), any(ServletResponse.class), any(FilterChain.class));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return filter;
+        }
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    void storageReconcileAndLevelUsageRequireTheAdminRole() throws Exception {
+        mockMvc.perform(post("/api/files/usage/reconcile").with(TEACHER)).andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/files/usage/levels/3").with(TEACHER)).andExpect(status().isForbidden());
+
+        mockMvc.perform(post("/api/files/usage/reconcile").with(ADMIN)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/files/usage/levels/3").with(ADMIN)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void orphanReportAndOperationalStatsRequireTheAdminRole() throws Exception {
+        for (String path : new String[] {"/api/files/gc/report", "/api/files/cache/stats", "/api/files/upload/admission/stats"}) {
+            mockMvc.perform(get(path).with(TEACHER)).andExpect(status().isForbidden());
+            mockMvc.perform(get(path).with(ADMIN)).andExpect(status().isNotFound());
+        }
+    }
+
+    @Test
+    void ownStorageUsageOnlyNeedsAuthentication() throws Exception {
+        mockMvc.perform(get("/api/files/usage").with(TEACHER)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/files/usage")).andExpect(status().isForbidden());
+    }
+}
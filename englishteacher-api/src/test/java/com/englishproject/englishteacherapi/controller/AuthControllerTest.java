@@ -0,0 +1,109 @@
+package com.englishproject.englishteacherapi.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.RevokedToken;
+import com.englishproject.englishteacherapi.repository.RevokedTokenRepository;
+import com.englishproject.englishteacherapi.service.AuthService;
+import com.englishproject.englishteacherapi.service.TokenRevocationService;
+import com.englishproject.englishteacherapi.service.TokenServices;
+
+class AuthControllerTest {
+
+    private static final String EMAIL = "teacher@example.com";
+
+    private TokenServices tokenServices;
+    private AuthController controller;
+
+    // Tabla revoked_tokens simulada, con la restricción única sobre token_id
+    private final Set<String> revokedIds = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        RevokedTokenRepository revokedTokenRepository = mock(RevokedTokenRepository.class);
+        when(revokedTokenRepository.findActiveTokenIds(anyLong())).thenReturn(List.of());
+        when(revokedTokenRepository.existsByTokenId(anyString()))
+                .thenAnswer(invocation -> revokedIds.contains(invocation.<String>getArgument(0)));
+        when(revokedTokenRepository.save(any())).thenAnswer(invocation -> {
+            RevokedToken revoked = invocation.getArgument(0);
+            if (!revokedIds.add(revoked.getTokenId())) {
+                throw new DataIntegrityViolationException("uk_revoked_token_id");
+            }
+            return revoked;
+        });
+        TokenRevocationService tokenRevocationService = new TokenRevocationService();
+        ReflectionTestUtils.setField(tokenRevocationService, "expectedEntries", 1000);
+        ReflectionTestUtils.setField(tokenRevocationService, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(tokenRevocationService, "revokedTokenRepository", revokedTokenRepository);
+        tokenRevocationService.init();
+
+        tokenServices = new TokenServices();
+        ReflectionTestUtils.setField(tokenServices, "secretKey", "claveDePruebaParaFirmarTokensDeAlMenos256Bits");
+        ReflectionTestUtils.setField(tokenServices, "defaultExpirationTime", 1800);
+        ReflectionTestUtils.setField(tokenServices, "refreshExpirationTime", 3600);
+        ReflectionTestUtils.setField(tokenServices, "verificationCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(tokenServices, "tokenRevocationService", tokenRevocationService);
+        tokenServices.init();
+
+        AuthService authService = mock(AuthService.class);
+        when(authService.isActivePrincipal(any(), any())).thenReturn(true);
+
+        controller = new AuthController();
+        ReflectionTestUtils.setField(controller, "authService", authService);
+        ReflectionTestUtils.setField(controller, "tokenServices", tokenServices);
+    }
+
+    @Test
+    void rotationKeepsTheFamilyAndEachTokenWorksOnce() {
+        String first = tokenServices.generateRefreshToken(EMAIL);
+
+        ResponseEntity<Map<String, Object>> rotated = refresh(first);
+
+        assertThat(rotated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String second = (String) rotated.getBody().get("refreshToken");
+        assertThat(tokenServices.verifyRefreshToken(second).orElseThrow().familyId())
+                .isEqualTo(tokenServices.verifyRefreshToken(first).orElseThrow().familyId());
+        assertThat(refresh(second).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void replayedRefreshTokenRevokesTheWholeFamily() {
+        String stolen = tokenServices.generateRefreshToken(EMAIL);
+        // Quien robó el token lo usa primero y se queda con el sucesor
+        String attackerToken = (String) refresh(stolen).getBody().get("refreshToken");
+
+        assertThat(refresh(stolen).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(refresh(attackerToken).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void otherFamiliesAreNotAffectedByAReplay() {
+        String stolen = tokenServices.generateRefreshToken(EMAIL);
+        String otherDevice = tokenServices.generateRefreshToken(EMAIL);
+        refresh(stolen);
+        refresh(stolen);
+
+        assertThat(refresh(otherDevice).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private ResponseEntity<Map<String, Object>> refresh(String refreshToken) {
+        return controller.refresh(Map.of("refreshToken", refreshToken));
+    }
+}
@@ -0,0 +1,45 @@
+package com.englishproject.englishteacherapi.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class PageCursorTest {
+
+    private static final String SCOPE = "activities|level=1|type=|active=true";
+
+    @Test
+    void encodedCursorDecodesToTheSamePosition() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2026, 3, 1, 10, 30, 15, 123_000_000), 42L);
+
+        assertThat(PageCursor.decode(cursor.encode(SCOPE), SCOPE)).isEqualTo(cursor);
+    }
+
+    @Test
+    void missingCursorIsTheFirstPage() {
+        assertThat(PageCursor.decode(null, SCOPE)).isNull();
+        assertThat(PageCursor.decode(" ", SCOPE)).isNull();
+    }
+
+    @Test
+    void cursorFromOtherFiltersIsRejected() {
+        String encoded = new PageCursor(LocalDateTime.of(2026, 3, 1, 10, 30), 42L).encode(SCOPE);
+
+        assertThatThrownBy(() -> PageCursor.decode(encoded, "activities|level=2|type=|active=true"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("El cursor no corresponde a estos filtros");
+    }
+
+    @Test
+    void tamperedCursorIsRejected() {
+        assertThatThrownBy(() -> PageCursor.decode("no es base64!", SCOPE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor inválido");
+        assertThatThrownBy(() -> PageCursor.decode("djF8eHh4", SCOPE)) // "v1|xxx"
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor inválido");
+    }
+}
@@ -0,0 +1,60 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ClientAddressResolverTest {
+
+    private ClientAddressResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new ClientAddressResolver();
+        ReflectionTestUtils.setField(resolver, "trustedProxies", List.of("127.0.0.0/8", "::1/128"));
+        ReflectionTestUtils.setField(resolver, "ipv6PrefixLength", 64);
+        resolver.init();
+    }
+
+    @Test
+    void forwardedHeaderFromLoopbackProxyIsUsed() {
+        assertThat(resolver.resolve(request("127.0.0.1", "198.51.100.4"))).isEqualTo(ClientAddress.parse("198.51.100.4"));
+    }
+
+    @Test
+    void forwardedHeaderFromAPrivateNetworkHostIsIgnored() {
+        assertThat(resolver.resolve(request("10.1.2.3", "198.51.100.4"))).isEqualTo(ClientAddress.parse("10.1.2.3"));
+    }
+
+    @Test
+    void edgeProxyNetworkFromConfigurationIsTrusted() {
+        ReflectionTestUtils.setField(resolver, "trustedProxies", List.of("100.64.0.0/10"));
+        resolver.init();
+
+        assertThat(resolver.resolve(request("100.64.3.9", "198.51.100.4, 100.64.3.1")))
+                .isEqualTo(ClientAddress.parse("198.51.100.4"));
+    }
+
+    @Test
+    void missingProxyConfigurationFailsAtStartupWhenRequired() {
+        ClientAddressResolver prod = new ClientAddressResolver();
+        ReflectionTestUtils.setField(prod, "trustedProxies", List.of(""));
+        ReflectionTestUtils.setField(prod, "requireTrustedProxies", true);
+        ReflectionTestUtils.setField(prod, "ipv6PrefixLength", 64);
+
+        assertThatThrownBy(prod::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+}
@@ -0,0 +1,162 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.RateLimitCounter;
+import com.englishproject.englishteacherapi.repository.RateLimitCounterRepository;
+
+class DatabaseRateLimitStoreTest {
+
+    private static final long WINDOW = Duration.ofMinutes(1).toMillis();
+    private static final long FIRST_WINDOW = 1_000 * WINDOW;
+    private static final ClientAddress CLIENT = ClientAddress.parse("203.0.113.7");
+
+    private RateLimitCounterRepository repository;
+    private DatabaseRateLimitStore store;
+
+    // Filas de la tabla simulada, por inicio de ventana (un único cliente y política)
+    private final Map<Long, RateLimitCounter> rows = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RateLimitCounterRepository.class);
+        when(repository.findByClientKeyAndPolicyAndWindowStart(anyString(), anyString(), anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<Long>getArgument(2))));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            RateLimitCounter counter = invocation.getArgument(0);
+            counter.setId((long) rows.size() + 1);
+            rows.put(counter.getWindowStart(), counter);
+            return counter;
+        });
+        when(repository.reserve(anyLong(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            RateLimitCounter counter = rows.values().stream()
+                    .filter(row -> row.getId().equals(invocation.getArgument(0)))
+                    .findFirst().orElseThrow();
+            if (counter.getReserved() != (int) invocation.getArgument(1)) {
+                return 0;
+            }
+            counter.setReserved(counter.getReserved() + (int) invocation.getArgument(2));
+            return 1;
+        });
+
+        store = new DatabaseRateLimitStore();
+        ReflectionTestUtils.setField(store, "rateLimitCounterRepository", repository);
+        ReflectionTestUtils.setField(store, "rateLimitPolicyRegistry", mock(RateLimitPolicyRegistry.class));
+        ReflectionTestUtils.setField(store, "leaseFraction", 0.1);
+        ReflectionTestUtils.setField(store, "minLease", 5);
+        ReflectionTestUtils.setField(store, "fallbackInterval", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(store, "maxClients", 16);
+        ReflectionTestUtils.setField(store, "maxLeases", 4);
+        store.init();
+        setTime(FIRST_WINDOW);
+    }
+
+    @Test
+    void databaseFailureFallsBackToPerInstanceLimits() {
+        when(repository.findByClientKeyAndPolicyAndWindowStart(anyString(), anyString(), anyLong()))
+                .thenThrow(new DataAccessResourceFailureException("base caída"));
+        RateLimitPolicy login = policy(3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.acquire(CLIENT, login).allowed()).isTrue();
+        }
+        assertThat(store.acquire(CLIENT, login).allowed()).isFalse();
+        // Durante el intervalo de respaldo no se vuelve a consultar la base
+        verify(repository, times(1)).findByClientKeyAndPolicyAndWindowStart(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void smallLimitsReserveAtLeastTheMinimumLease() {
+        RateLimitPolicy login = policy(10);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(store.acquire(CLIENT, login).allowed()).isTrue();
+        }
+
+        verify(repository, times(1)).save(any());
+        verify(repository, never()).reserve(anyLong(), anyInt(), anyInt());
+        assertThat(rows.get(FIRST_WINDOW).getReserved()).isEqualTo(5);
+    }
+
+    @Test
+    void previousWindowStillCountsAfterTheBoundary() {
+        RateLimitPolicy login = policy(10);
+        setTime(FIRST_WINDOW + WINDOW - 1_000);
+        for (int i = 0; i < 10; i++) {
+            assertThat(store.acquire(CLIENT, login).allowed()).isTrue();
+        }
+
+        // Recién empezada la ventana siguiente, la anterior todavía ocupa casi todo el límite
+        setTime(FIRST_WINDOW + WINDOW + 1_000);
+        RateLimitStore.Decision rejected = store.acquire(CLIENT, login);
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.resetNanos()).isPositive();
+
+        // A mitad de la ventana solo queda libre la mitad
+        setTime(FIRST_WINDOW + WINDOW + WINDOW / 2);
+        for (int i = 0; i < 5; i++) {
+            assertThat(store.acquire(CLIENT, login).allowed()).isTrue();
+        }
+        assertThat(store.acquire(CLIENT, login).allowed()).isFalse();
+    }
+
+    @Test
+    void manyDistinctClientsDoNotGrowTheLeaseTable() {
+        RateLimitPolicy api = policy(100_000);
+
+        for (int i = 0; i < 50; i++) {
+            store.acquire(ClientAddress.parse("198.51.100." + i), api);
+        }
+
+        Map<String, Object> stats = store.getStats();
+        assertThat((int) stats.get("leases")).isLessThanOrEqualTo(4);
+        assertThat((long) stats.get("leaseEvictions")).isEqualTo(46);
+    }
+
+    @Test
+    void activeClientKeepsItsLeaseWhileOthersAreEvicted() {
+        RateLimitPolicy api = policy(100_000);
+        store.acquire(CLIENT, api);
+
+        for (int i = 0; i < 20; i++) {
+            store.acquire(CLIENT, api);
+            store.acquire(ClientAddress.parse("198.51.100." + i), api);
+        }
+
+        Map<?, ?> leases = (Map<?, ?>) ReflectionTestUtils.getField(store, "leases");
+        assertThat(leases.keySet()).hasSizeLessThanOrEqualTo(4);
+        assertThat(leases.containsKey("login:" + CLIENT)).isTrue();
+    }
+
+    private void setTime(long epochMillis) {
+        ReflectionTestUtils.setField(store, "clock", Clock.fixed(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    private static RateLimitPolicy policy(int limit) {
+        return new RateLimitPolicy("login", 0, List.of("/api/auth/login"), Set.of(), limit, Duration.ofMillis(WINDOW), limit);
+    }
+}
@@ -0,0 +1,26 @@
+package com.englishproject.englishteacherapi.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RateLimitPolicyRegistryTest {
+
+    private RateLimitPolicyRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        registry = new RateLimitPolicyRegistry();
+        ReflectionTestUtils.setField(registry, "policiesFile", "");
+        registry.init();
+    }
+
+    @Test
+    void refreshSharesTheLoginPolicy() {
+        assertThat(registry.resolve("POST", "/api/auth/refresh").getName()).isEqualTo("login");
+        assertThat(registry.resolve("POST", "/api/auth/login").getName()).isEqualTo("login");
+        assertThat(registry.resolve("POST", "/api/auth/check-email").getName()).isEqualTo("auth");
+    }
+}
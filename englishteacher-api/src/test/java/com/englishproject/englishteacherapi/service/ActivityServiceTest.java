@@ -0,0 +1,91 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.dto.ActivityDTO;
+import com.englishproject.englishteacherapi.dto.PageCursor;
+import com.englishproject.englishteacherapi.model.Activity;
+import com.englishproject.englishteacherapi.model.Level;
+import com.englishproject.englishteacherapi.repository.ActivityRepository;
+
+class ActivityServiceTest {
+
+    private ActivityRepository activityRepository;
+    private ActivityService service;
+
+    @BeforeEach
+    void setUp() {
+        activityRepository = mock(ActivityRepository.class);
+        service = new ActivityService();
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+    }
+
+    @Test
+    void extraRowMeansThereIsANextPage() {
+        givenRows(3);
+
+        PageCursor.Page<ActivityDTO> page = service.getActivitiesPage(1L, null, true, null, 2);
+
+        assertThat(page.items()).extracting(ActivityDTO::getId).containsExactly(3L, 2L);
+        PageCursor next = PageCursor.decode(page.nextCursor(), "activities|level=1|type=|active=true");
+        assertThat(next.id()).isEqualTo(2L);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        givenRows(2);
+
+        assertThat(service.getActivitiesPage(1L, null, true, null, 2).nextCursor()).isNull();
+    }
+
+    @Test
+    void cursorFromAnotherLevelIsRejected() {
+        givenRows(3);
+        String cursor = service.getActivitiesPage(1L, null, true, null, 2).nextCursor();
+
+        assertThatThrownBy(() -> service.getActivitiesPage(2L, null, true, cursor, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getActivitiesPage(1L, null, null, cursor, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectedCursorDoesNotQueryTheDatabase() {
+        String cursor = new PageCursor(LocalDateTime.now(), 5L).encode("teachers");
+
+        assertThatThrownBy(() -> service.getActivitiesPage(null, null, null, cursor, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(activityRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    // Filas de la más nueva a la más vieja, como las devuelve la consulta
+    private void givenRows(int count) {
+        Level level = new Level();
+        level.setId(1L);
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 10, 0);
+        List<Activity> rows = new ArrayList<>();
+        for (long id = count; id >= 1; id--) {
+            Activity activity = new Activity();
+            activity.setId(id);
+            activity.setLevel(level);
+            activity.setCreatedAt(now.minusMinutes(count - id));
+            rows.add(activity);
+        }
+        doReturn(rows).when(activityRepository).findBy(any(Specification.class), any());
+    }
+}
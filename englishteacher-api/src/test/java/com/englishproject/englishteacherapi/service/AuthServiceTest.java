@@ -0,0 +1,73 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.repository.TeacherRepository;
+
+class AuthServiceTest {
+
+    private static final String EMAIL = "teacher@example.com";
+    private static final Date ISSUED_AT = new Date(1_700_000_000_000L);
+
+    private TeacherRepository teacherRepository;
+    private AuthService service;
+
+    @BeforeEach
+    void setUp() {
+        teacherRepository = mock(TeacherRepository.class);
+        service = new AuthService();
+        ReflectionTestUtils.setField(service, "teacherRepository", teacherRepository);
+        ReflectionTestUtils.setField(service, "passwordHashingService", mock(PasswordHashingService.class));
+        ReflectionTestUtils.setField(service, "principalCacheTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "principalCacheMaxEntries", 100);
+    }
+
+    @Test
+    void existingPrincipalIsRememberedUntilInvalidated() {
+        when(teacherRepository.findCredentialsChangedAtByEmail(EMAIL)).thenReturn(Optional.of(0L));
+
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isTrue();
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isTrue();
+        verify(teacherRepository, times(1)).findCredentialsChangedAtByEmail(EMAIL);
+
+        service.invalidatePrincipal(EMAIL);
+        when(teacherRepository.findCredentialsChangedAtByEmail(EMAIL)).thenReturn(Optional.empty());
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isFalse();
+    }
+
+    @Test
+    void lookupThatRacesWithADeleteDoesNotCacheTheOldAnswer() {
+        // La consulta ve al profesor todavía, pero el borrado termina e invalida antes de que se guarde
+        when(teacherRepository.findCredentialsChangedAtByEmail(EMAIL))
+                .thenAnswer(invocation -> {
+                    service.invalidatePrincipal(EMAIL);
+                    return Optional.of(0L);
+                })
+                .thenReturn(Optional.empty());
+
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isTrue();
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isFalse();
+        verify(teacherRepository, times(2)).findCredentialsChangedAtByEmail(EMAIL);
+    }
+
+    @Test
+    void tokensIssuedBeforeThePasswordChangeAreRejected() {
+        when(teacherRepository.findCredentialsChangedAtByEmail(EMAIL)).thenReturn(Optional.of(ISSUED_AT.getTime() + 1000));
+
+        assertThat(service.isActivePrincipal(EMAIL, ISSUED_AT)).isFalse();
+        assertThat(service.isActivePrincipal(EMAIL, new Date(ISSUED_AT.getTime() + 1000))).isTrue();
+        assertThat(service.isActivePrincipal(EMAIL, null)).isFalse();
+    }
+}
@@ -0,0 +1,229 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.englishproject.englishteacherapi.model.StorageUsage;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+class BlobStoreServiceTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R', 1, 2, 3};
+
+    @TempDir
+    Path uploadDir;
+
+    private StoredFileRepository storedFileRepository;
+    private FileStorage fileStorage;
+    private FileIndexService fileIndexService;
+    private FileLayoutService fileLayoutService;
+    private StorageQuotaService storageQuotaService;
+    private BlobStoreService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storedFileRepository = mock(StoredFileRepository.class);
+        fileStorage = mock(FileStorage.class);
+        when(fileStorage.isLocal()).thenReturn(true);
+        when(fileStorage.exists(any())).thenReturn(true);
+        when(fileStorage.putAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(storedFileRepository.findByFileName(any())).thenReturn(Optional.empty());
+        when(storedFileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        fileLayoutService = new FileLayoutService();
+        ReflectionTestUtils.setField(fileLayoutService, "uploadDir", uploadDir.toString());
+
+        fileIndexService = new FileIndexService();
+        ReflectionTestUtils.setField(fileIndexService, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(fileIndexService, "fileLayoutService", fileLayoutService);
+
+        service = new BlobStoreService();
+        ReflectionTestUtils.setField(service, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(service, "fileIndexService", fileIndexService);
+        ReflectionTestUtils.setField(service, "fileLayoutService", fileLayoutService);
+        ReflectionTestUtils.setField(service, "mediaCacheService", mock(MediaCacheService.class));
+        storageQuotaService = mock(StorageQuotaService.class);
+        when(storageQuotaService.remainingBytes(any())).thenReturn(Long.MAX_VALUE);
+        ReflectionTestUtils.setField(service, "storageQuotaService", storageQuotaService);
+        ReflectionTestUtils.setField(service, "fileStorage", fileStorage);
+        ReflectionTestUtils.setField(service, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "putTimeout", Duration.ofSeconds(5));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void legacyFileIsServedWithoutDigestAndIndexedInBackground() throws Exception {
+        Path legacy = fileLayoutService.legacyPath("legacy-file.pdf");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[] {'%', 'P', 'D', 'F', '-', '1'});
+
+        Optional<FileIndexService.FileMetadata> metadata = service.findMetadata("legacy-file.pdf");
+
+        assertThat(metadata).isPresent();
+        assertThat(metadata.get().sha256()).isNull();
+        assertThat(metadata.get().size()).isEqualTo(6);
+        verify(storedFileRepository, timeout(5000)).save(any(StoredFile.class));
+        awaitIndexed("legacy-file.pdf");
+        assertThat(service.findDigest("legacy-file.pdf")).hasValueSatisfying(digest -> assertThat(digest).hasSize(64));
+    }
+
+    @Test
+    void storedNameUsesTheDetectedExtension() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R', 1, 2, 3};
+
+        BlobStoreService.StoreResult result = service.store(new ByteArrayInputStream(png), ".html", Long.MAX_VALUE, "t@example.com");
+
+        assertThat(result.file().getFileName()).endsWith(".png").doesNotContain("html");
+        assertThat(result.file().getContentType()).isEqualTo("image/png");
+    }
+
+    private void awaitIndexed(String fileName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fileIndexService.lookup(fileName).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void missingFileHasNoMetadata() {
+        assertThat(service.findMetadata("missing.pdf")).isEmpty();
+        assertThat(service.findDigest("missing.pdf")).isEmpty();
+    }
+
+    @Test
+    void indexMissFallsBackToTheTableForBlobsFromOtherInstances() {
+        when(fileStorage.isLocal()).thenReturn(false);
+        StoredFile remote = storedFile("remote.pdf", 2);
+        when(storedFileRepository.findByFileName("remote.pdf")).thenReturn(Optional.of(remote));
+
+        Optional<FileIndexService.FileMetadata> metadata = service.findMetadata("remote.pdf");
+
+        assertThat(metadata).hasValueSatisfying(entry -> assertThat(entry.sha256()).isEqualTo(remote.getSha256()));
+        assertThat(fileIndexService.lookup("remote.pdf")).isPresent();
+    }
+
+    @Test
+    void duplicateContentAddsAReferenceWithoutUploading() throws Exception {
+        StoredFile existing = storedFile("existing.png", 1);
+        when(storedFileRepository.findBySha256ForUpdate(any(), any())).thenReturn(List.of(existing));
+
+        BlobStoreService.StoreResult result = service.store(new ByteArrayInputStream(PNG), ".png", Long.MAX_VALUE, "t@example.com");
+
+        assertThat(result.deduplicated()).isTrue();
+        assertThat(result.file().getRefCount()).isEqualTo(2);
+        verify(fileStorage, never()).putAsync(any(), any());
+    }
+
+    @Test
+    void uploadRunsBeforeTakingTheRowLock() throws Exception {
+        service.store(new ByteArrayInputStream(PNG), ".png", Long.MAX_VALUE, "t@example.com");
+
+        InOrder order = inOrder(fileStorage, storedFileRepository);
+        order.verify(fileStorage).putAsync(any(), any());
+        order.verify(storedFileRepository).findByFileNameForUpdate(any());
+        order.verify(storedFileRepository).save(any());
+    }
+
+    @Test
+    void lastReleaseDeletesUnderTheRowLock() throws Exception {
+        StoredFile storedFile = storedFile("shared.pdf", 2);
+        when(storedFileRepository.findByFileName("shared.pdf")).thenReturn(Optional.of(storedFile));
+        when(storedFileRepository.findByFileNameForUpdate("shared.pdf")).thenReturn(Optional.of(storedFile));
+
+        assertThat(service.release("shared.pdf", name -> true)).isEqualTo(BlobStoreService.ReleaseResult.RELEASED);
+        assertThat(service.release("shared.pdf", name -> true)).isEqualTo(BlobStoreService.ReleaseResult.DELETED);
+
+        verify(storedFileRepository).delete(storedFile);
+        verify(storageQuotaService).recordDeleted(storedFile);
+        verify(fileStorage).delete("shared.pdf");
+    }
+
+    @Test
+    void repeatedDeletesOfAFileStillInUseReleaseNothing() throws Exception {
+        StoredFile storedFile = storedFile("shared.pdf", 2);
+        when(storedFileRepository.findByFileName("shared.pdf")).thenReturn(Optional.of(storedFile));
+        when(storedFileRepository.findByFileNameForUpdate("shared.pdf")).thenReturn(Optional.of(storedFile));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.release("shared.pdf", name -> false)).isEqualTo(BlobStoreService.ReleaseResult.IN_USE);
+        }
+
+        assertThat(storedFile.getRefCount()).isEqualTo(2);
+        verify(storedFileRepository, never()).delete(any());
+        verify(fileStorage, never()).delete(any());
+    }
+
+    @Test
+    void uploadWithoutKnownSizeStopsAtTheRemainingQuota() {
+        when(storageQuotaService.remainingBytes("t@example.com")).thenReturn(10L);
+        when(storageQuotaService.uploaderQuotaExceeded("t@example.com"))
+                .thenReturn(new StorageQuotaService.QuotaExceededException(StorageUsage.Scope.UPLOADER, 90L, 100L));
+
+        assertThatThrownBy(() -> service.store(new ByteArrayInputStream(PNG), ".png", Long.MAX_VALUE, "t@example.com"))
+                .isInstanceOf(StorageQuotaService.QuotaExceededException.class);
+        verify(fileStorage, never()).putAsync(any(), any());
+    }
+
+    @Test
+    void sizeLimitStillAppliesWhenTheQuotaIsLarger() {
+        assertThatThrownBy(() -> service.store(new ByteArrayInputStream(PNG), ".png", 10L, "t@example.com"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .isNotInstanceOf(StorageQuotaService.QuotaExceededException.class);
+    }
+
+    @Test
+    void quotaRejectedWhenRegisteringRemovesTheUploadedBytes() throws Exception {
+        doThrow(new StorageQuotaService.QuotaExceededException(StorageUsage.Scope.UPLOADER, 95L, 100L))
+                .when(storageQuotaService).recordCreated(any());
+
+        assertThatThrownBy(() -> service.store(new ByteArrayInputStream(PNG), ".png", Long.MAX_VALUE, "t@example.com"))
+                .isInstanceOf(StorageQuotaService.QuotaExceededException.class);
+
+        InOrder order = inOrder(storedFileRepository, storageQuotaService, fileStorage);
+        order.verify(storedFileRepository).save(any());
+        order.verify(storageQuotaService).recordCreated(any());
+        order.verify(fileStorage).delete(any());
+    }
+
+    private static StoredFile storedFile(String fileName, int refCount) {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName(fileName);
+        storedFile.setSha256("ab".repeat(32));
+        storedFile.setSize(10L);
+        storedFile.setRefCount(refCount);
+        storedFile.setLastModified(1_700_000_000_000L);
+        return storedFile;
+    }
+}
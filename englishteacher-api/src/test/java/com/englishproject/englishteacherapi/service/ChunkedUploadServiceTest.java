@@ -0,0 +1,165 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.UploadSession;
+import com.englishproject.englishteacherapi.repository.UploadSessionRepository;
+
+class ChunkedUploadServiceTest {
+
+    private static final String OWNER = "teacher@example.com";
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<String, UploadSession> sessions = new HashMap<>();
+    private ChunkedUploadService service;
+    private UploadAdmissionService admission;
+
+    @BeforeEach
+    void setUp() {
+        UploadSessionRepository repository = mock(UploadSessionRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            sessions.put(session.getId(), session);
+            return session;
+        });
+        when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))));
+        when(repository.existsById(anyString())).thenAnswer(invocation -> sessions.containsKey(invocation.<String>getArgument(0)));
+
+        service = new ChunkedUploadService();
+        ReflectionTestUtils.setField(service, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(service, "maxFileSize", 1024L);
+        ReflectionTestUtils.setField(service, "maxChunkSize", 8L);
+        ReflectionTestUtils.setField(service, "uploadSessionRepository", repository);
+        ReflectionTestUtils.setField(service, "sessionTtlHours", 24L);
+
+        admission = new UploadAdmissionService();
+        ReflectionTestUtils.setField(admission, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(admission, "maxReceiving", 1);
+        ReflectionTestUtils.setField(admission, "maxQueue", 0);
+        ReflectionTestUtils.setField(admission, "maxWait", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(admission, "retryAfterSeconds", 5L);
+        admission.init();
+        ReflectionTestUtils.setField(service, "uploadAdmissionService", admission);
+    }
+
+    @Test
+    void holdsTheWritePermitOnlyAfterTheChunkIsReceived() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 4, OWNER);
+        List<Object> inFlightWhileReading = new ArrayList<>();
+        InputStream body = new ByteArrayInputStream("0123".getBytes()) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                inFlightWhileReading.add(admission.getStats().get("inFlight"));
+                return super.read(buffer, offset, length);
+            }
+        };
+
+        service.appendChunk(session.getId(), 0, body, 4);
+
+        assertThat(inFlightWhileReading).isNotEmpty().containsOnly(0);
+        assertThat(admission.getStats().get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void keepsTheReceivedBytesUnconfirmedWhenNoPermitIsAvailable() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 4, OWNER);
+
+        try (UploadAdmissionService.Permit busy = admission.acquire()) {
+            assertThatThrownBy(() -> service.appendChunk(session.getId(), 0, new ByteArrayInputStream("0123".getBytes()), 4))
+                    .isInstanceOf(UploadAdmissionService.UploadRejectedException.class);
+        }
+
+        assertThat(sessions.get(session.getId()).getReceivedBytes()).isZero();
+    }
+
+    @Test
+    void cleanupDeletesLeftoverChunksAndPartsWithoutSession() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 4, OWNER);
+        Path directory = uploadDir.resolve(".partial");
+        Path livePart = directory.resolve(session.getId() + ".part");
+        Path orphanPart = Files.write(directory.resolve("gone.part"), new byte[] {1});
+        Path leftoverChunk = Files.write(directory.resolve(session.getId() + "-123.chunk"), new byte[] {1});
+        Path recentChunk = Files.write(directory.resolve(session.getId() + "-456.chunk"), new byte[] {1});
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(48));
+        for (Path path : new Path[] {livePart, orphanPart, leftoverChunk}) {
+            Files.setLastModifiedTime(path, old);
+        }
+
+        service.cleanupExpiredSessions();
+
+        assertThat(livePart).exists();
+        assertThat(recentChunk).exists();
+        assertThat(orphanPart).doesNotExist();
+        assertThat(leftoverChunk).doesNotExist();
+    }
+
+    @Test
+    void writesChunksAtTheirOffsets() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 12, OWNER);
+
+        service.appendChunk(session.getId(), 0, new ByteArrayInputStream("01234567".getBytes()), 8);
+        UploadSession updated = service.appendChunk(session.getId(), 8, new ByteArrayInputStream("89ab".getBytes()), -1);
+
+        assertThat(updated.getReceivedBytes()).isEqualTo(12);
+        Path partial = uploadDir.resolve(".partial").resolve(session.getId() + ".part");
+        assertThat(Files.readString(partial)).isEqualTo("0123456789ab");
+    }
+
+    @Test
+    void rejectsExtraBytesWithoutContentLength() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 4, OWNER);
+
+        assertThatThrownBy(() -> service.appendChunk(session.getId(), 0, new ByteArrayInputStream("012345".getBytes()), -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(sessions.get(session.getId()).getReceivedBytes()).isZero();
+    }
+
+    @Test
+    void rejectsWrongOffsetBeforeReadingTheBody() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 12, OWNER);
+
+        assertThatThrownBy(() -> service.appendChunk(session.getId(), 4, new ByteArrayInputStream("0123".getBytes()), 4))
+                .isInstanceOf(ChunkedUploadService.OffsetMismatchException.class);
+    }
+
+    @Test
+    void requiresAnOwner() {
+        assertThatThrownBy(() -> service.createSession("a.pdf", "application/pdf", 12, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void leavesNoStagingFilesBehind() throws Exception {
+        UploadSession session = service.createSession("a.pdf", "application/pdf", 12, OWNER);
+        service.appendChunk(session.getId(), 0, new ByteArrayInputStream("0123".getBytes()), 4);
+
+        try (var files = Files.list(uploadDir.resolve(".partial"))) {
+            assertThat(files.map(path -> path.getFileName().toString())).containsExactly(session.getId() + ".part");
+        }
+    }
+}
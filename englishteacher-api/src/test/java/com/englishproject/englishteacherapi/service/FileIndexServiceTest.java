@@ -0,0 +1,96 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+
+class FileIndexServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private StoredFileRepository storedFileRepository;
+    private FileLayoutService fileLayoutService;
+    private FileIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        storedFileRepository = mock(StoredFileRepository.class);
+
+        fileLayoutService = new FileLayoutService();
+        ReflectionTestUtils.setField(fileLayoutService, "uploadDir", uploadDir.toString());
+
+        service = new FileIndexService();
+        ReflectionTestUtils.setField(service, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(service, "fileLayoutService", fileLayoutService);
+    }
+
+    @Test
+    void loadingTheIndexDoesNotWriteAndBackfillSavesLaterOnce() throws Exception {
+        Path legacy = fileLayoutService.legacyPath("old.pdf");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[] {1, 2, 3});
+        Files.setLastModifiedTime(legacy, FileTime.fromMillis(1_700_000_000_000L));
+        when(storedFileRepository.findAll()).thenReturn(List.of(storedFile(7L, "old.pdf", null)));
+        when(storedFileRepository.backfillLastModified(7L, 1_700_000_000_000L)).thenReturn(1);
+
+        service.loadIndex();
+
+        verify(storedFileRepository, never()).save(any());
+        verify(storedFileRepository, never()).backfillLastModified(any(), any());
+        Optional<FileIndexService.FileMetadata> metadata = service.lookup("old.pdf");
+        assertThat(metadata).hasValueSatisfying(entry -> assertThat(entry.lastModified()).isEqualTo(1_700_000_000_000L));
+
+        service.backfillLastModified();
+        service.backfillLastModified();
+
+        verify(storedFileRepository).backfillLastModified(7L, 1_700_000_000_000L);
+    }
+
+    @Test
+    void entriesMissingOnDiskAreLeftOutOfTheIndex() {
+        when(storedFileRepository.findAll()).thenReturn(List.of(storedFile(8L, "gone.pdf", null),
+                storedFile(9L, "kept.pdf", 1_600_000_000_000L)));
+
+        service.loadIndex();
+
+        assertThat(service.lookup("gone.pdf")).isEmpty();
+        assertThat(service.lookup("kept.pdf")).isPresent();
+    }
+
+    @Test
+    void fileUrlRoundTripsThroughFileNameFromUrl() {
+        String url = FileIndexService.fileUrlOf("abc.png");
+
+        assertThat(url).isEqualTo("/api/files/activities/abc.png");
+        assertThat(FileIndexService.fileNameFromUrl(url)).hasValue("abc.png");
+        assertThat(FileIndexService.fileNameFromUrl("/api/files/activities/../x")).isEmpty();
+    }
+
+    private static StoredFile storedFile(Long id, String fileName, Long lastModified) {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setId(id);
+        storedFile.setFileName(fileName);
+        storedFile.setSha256("0".repeat(64));
+        storedFile.setSize(3L);
+        storedFile.setLastModified(lastModified);
+        return storedFile;
+    }
+}
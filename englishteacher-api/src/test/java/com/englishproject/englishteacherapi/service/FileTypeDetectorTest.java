@@ -0,0 +1,57 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class FileTypeDetectorTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R'};
+
+    @Test
+    void extensionComesFromDetectedTypeNotFromName() {
+        String type = FileTypeDetector.detect(ByteBuffer.wrap(PNG), ".html");
+
+        assertThat(type).isEqualTo("image/png");
+        assertThat(FileTypeDetector.extensionFor(type)).isEqualTo(".png");
+    }
+
+    @Test
+    void acceptsMp4Brands() {
+        assertThat(FileTypeDetector.detect(ftyp("isom"), ".mp4")).isEqualTo("video/mp4");
+        assertThat(FileTypeDetector.detect(ftyp("mp42"), ".mp4")).isEqualTo("video/mp4");
+    }
+
+    @Test
+    void rejectsOtherIsoMediaBrands() {
+        assertThat(FileTypeDetector.detect(ftyp("qt  "), ".mp4")).isNull();
+        assertThat(FileTypeDetector.detect(ftyp("heic"), ".mp4")).isNull();
+        assertThat(FileTypeDetector.detect(ftyp("avif"), ".mp4")).isNull();
+    }
+
+    @Test
+    void docxRequiresTheDocxExtension() {
+        ByteBuffer zip = ByteBuffer.wrap(new byte[] {'P', 'K', 0x03, 0x04, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+
+        assertThat(FileTypeDetector.detect(zip, ".docx")).isEqualTo(FileTypeDetector.DOCX_TYPE);
+        assertThat(FileTypeDetector.detect(zip, ".zip")).isNull();
+    }
+
+    @Test
+    void rejectsHtml() {
+        ByteBuffer html = ByteBuffer.wrap("<html><script>x</script>".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(FileTypeDetector.detect(html, ".html")).isNull();
+    }
+
+    private static ByteBuffer ftyp(String brand) {
+        byte[] header = new byte[16];
+        header[3] = 0x18;
+        System.arraycopy("ftyp".getBytes(StandardCharsets.US_ASCII), 0, header, 4, 4);
+        System.arraycopy(brand.getBytes(StandardCharsets.US_ASCII), 0, header, 8, 4);
+        return ByteBuffer.wrap(header);
+    }
+}
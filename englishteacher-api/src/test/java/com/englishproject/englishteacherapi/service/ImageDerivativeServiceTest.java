@@ -0,0 +1,99 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.DerivativeJobRepository;
+
+class ImageDerivativeServiceTest {
+
+    @Test
+    void rejectsImagesLargerThanThePixelBudgetBeforeDecoding() throws Exception {
+        byte[] bomb = pngHeader(100_000, 100_000);
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bomb))) {
+            assertThatThrownBy(() -> ImageDerivativeService.decodeBounded(in, 960, 100_000_000L))
+                    .isInstanceOf(ImageDerivativeService.UnprocessableImageException.class);
+        }
+    }
+
+    @Test
+    void subsamplesLargeImagesDownToTheTargetWidth() throws Exception {
+        byte[] png = encode(new BufferedImage(4000, 20, BufferedImage.TYPE_INT_RGB));
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+            BufferedImage decoded = ImageDerivativeService.decodeBounded(in, 960, 100_000_000L);
+
+            assertThat(decoded.getWidth()).isBetween(960, 1999);
+        }
+    }
+
+    @Test
+    void rejectsFormatsWithoutReader() throws Exception {
+        byte[] webp = "RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII);
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(webp))) {
+            assertThatThrownBy(() -> ImageDerivativeService.decodeBounded(in, 960, 100_000_000L))
+                    .isInstanceOf(ImageDerivativeService.UnprocessableImageException.class);
+        }
+    }
+
+    @Test
+    void doesNotEnqueueWebp() {
+        DerivativeJobRepository repository = mock(DerivativeJobRepository.class);
+        ImageDerivativeService service = new ImageDerivativeService();
+        ReflectionTestUtils.setField(service, "derivativeJobRepository", repository);
+        StoredFile webp = new StoredFile();
+        webp.setFileName("a".repeat(64) + ".webp");
+        webp.setContentType("image/webp");
+
+        service.enqueue(webp);
+
+        verify(repository, never()).save(any());
+    }
+
+    private static byte[] encode(BufferedImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Firma PNG más un IHDR válido: alcanza para que el lector informe las dimensiones
+     */
+    private static byte[] pngHeader(int width, int height) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A});
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(chunk);
+        data.writeBytes("IHDR");
+        data.writeInt(width);
+        data.writeInt(height);
+        data.write(new byte[] {8, 2, 0, 0, 0});
+        CRC32 crc = new CRC32();
+        crc.update(chunk.toByteArray());
+        out.writeInt(13);
+        out.write(chunk.toByteArray());
+        out.writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+}
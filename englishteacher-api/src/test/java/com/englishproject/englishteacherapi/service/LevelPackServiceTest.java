@@ -0,0 +1,139 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.dto.ActivityDTO;
+import com.englishproject.englishteacherapi.dto.LevelDTO;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class LevelPackServiceTest {
+
+    private static final byte[] CONTENT = "contenido de la imagen".getBytes();
+
+    private BlobStoreService blobStoreService;
+    private FileStorage fileStorage;
+    private LevelService levelService;
+    private ActivityService activityService;
+    private LevelPackService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStoreService = mock(BlobStoreService.class);
+        fileStorage = mock(FileStorage.class);
+        levelService = mock(LevelService.class);
+        activityService = mock(ActivityService.class);
+        when(fileStorage.get(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+
+        service = new LevelPackService();
+        ReflectionTestUtils.setField(service, "levelService", levelService);
+        ReflectionTestUtils.setField(service, "activityService", activityService);
+        ReflectionTestUtils.setField(service, "blobStoreService", blobStoreService);
+        ReflectionTestUtils.setField(service, "fileStorage", fileStorage);
+        ReflectionTestUtils.setField(service, "jsonMapper", JsonMapper.builder().build());
+    }
+
+    @Test
+    void blobWithoutCrcIsReadOnceAndItsCrcIsSaved() throws Exception {
+        LevelPackService.LevelPack pack = packWith(metadata(null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writePack(pack, out);
+
+        verify(fileStorage, times(1)).get(anyString(), anyLong(), anyLong());
+        verify(blobStoreService).recordCrc32("blob.png", crcOf(CONTENT));
+        assertThat(readEntry(out.toByteArray(), "files/1-foto.png")).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void blobWithCrcIsStoredWithoutCompression() throws Exception {
+        LevelPackService.LevelPack pack = packWith(metadata(crcOf(CONTENT)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writePack(pack, out);
+
+        verify(blobStoreService, never()).recordCrc32(anyString(), anyLong());
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zip.readAllBytes()).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void preparingThePackDoesNotScheduleIndexing() {
+        ActivityDTO activity = activity();
+        when(levelService.getLevelById(7L)).thenReturn(Optional.of(level()));
+        when(activityService.getActivitiesByLevelId(7L)).thenReturn(List.of(activity));
+        when(blobStoreService.describe("blob.png")).thenReturn(Optional.of(metadata(null)));
+
+        assertThat(service.preparePack(7L)).hasValueSatisfying(pack -> assertThat(pack.files()).hasSize(1));
+        verify(blobStoreService, never()).findMetadata(any());
+    }
+
+    private LevelPackService.LevelPack packWith(FileIndexService.FileMetadata metadata) {
+        ActivityDTO activity = activity();
+        return new LevelPackService.LevelPack(level(), List.of(activity),
+                List.of(new LevelPackService.PackEntry(activity, metadata, "files/1-foto.png")));
+    }
+
+    private static FileIndexService.FileMetadata metadata(Long crc32) {
+        return new FileIndexService.FileMetadata("blob.png", CONTENT.length, "image/png", "ab".repeat(32),
+                1_700_000_000_000L, true, crc32);
+    }
+
+    private static ActivityDTO activity() {
+        ActivityDTO activity = new ActivityDTO();
+        activity.setId(1L);
+        activity.setTitle("Foto");
+        activity.setResourceFileName("foto.png");
+        activity.setResourceFileUrl("/api/files/activities/blob.png");
+        activity.setLevelId(7L);
+        return activity;
+    }
+
+    private static LevelDTO level() {
+        LevelDTO level = new LevelDTO();
+        level.setId(7L);
+        level.setName("Inicial");
+        return level;
+    }
+
+    private static long crcOf(byte[] content) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        return crc32.getValue();
+    }
+
+    private static byte[] readEntry(byte[] zipBytes, String name) throws Exception {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().equals(name)) {
+                    return zip.readAllBytes();
+                }
+            }
+        }
+        return null;
+    }
+}
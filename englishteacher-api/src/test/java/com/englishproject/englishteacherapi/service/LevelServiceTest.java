@@ -0,0 +1,62 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.dto.LevelDTO;
+import com.englishproject.englishteacherapi.model.Activity;
+import com.englishproject.englishteacherapi.repository.LevelRepository;
+
+class LevelServiceTest {
+
+    private LevelRepository levelRepository;
+    private LevelService service;
+
+    @BeforeEach
+    void setUp() {
+        levelRepository = mock(LevelRepository.class);
+        service = new LevelService();
+        ReflectionTestUtils.setField(service, "levelRepository", levelRepository);
+    }
+
+    @Test
+    void levelWithoutActivitiesHasZeroCountsFromASingleQuery() {
+        when(levelRepository.findByIdWithActivityCounts(7L))
+                .thenReturn(List.<Object[]>of(new Object[] {7L, "Inicial", "Primer nivel", null, 0L}));
+
+        LevelDTO level = service.getLevelById(7L).orElseThrow();
+
+        assertThat(level.getActivitiesCount()).isZero();
+        assertThat(level.getActivitiesByType()).isEmpty();
+        verify(levelRepository).findByIdWithActivityCounts(7L);
+        verifyNoMoreInteractions(levelRepository);
+    }
+
+    @Test
+    void countsOfEachTypeAreGroupedPerLevel() {
+        when(levelRepository.findAllWithActivityCounts()).thenReturn(List.of(
+                new Object[] {1L, "Inicial", null, Activity.ActivityType.READING, 3L},
+                new Object[] {1L, "Inicial", null, Activity.ActivityType.LISTENING, 2L},
+                new Object[] {2L, "Intermedio", null, null, 0L}));
+
+        List<LevelDTO> levels = service.getAllLevels();
+
+        assertThat(levels).extracting(LevelDTO::getId).containsExactly(1L, 2L);
+        assertThat(levels.get(0).getActivitiesCount()).isEqualTo(5L);
+        assertThat(levels.get(0).getActivitiesByType())
+                .containsEntry(Activity.ActivityType.READING, 3L)
+                .containsEntry(Activity.ActivityType.LISTENING, 2L);
+        assertThat(levels.get(1).getActivitiesCount()).isZero();
+        verify(levelRepository).findAllWithActivityCounts();
+        verifyNoMoreInteractions(levelRepository);
+    }
+}
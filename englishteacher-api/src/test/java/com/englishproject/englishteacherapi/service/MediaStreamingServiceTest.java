@@ -0,0 +1,93 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class MediaStreamingServiceTest {
+
+    private static final String DIGEST = "a".repeat(64);
+
+    @TempDir
+    Path tempDir;
+
+    private final MediaStreamingService service = new MediaStreamingService();
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws Exception {
+        file = tempDir.resolve("0123456789.txt");
+        Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files/activities/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(file, "text/plain", "x.txt", DIGEST, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files/activities/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"otro\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(file, "text/plain", "x.txt", DIGEST, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files/activities/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=50-60");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(file, "text/plain", "x.txt", DIGEST, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+    }
+
+    @Test
+    void headReturnsLengthWithoutBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/api/files/activities/x");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(file, "text/plain", "x.txt", DIGEST, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void matchingEtagReturnsNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files/activities/x");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + DIGEST + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.stream(file, "text/plain", "x.txt", DIGEST, request, response);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+}
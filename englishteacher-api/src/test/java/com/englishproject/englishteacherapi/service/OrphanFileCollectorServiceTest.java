@@ -0,0 +1,166 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.MaintenanceCursor;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.ActivityRepository;
+import com.englishproject.englishteacherapi.repository.MaintenanceCursorRepository;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+import com.englishproject.englishteacherapi.repository.TeacherRepository;
+
+class OrphanFileCollectorServiceTest {
+
+    private static final String URL_PATTERN = "%/api/files/activities/old!_file.pdf";
+
+    @TempDir
+    Path uploadDir;
+
+    private StoredFileRepository storedFileRepository;
+    private ActivityRepository activityRepository;
+    private TeacherRepository teacherRepository;
+    private MaintenanceCursorRepository maintenanceCursorRepository;
+    private BlobStoreService blobStoreService;
+    private OrphanFileCollectorService service;
+
+    @BeforeEach
+    void setUp() {
+        storedFileRepository = mock(StoredFileRepository.class);
+        activityRepository = mock(ActivityRepository.class);
+        teacherRepository = mock(TeacherRepository.class);
+        maintenanceCursorRepository = mock(MaintenanceCursorRepository.class);
+        blobStoreService = mock(BlobStoreService.class);
+        when(maintenanceCursorRepository.findById("orphan-file-collector"))
+                .thenReturn(Optional.of(new MaintenanceCursor("orphan-file-collector", 41L, LocalDateTime.now())));
+
+        FileLayoutService fileLayoutService = new FileLayoutService();
+        ReflectionTestUtils.setField(fileLayoutService, "uploadDir", uploadDir.toString());
+
+        service = new OrphanFileCollectorService();
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "gracePeriodHours", 24L);
+        ReflectionTestUtils.setField(service, "inactiveRetentionDays", 30L);
+        ReflectionTestUtils.setField(service, "deletePauseMs", 0L);
+        ReflectionTestUtils.setField(service, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(service, "teacherRepository", teacherRepository);
+        ReflectionTestUtils.setField(service, "maintenanceCursorRepository", maintenanceCursorRepository);
+        ReflectionTestUtils.setField(service, "blobStoreService", blobStoreService);
+        ReflectionTestUtils.setField(service, "imageDerivativeService", mock(ImageDerivativeService.class));
+        ReflectionTestUtils.setField(service, "fileLayoutService", fileLayoutService);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void resumesFromThePersistedCursorAndSavesTheNewOne() throws Exception {
+        StoredFile storedFile = storedFile(42L, "old_file.pdf", LocalDateTime.now().minusDays(3));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(41L), any(Pageable.class))).thenReturn(List.of(storedFile));
+        when(blobStoreService.purge(eq("old_file.pdf"), any(), any())).thenReturn(true);
+
+        OrphanFileCollectorService.CollectionReport report = service.collectBatch();
+
+        assertThat(report.deleted()).isEqualTo(1);
+        verify(activityRepository).countFileReferences(eq(URL_PATTERN), any());
+        verify(maintenanceCursorRepository).save(argThat(cursor -> cursor.getPosition() == 42L));
+    }
+
+    @Test
+    void referenceAddedAfterSelectionSavesTheFile() throws Exception {
+        StoredFile storedFile = storedFile(42L, "old_file.pdf", LocalDateTime.now().minusDays(3));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(41L), any(Pageable.class))).thenReturn(List.of(storedFile));
+        // Sin referencias al elegir el candidato; una actividad lo toma antes del borrado
+        when(activityRepository.countFileReferences(eq(URL_PATTERN), any())).thenReturn(0L, 1L);
+        when(blobStoreService.purge(eq("old_file.pdf"), any(), any())).thenAnswer(invocation -> {
+            Predicate<StoredFile> stillOrphan = invocation.getArgument(2);
+            return stillOrphan.test(storedFile);
+        });
+
+        OrphanFileCollectorService.CollectionReport report = service.collectBatch();
+
+        assertThat(report.deleted()).isZero();
+        verify(activityRepository, never()).detachExpiredFileReferences(any(), any());
+    }
+
+    @Test
+    void deactivatedActivitiesPastRetentionDropTheFileBeforeItIsDeleted() throws Exception {
+        StoredFile storedFile = storedFile(42L, "old_file.pdf", LocalDateTime.now().minusDays(60));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(41L), any(Pageable.class))).thenReturn(List.of(storedFile));
+        when(blobStoreService.purge(eq("old_file.pdf"), any(), any())).thenAnswer(invocation -> {
+            Predicate<StoredFile> stillOrphan = invocation.getArgument(2);
+            return stillOrphan.test(storedFile);
+        });
+
+        OrphanFileCollectorService.CollectionReport report = service.collectBatch();
+
+        assertThat(report.deleted()).isEqualTo(1);
+        verify(activityRepository).detachExpiredFileReferences(eq(URL_PATTERN),
+                argThat(since -> since.isBefore(LocalDateTime.now().minusDays(29))));
+    }
+
+    @Test
+    void recentUploadsAreNotCandidates() throws Exception {
+        StoredFile storedFile = storedFile(42L, "old_file.pdf", LocalDateTime.now().minusHours(1));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(41L), any(Pageable.class))).thenReturn(List.of(storedFile));
+
+        service.collectBatch();
+
+        verifyNoInteractions(activityRepository);
+        verify(blobStoreService, never()).purge(any(), any(), any());
+    }
+
+    @Test
+    void reportRunsInTheBackground() throws Exception {
+        StoredFile storedFile = storedFile(7L, "old_file.pdf", LocalDateTime.now().minusDays(3));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenReturn(List.of(storedFile));
+        when(storedFileRepository.findByIdGreaterThanOrderByIdAsc(eq(7L), any(Pageable.class))).thenReturn(List.of());
+
+        assertThat(service.startReport(10)).isTrue();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getLastReport().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(service.getLastReport()).hasValueSatisfying(result -> {
+            assertThat(result.report().orphanCount()).isEqualTo(1);
+            assertThat(result.report().dryRun()).isTrue();
+        });
+        verify(blobStoreService, never()).purge(any(), any(), any());
+        verify(teacherRepository).countProfileImageReferences(URL_PATTERN);
+    }
+
+    private static StoredFile storedFile(Long id, String fileName, LocalDateTime lastUploadAt) {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setId(id);
+        storedFile.setFileName(fileName);
+        storedFile.setSha256("0".repeat(64));
+        storedFile.setSize(10L);
+        storedFile.setLastUploadAt(lastUploadAt);
+        return storedFile;
+    }
+}
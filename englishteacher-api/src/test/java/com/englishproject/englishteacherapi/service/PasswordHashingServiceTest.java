@@ -0,0 +1,83 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService service;
+    private BCryptPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        service = new PasswordHashingService();
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "maxQueue", 4);
+        ReflectionTestUtils.setField(service, "maxWait", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 2L);
+        ReflectionTestUtils.setField(service, "configuredCost", 5);
+        ReflectionTestUtils.setField(service, "targetVerifyTime", Duration.ofMillis(250));
+        service.init();
+        encoder = spy((BCryptPasswordEncoder) ReflectionTestUtils.getField(service, "encoder"));
+        ReflectionTestUtils.setField(service, "encoder", encoder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void onlyHashesWithALowerCostAreRehashed() {
+        String weaker = new BCryptPasswordEncoder(4).encode("secreto");
+        String stronger = new BCryptPasswordEncoder(6).encode("secreto");
+
+        PasswordHashingService.Verification fromWeaker = service.verify("secreto", weaker);
+        PasswordHashingService.Verification fromStronger = service.verify("secreto", stronger);
+
+        assertThat(fromWeaker.matches()).isTrue();
+        assertThat(fromWeaker.newHash()).startsWith("$2a$05$");
+        assertThat(fromStronger.matches()).isTrue();
+        assertThat(fromStronger.newHash()).isNull();
+    }
+
+    @Test
+    void expectedWaitAboveMaxWaitIsRejectedWithoutQueueing() {
+        ReflectionTestUtils.setField(service, "averageNanos", Duration.ofSeconds(1).toNanos());
+
+        assertThatThrownBy(() -> service.verify("secreto", null))
+                .isInstanceOf(PasswordHashingService.PasswordHashingBusyException.class);
+        verify(encoder, never()).matches(any(), any());
+    }
+
+    @Test
+    void workAbandonedByATimedOutCallerIsNotRun() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(service, "executor");
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            release.await();
+            return null;
+        });
+
+        assertThatThrownBy(() -> service.verify("secreto", null))
+                .isInstanceOf(PasswordHashingService.PasswordHashingBusyException.class);
+
+        release.countDown();
+        executor.submit(() -> null).get(); // La cola es FIFO: el trabajo abandonado ya pasó
+        verify(encoder, never()).matches(any(), any());
+    }
+}
@@ -0,0 +1,145 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+import com.englishproject.englishteacherapi.storage.FileStorage;
+
+class ShardMigrationServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<String, StoredFile> table = new ConcurrentHashMap<>();
+    private FileIndexService fileIndexService;
+    private FileLayoutService fileLayoutService;
+    private BlobStoreService blobStoreService;
+    private ShardMigrationService service;
+
+    @BeforeEach
+    void setUp() {
+        StoredFileRepository storedFileRepository = mock(StoredFileRepository.class);
+        when(storedFileRepository.findByFileName(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+        when(storedFileRepository.findByFileNameForUpdate(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+        when(storedFileRepository.save(any())).thenAnswer(invocation -> {
+            StoredFile storedFile = invocation.getArgument(0);
+            table.put(storedFile.getFileName(), storedFile);
+            return storedFile;
+        });
+        FileStorage fileStorage = mock(FileStorage.class);
+        when(fileStorage.isLocal()).thenReturn(true);
+
+        fileLayoutService = new FileLayoutService();
+        ReflectionTestUtils.setField(fileLayoutService, "uploadDir", uploadDir.toString());
+
+        fileIndexService = new FileIndexService();
+        ReflectionTestUtils.setField(fileIndexService, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(fileIndexService, "fileLayoutService", fileLayoutService);
+
+        blobStoreService = new BlobStoreService();
+        ReflectionTestUtils.setField(blobStoreService, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(blobStoreService, "fileIndexService", fileIndexService);
+        ReflectionTestUtils.setField(blobStoreService, "fileLayoutService", fileLayoutService);
+        ReflectionTestUtils.setField(blobStoreService, "mediaCacheService", mock(MediaCacheService.class));
+        ReflectionTestUtils.setField(blobStoreService, "storageQuotaService", mock(StorageQuotaService.class));
+        ReflectionTestUtils.setField(blobStoreService, "fileStorage", fileStorage);
+        ReflectionTestUtils.setField(blobStoreService, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(blobStoreService, "putTimeout", Duration.ofSeconds(5));
+        blobStoreService.init();
+
+        service = new ShardMigrationService();
+        ReflectionTestUtils.setField(service, "migrationEnabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "blobStoreService", blobStoreService);
+        ReflectionTestUtils.setField(service, "fileLayoutService", fileLayoutService);
+        ReflectionTestUtils.setField(service, "fileIndexService", fileIndexService);
+        ReflectionTestUtils.setField(service, "fileStorage", fileStorage);
+    }
+
+    @AfterEach
+    void tearDown() {
+        blobStoreService.shutdown();
+    }
+
+    @Test
+    void unindexedFilesAreQueuedAndMovedOnALaterPass() throws Exception {
+        Path legacy = fileLayoutService.legacyPath("legacy.pdf");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[] {'%', 'P', 'D', 'F'});
+
+        service.migrateBatch();
+
+        // El primer recorrido no mueve ni da por terminada la migración: el hash va en segundo plano
+        assertThat(legacy).exists();
+        assertThat(completed()).isFalse();
+        awaitIndexed("legacy.pdf");
+
+        service.migrateBatch();
+
+        assertThat(legacy).doesNotExist();
+        assertThat(fileLayoutService.shardedPath("legacy.pdf")).exists();
+        assertThat(fileIndexService.lookup("legacy.pdf")).hasValueSatisfying(entry -> assertThat(entry.sharded()).isTrue());
+        assertThat(completed()).isFalse();
+
+        service.migrateBatch();
+
+        assertThat(completed()).isTrue();
+    }
+
+    @Test
+    void fullBatchDoesNotCompleteTheMigration() throws Exception {
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        for (String fileName : new String[] {"a.pdf", "b.pdf"}) {
+            Path legacy = fileLayoutService.legacyPath(fileName);
+            Files.createDirectories(legacy.getParent());
+            Files.write(legacy, fileName.getBytes());
+        }
+        blobStoreService.requestIndexing("a.pdf");
+        blobStoreService.requestIndexing("b.pdf");
+        awaitIndexed("a.pdf");
+        awaitIndexed("b.pdf");
+
+        service.migrateBatch();
+        assertThat(completed()).isFalse();
+        service.migrateBatch();
+        assertThat(completed()).isFalse();
+        service.migrateBatch();
+
+        assertThat(completed()).isTrue();
+        assertThat(fileLayoutService.shardedPath("a.pdf")).exists();
+        assertThat(fileLayoutService.shardedPath("b.pdf")).exists();
+    }
+
+    private boolean completed() {
+        return (boolean) ReflectionTestUtils.getField(service, "completed");
+    }
+
+    private void awaitIndexed(String fileName) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fileIndexService.lookup(fileName).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
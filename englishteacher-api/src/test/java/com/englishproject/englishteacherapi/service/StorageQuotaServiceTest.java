@@ -0,0 +1,166 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.englishproject.englishteacherapi.model.StorageUsage;
+import com.englishproject.englishteacherapi.model.StoredFile;
+import com.englishproject.englishteacherapi.repository.ActivityRepository;
+import com.englishproject.englishteacherapi.repository.StorageUsageRepository;
+import com.englishproject.englishteacherapi.repository.StoredFileRepository;
+
+class StorageQuotaServiceTest {
+
+    private StorageUsageRepository storageUsageRepository;
+    private StoredFileRepository storedFileRepository;
+    private ActivityRepository activityRepository;
+    private StorageQuotaService service;
+
+    @BeforeEach
+    void setUp() {
+        storageUsageRepository = mock(StorageUsageRepository.class);
+        storedFileRepository = mock(StoredFileRepository.class);
+        activityRepository = mock(ActivityRepository.class);
+
+        service = new StorageQuotaService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "uploaderMaxBytes", 1000L);
+        ReflectionTestUtils.setField(service, "levelMaxBytes", 500L);
+        ReflectionTestUtils.setField(service, "storageUsageRepository", storageUsageRepository);
+        ReflectionTestUtils.setField(service, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+    }
+
+    @Test
+    void levelUsageIsRecomputedFromReferencingActivities() {
+        when(storedFileRepository.sumSizeByLevelId(3L)).thenReturn(500L);
+        when(storedFileRepository.countByLevelId(3L)).thenReturn(2L);
+        when(storageUsageRepository.setTotals(eq(StorageUsage.Scope.LEVEL), eq("3"), eq(500L), eq(2L), any())).thenReturn(1);
+
+        service.refreshLevel(3L);
+
+        verify(storageUsageRepository).setTotals(eq(StorageUsage.Scope.LEVEL), eq("3"), eq(500L), eq(2L), any());
+        verify(storageUsageRepository, never()).save(any());
+    }
+
+    @Test
+    void missingLevelCounterIsCreated() {
+        when(storedFileRepository.sumSizeByLevelId(4L)).thenReturn(0L);
+        when(storedFileRepository.countByLevelId(4L)).thenReturn(0L);
+
+        service.refreshLevel(4L);
+
+        verify(storageUsageRepository).save(argThat(usage -> usage.getScope() == StorageUsage.Scope.LEVEL
+                && "4".equals(usage.getOwnerKey()) && usage.getBytes() == 0 && usage.getFileCount() == 0));
+    }
+
+    @Test
+    void sharedBlobRefreshesEveryLevelThatUsesIt() {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName("shared.png");
+        storedFile.setSize(100L);
+        storedFile.setUploadedBy("teacher@example.com");
+        when(storageUsageRepository.increment(any(), any(), anyLong(), anyLong(), any())).thenReturn(1);
+        when(activityRepository.findLevelIdsByResourceFileUrl("/api/files/activities/shared.png")).thenReturn(List.of(1L, 2L));
+        when(storedFileRepository.sumSizeByLevelId(any())).thenReturn(0L);
+        when(storedFileRepository.countByLevelId(any())).thenReturn(0L);
+        when(storageUsageRepository.setTotals(any(), any(), anyLong(), anyLong(), any())).thenReturn(1);
+
+        service.recordDeleted(storedFile);
+
+        verify(storageUsageRepository).increment(eq(StorageUsage.Scope.UPLOADER), eq("teacher@example.com"),
+                eq(-100L), eq(-1L), any());
+        verify(storageUsageRepository).setTotals(eq(StorageUsage.Scope.LEVEL), eq("1"), eq(0L), eq(0L), any());
+        verify(storageUsageRepository).setTotals(eq(StorageUsage.Scope.LEVEL), eq("2"), eq(0L), eq(0L), any());
+    }
+
+    @Test
+    void blobOverTheQuotaIsRejectedWhenRegistered() {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName("big.mp4");
+        storedFile.setSize(300L);
+        storedFile.setUploadedBy("teacher@example.com");
+        when(storageUsageRepository.incrementWithinLimit(eq(StorageUsage.Scope.UPLOADER), eq("teacher@example.com"),
+                eq(300L), eq(1L), eq(1000L), any())).thenReturn(0);
+        when(storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, "teacher@example.com"))
+                .thenReturn(Optional.of(usage("teacher@example.com", 900L)));
+
+        assertThatThrownBy(() -> service.recordCreated(storedFile))
+                .isInstanceOfSatisfying(StorageQuotaService.QuotaExceededException.class,
+                        e -> assertThat(e.getUsedBytes()).isEqualTo(900L));
+        verify(storageUsageRepository, never()).increment(any(), any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void uploadWithoutContentLengthIsOnlyRejectedUpFrontWhenTheQuotaIsFull() {
+        when(storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, "teacher@example.com"))
+                .thenReturn(Optional.of(usage("teacher@example.com", 400L)));
+
+        service.checkQuota("teacher@example.com", -1);
+        assertThat(service.remainingBytes("teacher@example.com")).isEqualTo(600L);
+        assertThatThrownBy(() -> service.checkQuota("teacher@example.com", 700L))
+                .isInstanceOf(StorageQuotaService.QuotaExceededException.class);
+
+        when(storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, "teacher@example.com"))
+                .thenReturn(Optional.of(usage("teacher@example.com", 1000L)));
+        assertThatThrownBy(() -> service.checkQuota("teacher@example.com", -1))
+                .isInstanceOf(StorageQuotaService.QuotaExceededException.class);
+    }
+
+    @Test
+    void levelQuotaIsCheckedWhenAFileJoinsTheLevel() {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFileName("video.mp4");
+        storedFile.setSize(200L);
+        when(storedFileRepository.findByFileName("video.mp4")).thenReturn(Optional.of(storedFile));
+        when(storedFileRepository.sumSizeByLevelId(5L)).thenReturn(400L);
+
+        assertThatThrownBy(() -> service.checkLevelQuota(5L, "/api/files/activities/video.mp4"))
+                .isInstanceOfSatisfying(StorageQuotaService.QuotaExceededException.class,
+                        e -> assertThat(e.getScope()).isEqualTo(StorageUsage.Scope.LEVEL));
+
+        // Si el nivel ya usa el archivo en otra actividad no suma bytes
+        when(activityRepository.findLevelIdsByResourceFileUrl("/api/files/activities/video.mp4")).thenReturn(List.of(5L));
+        service.checkLevelQuota(5L, "/api/files/activities/video.mp4");
+    }
+
+    @Test
+    void usageOnlyShowsTheCallersOwnCounter() {
+        when(storageUsageRepository.findByScopeAndOwnerKey(StorageUsage.Scope.UPLOADER, "teacher@example.com"))
+                .thenReturn(Optional.of(usage("teacher@example.com", 10L)));
+
+        Map<String, Object> usage = service.getUsage("teacher@example.com");
+
+        assertThat(usage).doesNotContainKeys("uploaders", "levels");
+        assertThat(usage.get("uploader")).asInstanceOf(InstanceOfAssertFactories.MAP)
+                .containsEntry("owner", "teacher@example.com")
+                .containsEntry("bytes", 10L);
+        verify(storageUsageRepository, never()).findByScopeOrderByBytesDesc(any());
+    }
+
+    private static StorageUsage usage(String owner, long bytes) {
+        StorageUsage usage = new StorageUsage();
+        usage.setScope(StorageUsage.Scope.UPLOADER);
+        usage.setOwnerKey(owner);
+        usage.setBytes(bytes);
+        usage.setFileCount(1L);
+        return usage;
+    }
+}
@@ -0,0 +1,98 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenServicesTest {
+
+    private TokenRevocationService tokenRevocationService;
+    private TokenServices service;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationService = mock(TokenRevocationService.class);
+        service = new TokenServices();
+        ReflectionTestUtils.setField(service, "secretKey", "claveDePruebaParaFirmarTokensDeAlMenos256Bits");
+        ReflectionTestUtils.setField(service, "defaultExpirationTime", 1800);
+        ReflectionTestUtils.setField(service, "refreshExpirationTime", 3600);
+        ReflectionTestUtils.setField(service, "verificationCacheMaxEntries", 2);
+        ReflectionTestUtils.setField(service, "tokenRevocationService", tokenRevocationService);
+        service.init();
+    }
+
+    @Test
+    void fullCacheEvictsTheTokenThatWasNotReused() {
+        String first = service.generateToken("a@example.com");
+        String second = service.generateToken("b@example.com");
+        String third = service.generateToken("c@example.com");
+
+        assertThat(service.verify(first)).isPresent();
+        assertThat(service.verify(second)).isPresent();
+        assertThat(service.verify(first)).isPresent(); // Solo el primero se vuelve a usar
+        assertThat(service.verify(third)).isPresent();
+
+        assertThat(cache()).hasSize(2);
+        assertThat(cachedEmails()).containsExactlyInAnyOrder("a@example.com", "c@example.com");
+    }
+
+    @Test
+    void tokenInUseSurvivesAStreamOfOneOffTokens() {
+        String hot = service.generateToken("hot@example.com");
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(service.verify(hot)).isPresent();
+            assertThat(service.verify(service.generateToken("t" + i + "@example.com"))).isPresent();
+        }
+
+        assertThat(cache()).hasSize(2);
+        assertThat(cachedEmails()).contains("hot@example.com");
+    }
+
+    @Test
+    void cachedTokenIsRejectedOnceRevoked() {
+        String token = service.generateToken("a@example.com");
+        TokenServices.VerifiedToken verified = service.verify(token).orElseThrow();
+
+        when(tokenRevocationService.isRevoked(verified.id())).thenReturn(true);
+
+        assertThat(service.verify(token)).isEmpty();
+    }
+
+    @Test
+    void refreshTokenDoesNotAuthenticateRequests() {
+        String refresh = service.generateRefreshToken("a@example.com");
+
+        assertThat(service.verify(refresh)).isEmpty();
+        assertThat(service.verifyRefreshToken(refresh)).isPresent();
+    }
+
+    @Test
+    void tamperedOrExpiredTokensAreRejected() {
+        String token = service.generateToken("a@example.com");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThat(service.verify(tampered)).isEmpty();
+        assertThat(service.verify("no-es-un-jwt")).isEmpty();
+        assertThat(service.verify(service.generateToken("a@example.com", -1))).isEmpty();
+        assertThat(service.validateToken(token, "a@example.com")).isTrue();
+        assertThat(service.validateToken(token, "b@example.com")).isFalse();
+    }
+
+    private Map<?, ?> cache() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(service, "verifiedTokens");
+    }
+
+    private List<String> cachedEmails() {
+        return cache().values().stream()
+                .map(cached -> ((TokenServices.VerifiedToken) ReflectionTestUtils.getField(cached, "token")).email())
+                .toList();
+    }
+}
@@ -0,0 +1,54 @@
+package com.englishproject.englishteacherapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UploadAdmissionServiceTest {
+
+    private UploadAdmissionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadAdmissionService();
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxReceiving", 2);
+        ReflectionTestUtils.setField(service, "maxQueue", 0);
+        ReflectionTestUtils.setField(service, "maxWait", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 7L);
+        service.init();
+    }
+
+    @Test
+    void rejectsReceivingRightAwayWhenAllSlotsAreTaken() {
+        UploadAdmissionService.Permit first = service.acquireReceiving();
+        UploadAdmissionService.Permit second = service.acquireReceiving();
+
+        assertThatThrownBy(service::acquireReceiving)
+                .isInstanceOfSatisfying(UploadAdmissionService.UploadRejectedException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(7L));
+
+        first.close();
+        first.close(); // Cerrar dos veces no devuelve un lugar de más
+        service.acquireReceiving().close();
+        second.close();
+        assertThat(service.getStats().get("receiving")).isEqualTo(0);
+    }
+
+    @Test
+    void receivingSlotsAndWritePermitsAreIndependent() {
+        try (UploadAdmissionService.Permit receiving = service.acquireReceiving();
+             UploadAdmissionService.Permit write = service.acquire()) {
+            assertThat(service.getStats()).containsEntry("receiving", 1).containsEntry("inFlight", 1);
+            // Con el único permiso de escritura ocupado, otro cuerpo todavía puede recibirse
+            service.acquireReceiving().close();
+            assertThatThrownBy(service::acquire).isInstanceOf(UploadAdmissionService.UploadRejectedException.class);
+        }
+        assertThat(service.getStats()).containsEntry("receiving", 0).containsEntry("inFlight", 0);
+    }
+}